@@ -0,0 +1,210 @@
+/**
+ * Bidirectional search for the fastest path of a leg. One search grows
+ * from the start and one grows back from the destination over the step
+ * times of Path.getNeighborTime, which getLegTime scores every route with,
+ * and they stop once no path through their frontiers can beat the best
+ * path found where they met
+ *
+ * Both searches are guided by half the difference of a lower bound on the
+ * time to the destination and a lower bound on the time from the start, so
+ * the potential never overestimates and the path is optimal. A pixel is
+ * opened again whenever it is reached faster, so the path stays optimal when
+ * the landmark bounds are off by the rounding of their tables
+ *
+ */
+
+import java.util.Arrays;
+
+public class BidirectionalSearch {
+
+	Path map;
+	int width;
+	int height;
+	long expandedNodes = 0;
+	double pathTime = Double.POSITIVE_INFINITY;
+
+	int startNode;
+	int destinationNode;
+	double[] forwardTime;
+	double[] backwardTime;
+	int[] forwardParent;
+	int[] backwardChild;
+	IndexedMinHeap forwardOpen;
+	IndexedMinHeap backwardOpen;
+	int meetingNode = -1;
+
+	/**
+	 * Creates a search over the terrain and speeds of a map
+	 *
+	 * @param 		map			Map with the speeds of its season
+	 */
+
+	public BidirectionalSearch(Path map) {
+		this.map = map;
+		width = map.mapWidth;
+		height = map.mapHeight;
+	}
+
+	/**
+	 * Find the fastest path between two pixels
+	 *
+	 * @param 		x1				X Coordinate of Start
+	 *
+	 * @param 		y1				Y Coordinate of Start
+	 *
+	 * @param 		x2				X Coordinate of Destination
+	 *
+	 * @param 		y2				Y Coordinate of Destination
+	 *
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the
+	 * 								destination cannot be reached
+	 */
+
+	public int[] search(int x1, int y1, int x2, int y2) {
+		int nodeCount = width * height;
+		startNode = y1 * width + x1;
+		destinationNode = y2 * width + x2;
+		if(startNode == destinationNode) {
+			return new int[0];
+		}
+
+		forwardTime = new double[nodeCount];
+		backwardTime = new double[nodeCount];
+		forwardParent = new int[nodeCount];
+		backwardChild = new int[nodeCount];
+		forwardOpen = new IndexedMinHeap(nodeCount);
+		backwardOpen = new IndexedMinHeap(nodeCount);
+		Arrays.fill(forwardTime, Double.POSITIVE_INFINITY);
+		Arrays.fill(backwardTime, Double.POSITIVE_INFINITY);
+		Arrays.fill(forwardParent, -1);
+		Arrays.fill(backwardChild, -1);
+
+		forwardTime[startNode] = 0.0;
+		backwardTime[destinationNode] = 0.0;
+		forwardOpen.add(startNode, getPotential(startNode));
+		backwardOpen.add(destinationNode, -getPotential(destinationNode));
+
+		while(!forwardOpen.isEmpty() && !backwardOpen.isEmpty()) {
+			if(forwardOpen.peekKey() + backwardOpen.peekKey() >= pathTime) {
+				break;
+			}
+			if(forwardOpen.size() <= backwardOpen.size()) {
+				expandForward(forwardOpen.poll());
+			}else {
+				expandBackward(backwardOpen.poll());
+			}
+		}
+
+		if(meetingNode == -1) {
+			return new int[0];
+		}
+		for(int node = meetingNode; node != destinationNode; node = backwardChild[node]) {
+			forwardParent[backwardChild[node]] = node;
+		}
+		return map.getPath(forwardParent, destinationNode, forwardParent[destinationNode], width);
+	}
+
+	/**
+	 * Relax the steps out of a pixel reached from the start
+	 */
+
+	void expandForward(int currentNode) {
+		expandedNodes++;
+		int currentX = currentNode % width;
+		int currentY = currentNode / width;
+		for(int direction = 0; direction < 4; direction++) {
+			int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+			int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+			if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height) {
+				continue;
+			}
+			int neighborNode = yNeighborValue * width + xNeighborValue;
+			if(!canStep(currentNode, neighborNode)) {
+				continue;
+			}
+			double time = forwardTime[currentNode] + map.getNeighborTime(currentX, currentY, direction);
+			if(time < forwardTime[neighborNode]) {
+				forwardTime[neighborNode] = time;
+				forwardParent[neighborNode] = currentNode;
+				double key = time + getPotential(neighborNode);
+				if(forwardOpen.contains(neighborNode)) {
+					forwardOpen.decreaseKey(neighborNode, key);
+				}else {
+					forwardOpen.add(neighborNode, key);
+				}
+				meet(neighborNode);
+			}
+		}
+	}
+
+	/**
+	 * Relax the steps into a pixel reached from the destination
+	 */
+
+	void expandBackward(int currentNode) {
+		expandedNodes++;
+		int currentX = currentNode % width;
+		int currentY = currentNode / width;
+		for(int direction = 0; direction < 4; direction++) {
+			int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+			int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+			if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height) {
+				continue;
+			}
+			int neighborNode = yNeighborValue * width + xNeighborValue;
+			if(!canStep(neighborNode, currentNode)) {
+				continue;
+			}
+			double time = backwardTime[currentNode] + map.getNeighborTime(xNeighborValue, yNeighborValue, direction ^ 1);
+			if(time < backwardTime[neighborNode]) {
+				backwardTime[neighborNode] = time;
+				backwardChild[neighborNode] = currentNode;
+				double key = time - getPotential(neighborNode);
+				if(backwardOpen.contains(neighborNode)) {
+					backwardOpen.decreaseKey(neighborNode, key);
+				}else {
+					backwardOpen.add(neighborNode, key);
+				}
+				meet(neighborNode);
+			}
+		}
+	}
+
+	/**
+	 * Keep the best path through a pixel that both searches have reached
+	 */
+
+	void meet(int node) {
+		double time = forwardTime[node] + backwardTime[node];
+		if(time < pathTime) {
+			pathTime = time;
+			meetingNode = node;
+		}
+	}
+
+	/**
+	 * Check whether a step is allowed. Like aStarSearch, a path may leave the
+	 * start and reach the destination whatever their terrain, but every other
+	 * pixel has to be passable
+	 */
+
+	boolean canStep(int currentNode, int neighborNode) {
+		return (currentNode == startNode || map.terrainSpeed[map.terrainClass[currentNode]] > 0)
+				&& (neighborNode == destinationNode || map.terrainSpeed[map.terrainClass[neighborNode]] > 0);
+	}
+
+	/**
+	 * Potential of a pixel, half the lower bound on the time to the destination
+	 * minus half the lower bound on the time from the start. The forward search
+	 * adds it to its keys and the backward search subtracts it
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @return						Potential of the pixel
+	 */
+
+	double getPotential(int node) {
+		return (map.getLowerBoundTime(node, destinationNode) - map.getLowerBoundTime(startNode, node)) / 2;
+	}
+
+}
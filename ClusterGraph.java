@@ -0,0 +1,357 @@
+/**
+ * Abstract graph of a season map for hierarchical search. The map is cut
+ * into square clusters, and every open stretch of a border between two
+ * clusters gets one or two entrance pixels on each side. Entrances are
+ * joined by the step across the border and by the fastest path inside
+ * their cluster, with the step times of Path.getNeighborTime
+ *
+ * The graph is built once per map and season and only read afterwards,
+ * so any number of legs can be searched on it at once
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+public class ClusterGraph {
+
+	static final int LONG_ENTRANCE = 6;
+
+	Path map;
+	int width;
+	int height;
+	int clusterSize;
+	int clustersX;
+	int clustersY;
+
+	int entranceCount = 0;
+	int[] entranceNode = new int[64];
+	int[][] clusterEntrances;
+	int[][] edgeTarget;
+	double[][] edgeTime;
+
+	/**
+	 * Creates an empty graph, build has to be called before it is searched
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @param 		clusterSize		Width and height of a cluster in pixels
+	 */
+
+	public ClusterGraph(Path map, int clusterSize) {
+		this.map = map;
+		this.clusterSize = clusterSize;
+		width = map.mapWidth;
+		height = map.mapHeight;
+		clustersX = (width + clusterSize - 1) / clusterSize;
+		clustersY = (height + clusterSize - 1) / clusterSize;
+	}
+
+	/**
+	 * Build the graph of a map. The paths inside the clusters are searched on several threads
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @param 		clusterSize		Width and height of a cluster in pixels
+	 *
+	 * @param 		parallelism		Number of threads, 1 to stay on the calling thread
+	 *
+	 * @return						Graph of the map
+	 */
+
+	public static ClusterGraph build(Path map, int clusterSize, int parallelism) {
+		ClusterGraph clusterGraph = new ClusterGraph(map, clusterSize);
+		Map<Integer, Integer> entranceIndex = new HashMap<Integer, Integer>();
+		List<int[]> borderSteps = new ArrayList<int[]>();
+		clusterGraph.findEntrances(entranceIndex, borderSteps);
+		clusterGraph.groupEntrances();
+		clusterGraph.connectEntrances(borderSteps, parallelism);
+		return clusterGraph;
+	}
+
+	/**
+	 * Find the open stretches of every border. A stretch shorter than
+	 * LONG_ENTRANCE gets one entrance in its middle, a longer one gets one
+	 * at each end
+	 */
+
+	void findEntrances(Map<Integer, Integer> entranceIndex, List<int[]> borderSteps) {
+		for(int clusterX = 1; clusterX < clustersX; clusterX++) {
+			int xCoordinate = clusterX * clusterSize;
+			for(int clusterY = 0; clusterY < clustersY; clusterY++) {
+				int firstY = clusterY * clusterSize;
+				int lastY = Math.min(height, firstY + clusterSize);
+				int runStart = -1;
+				for(int yCoordinate = firstY; yCoordinate <= lastY; yCoordinate++) {
+					boolean open = yCoordinate < lastY && isPassable(yCoordinate * width + xCoordinate - 1)
+							&& isPassable(yCoordinate * width + xCoordinate);
+					if(open && runStart == -1) {
+						runStart = yCoordinate;
+					}else if(!open && runStart != -1) {
+						for(int entranceY : getEntranceOffsets(runStart, yCoordinate)) {
+							int node = entranceY * width + xCoordinate;
+							borderSteps.add(new int[] {addEntrance(node - 1, entranceIndex), addEntrance(node, entranceIndex)});
+						}
+						runStart = -1;
+					}
+				}
+			}
+		}
+		for(int clusterY = 1; clusterY < clustersY; clusterY++) {
+			int yCoordinate = clusterY * clusterSize;
+			for(int clusterX = 0; clusterX < clustersX; clusterX++) {
+				int firstX = clusterX * clusterSize;
+				int lastX = Math.min(width, firstX + clusterSize);
+				int runStart = -1;
+				for(int xCoordinate = firstX; xCoordinate <= lastX; xCoordinate++) {
+					boolean open = xCoordinate < lastX && isPassable((yCoordinate - 1) * width + xCoordinate)
+							&& isPassable(yCoordinate * width + xCoordinate);
+					if(open && runStart == -1) {
+						runStart = xCoordinate;
+					}else if(!open && runStart != -1) {
+						for(int entranceX : getEntranceOffsets(runStart, xCoordinate)) {
+							int node = yCoordinate * width + entranceX;
+							borderSteps.add(new int[] {addEntrance(node - width, entranceIndex), addEntrance(node, entranceIndex)});
+						}
+						runStart = -1;
+					}
+				}
+			}
+		}
+	}
+
+	static int[] getEntranceOffsets(int runStart, int runEnd) {
+		if(runEnd - runStart < LONG_ENTRANCE) {
+			return new int[] {(runStart + runEnd - 1) / 2};
+		}
+		return new int[] {runStart, runEnd - 1};
+	}
+
+	int addEntrance(int node, Map<Integer, Integer> entranceIndex) {
+		Integer entrance = entranceIndex.get(node);
+		if(entrance != null) {
+			return entrance;
+		}
+		if(entranceCount == entranceNode.length) {
+			int[] grown = new int[entranceCount * 2];
+			System.arraycopy(entranceNode, 0, grown, 0, entranceCount);
+			entranceNode = grown;
+		}
+		entranceNode[entranceCount] = node;
+		entranceIndex.put(node, entranceCount);
+		return entranceCount++;
+	}
+
+	/**
+	 * List the entrances of every cluster
+	 */
+
+	void groupEntrances() {
+		int[] entrancesPerCluster = new int[clustersX * clustersY];
+		for(int entrance = 0; entrance < entranceCount; entrance++) {
+			entrancesPerCluster[getCluster(entranceNode[entrance])]++;
+		}
+		clusterEntrances = new int[clustersX * clustersY][];
+		for(int cluster = 0; cluster < clusterEntrances.length; cluster++) {
+			clusterEntrances[cluster] = new int[entrancesPerCluster[cluster]];
+			entrancesPerCluster[cluster] = 0;
+		}
+		for(int entrance = 0; entrance < entranceCount; entrance++) {
+			int cluster = getCluster(entranceNode[entrance]);
+			clusterEntrances[cluster][entrancesPerCluster[cluster]++] = entrance;
+		}
+	}
+
+	/**
+	 * Join every entrance to the entrances of its cluster it can reach and to
+	 * the entrance on the other side of its border
+	 */
+
+	void connectEntrances(List<int[]> borderSteps, int parallelism) {
+		edgeTarget = new int[entranceCount][];
+		edgeTime = new double[entranceCount][];
+		int[] borderStepCount = new int[entranceCount];
+		for(int[] borderStep : borderSteps) {
+			borderStepCount[borderStep[0]]++;
+			borderStepCount[borderStep[1]]++;
+		}
+
+		if(parallelism <= 1) {
+			for(int cluster = 0; cluster < clusterEntrances.length; cluster++) {
+				connectCluster(cluster, borderStepCount);
+			}
+		}else {
+			List<Callable<Void>> clusterTasks = new ArrayList<Callable<Void>>();
+			for(int cluster = 0; cluster < clusterEntrances.length; cluster++) {
+				int clusterId = cluster;
+				clusterTasks.add(() -> {
+					connectCluster(clusterId, borderStepCount);
+					return null;
+				});
+			}
+			Path.invokeAll(parallelism, clusterTasks, "building the cluster graph");
+		}
+
+		int[] edgeCount = new int[entranceCount];
+		for(int entrance = 0; entrance < entranceCount; entrance++) {
+			edgeCount[entrance] = edgeTarget[entrance].length - borderStepCount[entrance];
+		}
+		for(int[] borderStep : borderSteps) {
+			addBorderStep(borderStep[0], borderStep[1], edgeCount);
+			addBorderStep(borderStep[1], borderStep[0], edgeCount);
+		}
+	}
+
+	/**
+	 * Search the cluster from each of its entrances and keep the times to
+	 * the other entrances. The edge arrays leave room for the border steps
+	 */
+
+	void connectCluster(int cluster, int[] borderStepCount) {
+		int[] entrances = clusterEntrances[cluster];
+		double[] time = new double[clusterSize * clusterSize];
+		for(int entrance : entrances) {
+			clusterSearch(cluster, entranceNode[entrance], false, -1, -1, time);
+			int reachable = 0;
+			for(int otherEntrance : entrances) {
+				if(otherEntrance != entrance && time[getLocalNode(entranceNode[otherEntrance])] < Double.POSITIVE_INFINITY) {
+					reachable++;
+				}
+			}
+			int[] targets = new int[reachable + borderStepCount[entrance]];
+			double[] times = new double[targets.length];
+			int index = 0;
+			for(int otherEntrance : entrances) {
+				double otherTime = time[getLocalNode(entranceNode[otherEntrance])];
+				if(otherEntrance != entrance && otherTime < Double.POSITIVE_INFINITY) {
+					targets[index] = otherEntrance;
+					times[index++] = otherTime;
+				}
+			}
+			edgeTarget[entrance] = targets;
+			edgeTime[entrance] = times;
+		}
+	}
+
+	void addBorderStep(int fromEntrance, int toEntrance, int[] edgeCount) {
+		int fromNode = entranceNode[fromEntrance];
+		int toNode = entranceNode[toEntrance];
+		int direction = toNode - fromNode == 1 ? 0 : toNode - fromNode == -1 ? 1 : toNode > fromNode ? 2 : 3;
+		edgeTarget[fromEntrance][edgeCount[fromEntrance]] = toEntrance;
+		edgeTime[fromEntrance][edgeCount[fromEntrance]++] = map.getNeighborTime(fromNode % width, fromNode / width, direction);
+	}
+
+	/**
+	 * Fastest times between a pixel and every pixel of its cluster, without leaving the cluster
+	 *
+	 * @param 		cluster				Cluster id
+	 *
+	 * @param 		sourceNode			Node id the search starts from
+	 *
+	 * @param 		backward			True for the times to the source instead of from it
+	 *
+	 * @param 		startNode			Start of the leg, which may be left whatever its terrain, -1 for none
+	 *
+	 * @param 		destinationNode		Destination of the leg, which may be entered whatever its terrain, -1 for none
+	 *
+	 * @param 		time				Filled with the time of every pixel of the cluster, indexed by local node id
+	 *
+	 * @return							Number of nodes expanded
+	 */
+
+	int clusterSearch(int cluster, int sourceNode, boolean backward, int startNode, int destinationNode, double[] time) {
+		int firstX = (cluster % clustersX) * clusterSize;
+		int firstY = (cluster / clustersX) * clusterSize;
+		int lastX = Math.min(width, firstX + clusterSize);
+		int lastY = Math.min(height, firstY + clusterSize);
+		Arrays.fill(time, Double.POSITIVE_INFINITY);
+		BitSet closeNodes = new BitSet(time.length);
+		IndexedMinHeap openNodes = new IndexedMinHeap(time.length);
+		time[getLocalNode(sourceNode)] = 0.0;
+		openNodes.add(getLocalNode(sourceNode), 0.0);
+		int expanded = 0;
+
+		while(!openNodes.isEmpty()) {
+			int localNode = openNodes.poll();
+			closeNodes.set(localNode);
+			expanded++;
+			int currentX = firstX + localNode % clusterSize;
+			int currentY = firstY + localNode / clusterSize;
+			int currentNode = currentY * width + currentX;
+			for(int direction = 0; direction < 4; direction++) {
+				int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+				int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+				if(xNeighborValue < firstX || xNeighborValue >= lastX || yNeighborValue < firstY || yNeighborValue >= lastY) {
+					continue;
+				}
+				int neighborNode = yNeighborValue * width + xNeighborValue;
+				int neighborLocal = getLocalNode(neighborNode);
+				double stepTime;
+				if(backward) {
+					if(closeNodes.get(neighborLocal) || !canStep(neighborNode, currentNode, startNode, destinationNode)) {
+						continue;
+					}
+					stepTime = map.getNeighborTime(xNeighborValue, yNeighborValue, direction ^ 1);
+				}else {
+					if(closeNodes.get(neighborLocal) || !canStep(currentNode, neighborNode, startNode, destinationNode)) {
+						continue;
+					}
+					stepTime = map.getNeighborTime(currentX, currentY, direction);
+				}
+				double neighborTime = time[localNode] + stepTime;
+				if(neighborTime < time[neighborLocal]) {
+					time[neighborLocal] = neighborTime;
+					if(openNodes.contains(neighborLocal)) {
+						openNodes.decreaseKey(neighborLocal, neighborTime);
+					}else {
+						openNodes.add(neighborLocal, neighborTime);
+					}
+				}
+			}
+		}
+		return expanded;
+	}
+
+	/**
+	 * Check whether a step is allowed, the start may be left and the
+	 * destination entered whatever their terrain
+	 */
+
+	boolean canStep(int currentNode, int neighborNode, int startNode, int destinationNode) {
+		return (currentNode == startNode || isPassable(currentNode)) && (neighborNode == destinationNode || isPassable(neighborNode));
+	}
+
+	boolean isPassable(int node) {
+		return map.terrainSpeed[map.terrainClass[node]] > 0;
+	}
+
+	/**
+	 * Cluster of a pixel
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @return						Cluster id, row by row
+	 */
+
+	public int getCluster(int node) {
+		return (node / width / clusterSize) * clustersX + (node % width) / clusterSize;
+	}
+
+	/**
+	 * Position of a pixel inside its cluster
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @return						Local node id, row by row inside the cluster
+	 */
+
+	public int getLocalNode(int node) {
+		return ((node / width) % clusterSize) * clusterSize + (node % width) % clusterSize;
+	}
+
+}
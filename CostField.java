@@ -0,0 +1,245 @@
+/**
+ * Fastest time from every pixel of a season map to one control. The
+ * times are found once with Dijkstra's algorithm run back from the
+ * control, after which the route from any pixel is a walk that always
+ * takes the step with the smallest step time plus remaining time, so a
+ * runner who left the course gets a route without a new search
+ *
+ * The times are stored as float32, so a walk can take a step whose time
+ * differs from the fastest one by the rounding of the table, and steps
+ * shorter than that rounding leave neighbors with the same time. A walk
+ * may cross such a plateau, and it gives up only when the next step would
+ * lead to a pixel with a larger time or it has taken more steps than the
+ * map has pixels
+ *
+ * Binary layout (little-endian):
+ * 	magic "AWCF", version, width, height, node id of the control, the
+ * 	SHA-256 of the terrain, speeds and elevation as 64 hex characters, then
+ * 	the time of every pixel as float32 row by row. Unreachable pixels are
+ * 	stored as infinity
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class CostField {
+
+	static final int MAGIC = 0x46435741;
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 20 + EdgeTable.HASH_SIZE;
+
+	int width;
+	int height;
+	int controlNode;
+	String contentHash;
+	float[] time;
+
+	CostField(int width, int height, int controlNode, String contentHash, float[] time) {
+		this.width = width;
+		this.height = height;
+		this.controlNode = controlNode;
+		this.contentHash = contentHash;
+		this.time = time;
+	}
+
+	/**
+	 * Field of a control. With a directory the field is read from its file
+	 * there if it was written for the same terrain, speeds and elevation, and
+	 * is computed and written there otherwise
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @param 		weather			Current Weather
+	 *
+	 * @param 		xCoordinate		X Coordinate of the control
+	 *
+	 * @param 		yCoordinate		Y Coordinate of the control
+	 *
+	 * @param 		directory		Directory of the field files, null to only compute the field
+	 *
+	 * @return						Field of the control
+	 */
+
+	public static CostField forControl(Path map, String weather, int xCoordinate, int yCoordinate, File directory) {
+		int controlNode = yCoordinate * map.mapWidth + xCoordinate;
+		String contentHash = map.getContentHash();
+		File file = directory == null || map.mapPath == null ? null : new File(directory, new File(map.mapPath).getName() + "." + weather + "." + xCoordinate + "_" + yCoordinate + ".field");
+		if(file != null && file.exists()) {
+			try {
+				CostField costField = read(file);
+				if(costField.contentHash.equals(contentHash) && costField.controlNode == controlNode
+						&& costField.width == map.mapWidth && costField.height == map.mapHeight) {
+					return costField;
+				}
+			}catch(IOException exception) {
+				System.err.println("Rebuilding field, could not read " + file + ": " + exception.getMessage());
+			}
+		}
+		CostField costField = new CostField(map.mapWidth, map.mapHeight, controlNode, contentHash, LandmarkTable.getTimes(map, controlNode, true));
+		if(file != null) {
+			try {
+				directory.mkdirs();
+				costField.write(file);
+			}catch(IOException exception) {
+				System.err.println("Could not write " + file + ": " + exception.getMessage());
+			}
+		}
+		return costField;
+	}
+
+	/**
+	 * Fastest time from a pixel to the control. A pixel of impassable terrain
+	 * may still be left, so its time is that of its best step
+	 *
+	 * @param 		map				Map the field was computed on
+	 *
+	 * @param 		xCoordinate		X Coordinate of the pixel
+	 *
+	 * @param 		yCoordinate		Y Coordinate of the pixel
+	 *
+	 * @return						Time to the control, infinity if it cannot be reached
+	 */
+
+	public double getTime(Path map, int xCoordinate, int yCoordinate) {
+		int node = yCoordinate * width + xCoordinate;
+		if(time[node] < Float.POSITIVE_INFINITY) {
+			return time[node];
+		}
+		int nextNode = getNextNode(map, node);
+		return nextNode == -1 ? Double.POSITIVE_INFINITY : getStepTime(map, node, nextNode) + time[nextNode];
+	}
+
+	/**
+	 * Route from a pixel to the control
+	 *
+	 * @param 		map				Map the field was computed on
+	 *
+	 * @param 		xCoordinate		X Coordinate of the pixel
+	 *
+	 * @param 		yCoordinate		Y Coordinate of the pixel
+	 *
+	 * @return						Path coordinates in the order of aStarSearch, empty if the control
+	 * 								cannot be reached or the pixel is the control
+	 */
+
+	public int[] walk(Path map, int xCoordinate, int yCoordinate) {
+		int startNode = yCoordinate * width + xCoordinate;
+		if(startNode == controlNode) {
+			return new int[0];
+		}
+		int[] pathNodes = new int[64];
+		int pathLength = 0;
+		int currentNode = startNode;
+		while(currentNode != controlNode) {
+			int nextNode = getNextNode(map, currentNode);
+			if(nextNode == -1 || (currentNode != startNode && time[nextNode] > time[currentNode]) || pathLength == time.length) {
+				return new int[0];
+			}
+			if(nextNode != controlNode) {
+				if(pathLength == pathNodes.length) {
+					pathNodes = Arrays.copyOf(pathNodes, 2 * pathLength);
+				}
+				pathNodes[pathLength++] = nextNode;
+			}
+			currentNode = nextNode;
+		}
+		return Path.getPath(startNode, controlNode, pathNodes, pathLength, width);
+	}
+
+	/**
+	 * Step of a pixel with the smallest step time plus remaining time
+	 *
+	 * @return						Node id of the next pixel, -1 if no neighbor reaches the control
+	 */
+
+	int getNextNode(Path map, int currentNode) {
+		int currentX = currentNode % width;
+		int currentY = currentNode / width;
+		int nextNode = -1;
+		double nextTime = Double.POSITIVE_INFINITY;
+		for(int direction = 0; direction < 4; direction++) {
+			int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+			int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+			if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height) {
+				continue;
+			}
+			int neighborNode = yNeighborValue * width + xNeighborValue;
+			if(time[neighborNode] == Float.POSITIVE_INFINITY) {
+				continue;
+			}
+			double neighborTime = map.getNeighborTime(currentX, currentY, direction) + time[neighborNode];
+			if(neighborTime < nextTime) {
+				nextTime = neighborTime;
+				nextNode = neighborNode;
+			}
+		}
+		return nextNode;
+	}
+
+	double getStepTime(Path map, int currentNode, int nextNode) {
+		int currentX = currentNode % width;
+		int currentY = currentNode / width;
+		int nextX = nextNode % width;
+		int nextY = nextNode / width;
+		int direction = nextX > currentX ? 0 : nextX < currentX ? 1 : nextY > currentY ? 2 : 3;
+		return map.getNeighborTime(currentX, currentY, direction);
+	}
+
+	/**
+	 * Read a field written by write
+	 *
+	 * @param 		file			Field file
+	 *
+	 * @return						Field of the file
+	 *
+	 * @throws 		IOException		If the file is not a field file or is cut short
+	 */
+
+	public static CostField read(File file) throws IOException {
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if(channel.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a field file: " + file);
+			}
+			int width = buffer.getInt(8);
+			int height = buffer.getInt(12);
+			if(channel.size() != HEADER_SIZE + 4L * width * height) {
+				throw new IOException("Truncated field file: " + file);
+			}
+			byte[] hash = new byte[EdgeTable.HASH_SIZE];
+			buffer.position(20);
+			buffer.get(hash);
+			float[] time = new float[width * height];
+			buffer.asFloatBuffer().get(time);
+			return new CostField(width, height, buffer.getInt(16), new String(hash, StandardCharsets.US_ASCII), time);
+		}
+	}
+
+	/**
+	 * Write the field in the layout read by read. Requests of the route
+	 * service may read the file meanwhile, so it is written to a temporary
+	 * file that then replaces it
+	 *
+	 * @param 		file			Field file
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public void write(File file) throws IOException {
+		EdgeTable.writeMapped(file, HEADER_SIZE + 4L * time.length, buffer -> {
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(controlNode);
+			buffer.put(contentHash.getBytes(StandardCharsets.US_ASCII));
+			buffer.asFloatBuffer().put(time);
+		});
+	}
+
+}
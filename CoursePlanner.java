@@ -0,0 +1,79 @@
+/**
+ * Legs of a course that are kept up to date while the terrain changes.
+ * Every leg keeps its D* Lite search, so after a closure or a new mud or
+ * ice extent only the legs whose searches reached the changed pixels do
+ * real work, and they only repair the part of the search the change touched
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class CoursePlanner {
+
+	Path map;
+	List<DStarLite> legSearches = new ArrayList<DStarLite>();
+
+	/**
+	 * Creates the searches of every leg of a course
+	 *
+	 * @param 		map				Map of the season, changed only through changeTerrain
+	 *
+	 * @param 		controls		Control coordinates of the course
+	 */
+
+	public CoursePlanner(Path map, List<Integer> controls) {
+		this.map = map;
+		for(int index = 0; index < controls.size() - 3; index += 2) {
+			legSearches.add(new DStarLite(map, controls.get(index), controls.get(index + 1), controls.get(index + 2), controls.get(index + 3)));
+		}
+	}
+
+	/**
+	 * Path coordinates of every leg, searched the first time and repaired after that
+	 *
+	 * @return						Path coordinates of every leg in course order
+	 */
+
+	public List<int[]> solveLegs() {
+		List<Callable<int[]>> legs = new ArrayList<Callable<int[]>>();
+		for(DStarLite legSearch : legSearches) {
+			legs.add(() -> legSearch.search());
+		}
+		return Path.invokeAll(Math.max(1, Math.min(map.parallelism, legs.size())), legs, "solving the legs");
+	}
+
+	/**
+	 * Change the terrain of some pixels and repair every leg
+	 *
+	 * @param 		nodes			Node ids of the changed pixels
+	 *
+	 * @param 		terrain			New terrain class of the pixels
+	 *
+	 * @return						Path coordinates of every leg in course order
+	 */
+
+	public List<int[]> changeTerrain(int[] nodes, byte terrain) {
+		map.changeTerrain(nodes, terrain);
+		for(DStarLite legSearch : legSearches) {
+			legSearch.terrainChanged(nodes);
+		}
+		return solveLegs();
+	}
+
+	/**
+	 * Pixels expanded by the searches of all legs so far
+	 *
+	 * @return						Number of expanded pixels
+	 */
+
+	public long getExpandedNodes() {
+		long expandedNodes = 0;
+		for(DStarLite legSearch : legSearches) {
+			expandedNodes += legSearch.expandedNodes;
+		}
+		return expandedNodes;
+	}
+
+}
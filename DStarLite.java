@@ -0,0 +1,262 @@
+/**
+ * Incremental search of one leg with D* Lite. The search runs back from
+ * the destination and keeps the time to the destination of every pixel it
+ * reached. After the terrain of some pixels changes, only the pixels next
+ * to them get new times, and the search goes on from there until the time
+ * of the start is right again. A repair so costs about as much as the part
+ * of the leg the change touched, not a new search of the map
+ *
+ * The start of a leg never moves, so the key modifier of D* Lite for a
+ * moving start stays zero. The keys are the lower bound of the season from
+ * the start, which still holds after terrain changes, as every pixel keeps
+ * one of the terrain classes the bound was computed from
+ *
+ */
+
+import java.util.Arrays;
+
+public class DStarLite {
+
+	Path map;
+	int width;
+	int height;
+	int startNode;
+	int destinationNode;
+	double[] gValue;
+	double[] rhsValue;
+	LexicographicMinHeap openNodes;
+	long expandedNodes = 0;
+	double pathTime = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Creates the search of a leg, nothing is searched until search is called
+	 *
+	 * @param 		map				Map with the speeds of its season
+	 *
+	 * @param 		x1				X Coordinate of Start
+	 *
+	 * @param 		y1				Y Coordinate of Start
+	 *
+	 * @param 		x2				X Coordinate of Destination
+	 *
+	 * @param 		y2				Y Coordinate of Destination
+	 */
+
+	public DStarLite(Path map, int x1, int y1, int x2, int y2) {
+		this.map = map;
+		width = map.mapWidth;
+		height = map.mapHeight;
+		startNode = y1 * width + x1;
+		destinationNode = y2 * width + x2;
+		int nodeCount = width * height;
+		gValue = new double[nodeCount];
+		rhsValue = new double[nodeCount];
+		openNodes = new LexicographicMinHeap(nodeCount);
+		Arrays.fill(gValue, Double.POSITIVE_INFINITY);
+		Arrays.fill(rhsValue, Double.POSITIVE_INFINITY);
+		rhsValue[destinationNode] = 0.0;
+		openNodes.add(destinationNode, getHeuristic(destinationNode), 0.0);
+	}
+
+	/**
+	 * Find the path of the leg, or repair it after terrainChanged
+	 *
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the
+	 * 								destination cannot be reached
+	 */
+
+	public int[] search() {
+		if(startNode == destinationNode) {
+			return new int[0];
+		}
+		computeShortestPath();
+		pathTime = rhsValue[startNode];
+		if(pathTime == Double.POSITIVE_INFINITY) {
+			return new int[0];
+		}
+
+		int[] pathNodes = new int[64];
+		int pathLength = 0;
+		int currentNode = startNode;
+		while(currentNode != destinationNode) {
+			int nextNode = -1;
+			double nextTime = Double.POSITIVE_INFINITY;
+			int currentX = currentNode % width;
+			int currentY = currentNode / width;
+			for(int direction = 0; direction < 4; direction++) {
+				int neighborNode = getNeighbor(currentX, currentY, direction);
+				if(neighborNode == -1) {
+					continue;
+				}
+				double time = getStepTime(currentNode, neighborNode, direction) + gValue[neighborNode];
+				if(time < nextTime) {
+					nextTime = time;
+					nextNode = neighborNode;
+				}
+			}
+			if(nextNode == -1 || pathLength == gValue.length) {
+				throw new IllegalStateException("No descent from " + currentX + " " + currentY + " to the destination");
+			}
+			if(nextNode != destinationNode) {
+				if(pathLength == pathNodes.length) {
+					pathNodes = Arrays.copyOf(pathNodes, 2 * pathLength);
+				}
+				pathNodes[pathLength++] = nextNode;
+			}
+			currentNode = nextNode;
+		}
+		return Path.getPath(startNode, destinationNode, pathNodes, pathLength, width);
+	}
+
+	/**
+	 * Take in a change of the terrain of some pixels, after Path.changeTerrain.
+	 * The steps into and out of every changed pixel change, so the changed
+	 * pixels and their neighbors get their times from their steps again
+	 *
+	 * @param 		nodes			Node ids of the changed pixels
+	 */
+
+	public void terrainChanged(int[] nodes) {
+		for(int node : nodes) {
+			updateRhs(node);
+			int nodeX = node % width;
+			int nodeY = node / width;
+			for(int direction = 0; direction < 4; direction++) {
+				int neighborNode = getNeighbor(nodeX, nodeY, direction);
+				if(neighborNode != -1) {
+					updateRhs(neighborNode);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Expand pixels until the time of the start is consistent and no pixel
+	 * in the open list can lead to a faster start
+	 */
+
+	void computeShortestPath() {
+		while(!openNodes.isEmpty() && (lessThanStart(openNodes.peekFirstKey(), openNodes.peekSecondKey()) || rhsValue[startNode] > gValue[startNode])) {
+			double oldFirstKey = openNodes.peekFirstKey();
+			double oldSecondKey = openNodes.peekSecondKey();
+			int currentNode = openNodes.poll();
+			expandedNodes++;
+			double lowest = Math.min(gValue[currentNode], rhsValue[currentNode]);
+			double firstKey = lowest + getHeuristic(currentNode);
+			if(oldFirstKey < firstKey || (oldFirstKey == firstKey && oldSecondKey < lowest)) {
+				openNodes.add(currentNode, firstKey, lowest);
+				continue;
+			}
+
+			int currentX = currentNode % width;
+			int currentY = currentNode / width;
+			if(gValue[currentNode] > rhsValue[currentNode]) {
+				gValue[currentNode] = rhsValue[currentNode];
+				for(int direction = 0; direction < 4; direction++) {
+					int neighborNode = getNeighbor(currentX, currentY, direction);
+					if(neighborNode == -1 || neighborNode == destinationNode) {
+						continue;
+					}
+					double time = getStepTime(neighborNode, currentNode, direction ^ 1) + gValue[currentNode];
+					if(time < rhsValue[neighborNode]) {
+						rhsValue[neighborNode] = time;
+						updateVertex(neighborNode);
+					}
+				}
+			}else {
+				double oldGValue = gValue[currentNode];
+				gValue[currentNode] = Double.POSITIVE_INFINITY;
+				updateRhs(currentNode);
+				for(int direction = 0; direction < 4; direction++) {
+					int neighborNode = getNeighbor(currentX, currentY, direction);
+					if(neighborNode != -1 && rhsValue[neighborNode] == getStepTime(neighborNode, currentNode, direction ^ 1) + oldGValue) {
+						updateRhs(neighborNode);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Set the time of a pixel from its fastest step and put it in the open
+	 * list if it no longer agrees with the time of the pixel
+	 */
+
+	void updateRhs(int node) {
+		if(node != destinationNode) {
+			double rhs = Double.POSITIVE_INFINITY;
+			int nodeX = node % width;
+			int nodeY = node / width;
+			for(int direction = 0; direction < 4; direction++) {
+				int neighborNode = getNeighbor(nodeX, nodeY, direction);
+				if(neighborNode != -1) {
+					rhs = Math.min(rhs, getStepTime(node, neighborNode, direction) + gValue[neighborNode]);
+				}
+			}
+			rhsValue[node] = rhs;
+		}
+		updateVertex(node);
+	}
+
+	void updateVertex(int node) {
+		boolean consistent = gValue[node] == rhsValue[node];
+		if(!consistent) {
+			double lowest = Math.min(gValue[node], rhsValue[node]);
+			if(openNodes.contains(node)) {
+				openNodes.update(node, lowest + getHeuristic(node), lowest);
+			}else {
+				openNodes.add(node, lowest + getHeuristic(node), lowest);
+			}
+		}else if(openNodes.contains(node)) {
+			openNodes.remove(node);
+		}
+	}
+
+	boolean lessThanStart(double firstKey, double secondKey) {
+		double lowest = Math.min(gValue[startNode], rhsValue[startNode]);
+		return firstKey < lowest || (firstKey == lowest && secondKey < lowest);
+	}
+
+	/**
+	 * Lower bound on the time from the start to a pixel
+	 */
+
+	double getHeuristic(int node) {
+		int columnSteps = Math.abs(node % width - startNode % width);
+		int rowSteps = Math.abs(node / width - startNode / width);
+		return columnSteps * map.columnStepTime + rowSteps * map.rowStepTime;
+	}
+
+	int getNeighbor(int xCoordinate, int yCoordinate, int direction) {
+		int xNeighborValue = xCoordinate + Path.neighborOffsetX[direction];
+		int yNeighborValue = yCoordinate + Path.neighborOffsetY[direction];
+		if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height) {
+			return -1;
+		}
+		return yNeighborValue * width + xNeighborValue;
+	}
+
+	/**
+	 * Time of a step between neighbors, from Path.getNeighborTime like in the
+	 * other searches. Like aStarSearch, a path may leave the start and reach
+	 * the destination whatever their terrain, but every other pixel has to be
+	 * passable
+	 *
+	 * @param 		currentNode		Node id the step leaves
+	 *
+	 * @param 		neighborNode	Node id the step reaches
+	 *
+	 * @param 		direction		Direction of the step
+	 *
+	 * @return						Step time, infinity if the step is not allowed
+	 */
+
+	double getStepTime(int currentNode, int neighborNode, int direction) {
+		if((currentNode != startNode && map.terrainSpeed[map.terrainClass[currentNode]] <= 0)
+				|| (neighborNode != destinationNode && map.terrainSpeed[map.terrainClass[neighborNode]] <= 0)) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return map.getNeighborTime(currentNode % width, currentNode / width, direction);
+	}
+
+}
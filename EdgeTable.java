@@ -0,0 +1,232 @@
+/**
+ * Step times of a season map for the four directions of every pixel. A
+ * step time only depends on the two pixels, their elevation and the
+ * speeds of the season, so it is computed once per season and the searches
+ * look it up instead of taking the square root of the 3D distance at
+ * every relaxation. The times are kept as float64, so a search with the
+ * table finds exactly the paths it finds without it
+ *
+ * The table is kept in a file next to the map for every season and is
+ * only used again while the SHA-256 of the terrain, speeds and elevation
+ * it was written for still matches the map
+ *
+ * The four steps of every pixel are held in one array, so a map with more
+ * steps than an array holds, about 2^29 pixels, is searched without the
+ * table. A file is written through one mapping of at most 2 GB, so above
+ * about 2^26 pixels the table is only kept in memory
+ *
+ * Binary layout (little-endian):
+ * 	magic "AWET", version, width, height, the SHA-256 as 64 hex characters,
+ * 	then for every pixel row by row the times of its steps in directions 0
+ * 	to 3 of Path.neighborOffsetX as float64. The four steps of a pixel lie
+ * 	next to each other, as a search relaxes them together. Steps off the
+ * 	map are stored as infinity
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+public class EdgeTable {
+
+	static final int MAGIC = 0x54455741;
+	static final int VERSION = 1;
+	static final int HASH_SIZE = 64;
+	static final int HEADER_SIZE = 16 + HASH_SIZE;
+	static final int MAX_STEPS = Integer.MAX_VALUE - 8;
+
+	int width;
+	int height;
+	String contentHash;
+	double[] edgeTime;
+
+	EdgeTable(int width, int height, String contentHash, double[] edgeTime) {
+		this.width = width;
+		this.height = height;
+		this.contentHash = contentHash;
+		this.edgeTime = edgeTime;
+	}
+
+	/**
+	 * Table of a season map. It is read from the file next to the map if it
+	 * was written for the same terrain, speeds and elevation, and is computed
+	 * and written there otherwise
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @param 		weather			Current Weather
+	 *
+	 * @return						Step times of the map, null if it has more steps than a table holds
+	 */
+
+	public static EdgeTable forMap(Path map, String weather) {
+		if(4L * map.mapWidth * map.mapHeight > MAX_STEPS) {
+			System.err.println("Computing every step time, a step time table of " + map.mapWidth + "x" + map.mapHeight
+					+ " pixels has more steps than an array holds");
+			return null;
+		}
+		String contentHash = map.getContentHash();
+		File file = map.mapPath == null ? null : new File(map.mapPath + "." + weather + ".edges");
+		if(file != null && file.exists()) {
+			try {
+				EdgeTable edgeTable = read(file);
+				if(edgeTable.contentHash.equals(contentHash) && edgeTable.width == map.mapWidth && edgeTable.height == map.mapHeight) {
+					return edgeTable;
+				}
+			}catch(IOException exception) {
+				System.err.println("Rebuilding step times, could not read " + file + ": " + exception.getMessage());
+			}
+		}
+		EdgeTable edgeTable = build(map, contentHash);
+		if(file != null) {
+			try {
+				edgeTable.write(file);
+			}catch(IOException exception) {
+				System.err.println("Could not write " + file + ": " + exception.getMessage());
+			}
+		}
+		return edgeTable;
+	}
+
+	/**
+	 * Compute the time of every step with Path.computeEdgeTime
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @param 		contentHash		SHA-256 of the map
+	 *
+	 * @return						Step times of the map
+	 */
+
+	static EdgeTable build(Path map, String contentHash) {
+		int width = map.mapWidth;
+		int height = map.mapHeight;
+		if(4L * width * height > MAX_STEPS) {
+			throw new IllegalArgumentException("A step time table of " + width + "x" + height + " pixels has more steps than an array holds");
+		}
+		double[] edgeTime = new double[4 * width * height];
+		for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+			for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+				int node = yCoordinate * width + xCoordinate;
+				for(int direction = 0; direction < 4; direction++) {
+					int xNeighborValue = xCoordinate + Path.neighborOffsetX[direction];
+					int yNeighborValue = yCoordinate + Path.neighborOffsetY[direction];
+					edgeTime[4 * node + direction] = xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height
+							? Double.POSITIVE_INFINITY
+							: map.computeEdgeTime(xCoordinate, yCoordinate, xNeighborValue, yNeighborValue, 2 * direction);
+				}
+			}
+		}
+		return new EdgeTable(width, height, contentHash, edgeTime);
+	}
+
+	/**
+	 * Time of a step
+	 *
+	 * @param 		node			Node id of the pixel the step leaves
+	 *
+	 * @param 		direction		Direction of the step
+	 *
+	 * @return						Step time
+	 */
+
+	public double getTime(int node, int direction) {
+		return edgeTime[4 * node + direction];
+	}
+
+	/**
+	 * Read a table written by write
+	 *
+	 * @param 		file			Step time file
+	 *
+	 * @return						Step times of the file
+	 *
+	 * @throws 		IOException		If the file is not a step time file or is cut short
+	 */
+
+	public static EdgeTable read(File file) throws IOException {
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Step time file larger than 2 GB: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if(channel.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a step time file: " + file);
+			}
+			int width = buffer.getInt(8);
+			int height = buffer.getInt(12);
+			if(channel.size() != HEADER_SIZE + 32L * width * height) {
+				throw new IOException("Truncated step time file: " + file);
+			}
+			byte[] hash = new byte[HASH_SIZE];
+			buffer.position(16);
+			buffer.get(hash);
+			double[] edgeTime = new double[(int) (4L * width * height)];
+			buffer.asDoubleBuffer().get(edgeTime);
+			return new EdgeTable(width, height, new String(hash, StandardCharsets.US_ASCII), edgeTime);
+		}
+	}
+
+	/**
+	 * Write the table in the layout read by read
+	 *
+	 * @param 		file			Step time file
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public void write(File file) throws IOException {
+		writeMapped(file, HEADER_SIZE + 32L * width * height, buffer -> {
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+			buffer.put(contentHash.getBytes(StandardCharsets.US_ASCII));
+			buffer.asDoubleBuffer().put(edgeTime);
+		});
+	}
+
+	/**
+	 * Write a little-endian binary file through a mapping of a temporary file
+	 * in the same directory, which then replaces the file in one move. A run
+	 * reading the file sees the old or the new file but never a part of one,
+	 * and a failed write leaves the old file in place. One mapping holds at
+	 * most 2 GB, so a larger file is not written
+	 *
+	 * @param 		file			File to write
+	 *
+	 * @param 		size			Size of the file in bytes
+	 *
+	 * @param 		writer			Fills the mapped buffer from its start
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	static void writeMapped(File file, long size, Consumer<MappedByteBuffer> writer) throws IOException {
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException(size + " bytes do not fit in one mapping: " + file);
+		}
+		File temporaryFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			try(RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile, "rw");
+					FileChannel channel = randomAccessFile.getChannel()) {
+				randomAccessFile.setLength(size);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+				writer.accept(buffer);
+				buffer.force();
+			}
+			Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}finally {
+			Files.deleteIfExists(temporaryFile.toPath());
+		}
+	}
+
+}
@@ -0,0 +1,429 @@
+/**
+ * Elevation grid in the text mpp format or in a compact little-endian
+ * binary format. The binary file is written once from the text file and
+ * then memory-mapped on every run instead of parsing the text again
+ *
+ * Binary layout (little-endian):
+ * 	magic "AWOE", version, width, height, bytes per value (4 or 8),
+ * 	reserved, base elevation (float64), then width * height values row by row.
+ * Values are stored as float32 when every elevation converts to float32
+ * without loss, otherwise as float64, so loading always gives back the
+ * same doubles as parsing the text file.
+ *
+ * One mapping holds at most 2 GiB, so the values are mapped in bands of
+ * whole rows of at most bandBytes each and larger files load the same way.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Scanner;
+
+public class ElevationFile {
+
+	static final int MAGIC = 0x454F5741;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static long bandBytes = 1L << 30;
+
+	int width;
+	int height;
+	double[][] elevation;
+	double baseElevation;
+
+	public ElevationFile(int width, int height) {
+		this.width = width;
+		this.height = height;
+		elevation = new double[height][width];
+	}
+
+	/**
+	 * Parse the text elevation file. Values past the width of a line are skipped
+	 *
+	 * @param 		scanner			Scanner Object to load the file
+	 *
+	 * @param 		width			Number of values to keep from every line
+	 *
+	 * @param 		height			Number of lines to read
+	 *
+	 * @return						Parsed elevation grid
+	 */
+
+	public static ElevationFile readText(Scanner scanner, int width, int height) {
+		ElevationFile elevationFile = new ElevationFile(width, height);
+		double[][] elevation = elevationFile.elevation;
+		double baseElevation = 0;
+		for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+			for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+				elevation[yCoordinate][xCoordinate] = scanner.nextDouble();
+				if(xCoordinate == width - 1 && scanner.hasNextLine()) {
+					scanner.nextLine();
+				}
+			}
+			baseElevation = RasterKernels.kernels.baseElevation(elevation[yCoordinate], width, baseElevation);
+		}
+		elevationFile.baseElevation = baseElevation;
+		return elevationFile;
+	}
+
+	/**
+	 * Count the values of the first line and the number of lines of a text elevation file
+	 *
+	 * @param 		file			Text elevation file
+	 *
+	 * @return						Width and height of the grid
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public static int[] textDimensions(File file) throws IOException {
+		int width = 0;
+		int height = 0;
+		try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				line = line.trim();
+				if(line.isEmpty()) {
+					continue;
+				}
+				if(height == 0) {
+					width = line.split("\\s+").length;
+				}
+				height++;
+			}
+		}
+		return new int[] {width, height};
+	}
+
+	/**
+	 * Base elevation of the top left area of the grid
+	 *
+	 * @param 		areaWidth		Width of the area
+	 *
+	 * @param 		areaHeight		Height of the area
+	 *
+	 * @return						Lowest elevation in the area
+	 */
+
+	public double baseElevation(int areaWidth, int areaHeight) {
+		if(areaWidth == width && areaHeight == height) {
+			return baseElevation;
+		}
+		double areaBaseElevation = 0;
+		for(int yCoordinate = 0; yCoordinate < areaHeight; yCoordinate++) {
+			areaBaseElevation = RasterKernels.kernels.baseElevation(elevation[yCoordinate], areaWidth, areaBaseElevation);
+		}
+		return areaBaseElevation;
+	}
+
+	/**
+	 * Check whether a file starts with the binary elevation header
+	 *
+	 * @param 		file			File to check
+	 *
+	 * @return						True if the file is a binary elevation file
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public static boolean isBinary(File file) throws IOException {
+		try(FileInputStream input = new FileInputStream(file)) {
+			byte[] magic = new byte[4];
+			if(input.read(magic) != 4) {
+				return false;
+			}
+			return ByteBuffer.wrap(magic).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Load a binary elevation file through a memory-mapped channel
+	 *
+	 * @param 		file			Binary elevation file
+	 *
+	 * @return						Elevation grid
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public static ElevationFile readBinary(File file) throws IOException {
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			ByteBuffer header = readHeader(channel, file);
+			int width = header.getInt(8);
+			int height = header.getInt(12);
+			int valueBytes = header.getInt(16);
+
+			ElevationFile elevationFile = new ElevationFile(width, height);
+			elevationFile.baseElevation = header.getDouble(24);
+			float[] row = new float[width];
+			int bandRows = getBandRows(width, valueBytes);
+			for(int firstRow = 0; firstRow < height; firstRow += bandRows) {
+				int rows = Math.min(bandRows, height - firstRow);
+				MappedByteBuffer buffer = mapRows(channel, FileChannel.MapMode.READ_ONLY, width, valueBytes, firstRow, rows);
+				if(valueBytes == 8) {
+					DoubleBuffer values = buffer.asDoubleBuffer();
+					for(int yCoordinate = firstRow; yCoordinate < firstRow + rows; yCoordinate++) {
+						values.get(elevationFile.elevation[yCoordinate]);
+					}
+				}else {
+					FloatBuffer values = buffer.asFloatBuffer();
+					for(int yCoordinate = firstRow; yCoordinate < firstRow + rows; yCoordinate++) {
+						values.get(row);
+						double[] elevationRow = elevationFile.elevation[yCoordinate];
+						for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+							elevationRow[xCoordinate] = row[xCoordinate];
+						}
+					}
+				}
+			}
+			return elevationFile;
+		}
+	}
+
+	/**
+	 * Read and check the header of a binary elevation file
+	 *
+	 * @param 		channel			Channel of the file
+	 *
+	 * @param 		file			Binary elevation file, for the messages
+	 *
+	 * @return						Header in little-endian order
+	 *
+	 * @throws 		IOException		If the file is not a complete binary elevation file
+	 */
+
+	static ByteBuffer readHeader(FileChannel channel, File file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		channel.read(header, 0);
+		if(header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			throw new IOException("Not a binary elevation file: " + file);
+		}
+		int valueBytes = header.getInt(16);
+		if(valueBytes != 4 && valueBytes != 8) {
+			throw new IOException("Elevation values have to be 4 or 8 bytes, not " + valueBytes + ": " + file);
+		}
+		if(channel.size() != HEADER_SIZE + (long) header.getInt(8) * header.getInt(12) * header.getInt(16)) {
+			throw new IOException("Truncated binary elevation file: " + file);
+		}
+		return header;
+	}
+
+	/**
+	 * Number of whole rows in one mapped band, at least one
+	 */
+
+	static int getBandRows(int width, int valueBytes) {
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bandBytes / Math.max(1, (long) width * valueBytes)));
+	}
+
+	/**
+	 * Map a band of rows of a binary elevation file
+	 *
+	 * @param 		channel			Channel of the file
+	 *
+	 * @param 		mode			Read only, or read and write while the file is written
+	 *
+	 * @param 		width			Width of the grid
+	 *
+	 * @param 		valueBytes		Bytes per value
+	 *
+	 * @param 		firstRow		First row of the band
+	 *
+	 * @param 		rows			Number of rows in the band
+	 *
+	 * @return						Little-endian buffer of the band
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	static MappedByteBuffer mapRows(FileChannel channel, FileChannel.MapMode mode, int width, int valueBytes, int firstRow, int rows) throws IOException {
+		long rowBytes = (long) width * valueBytes;
+		MappedByteBuffer buffer = channel.map(mode, HEADER_SIZE + firstRow * rowBytes, rows * rowBytes);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * Write the grid in the binary format
+	 *
+	 * @param 		file			Output file
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public void writeBinary(File file) throws IOException {
+		int valueBytes = fitsFloat() ? 4 : 8;
+		long size = HEADER_SIZE + (long) width * height * valueBytes;
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			randomAccessFile.setLength(size);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(valueBytes).putInt(0);
+			header.putDouble(baseElevation);
+			header.flip();
+			while(header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			int bandRows = getBandRows(width, valueBytes);
+			for(int firstRow = 0; firstRow < height; firstRow += bandRows) {
+				int rows = Math.min(bandRows, height - firstRow);
+				MappedByteBuffer buffer = mapRows(channel, FileChannel.MapMode.READ_WRITE, width, valueBytes, firstRow, rows);
+				for(int yCoordinate = firstRow; yCoordinate < firstRow + rows; yCoordinate++) {
+					for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+						if(valueBytes == 8) {
+							buffer.putDouble(elevation[yCoordinate][xCoordinate]);
+						}else {
+							buffer.putFloat((float) elevation[yCoordinate][xCoordinate]);
+						}
+					}
+				}
+				buffer.force();
+			}
+		}
+	}
+
+	/**
+	 * Check whether every elevation survives a round trip through float32
+	 *
+	 * @return						True if float32 storage is lossless
+	 */
+
+	boolean fitsFloat() {
+		for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+			for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+				double value = elevation[yCoordinate][xCoordinate];
+				if((double) (float) value != value) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Convert a text elevation file to the binary format
+	 *
+	 * @param 		args		Text elevation file, binary output file, optional width and height
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2 && args.length != 4) {
+			System.out.println("Usage: java ElevationFile <elevation.txt> <elevation.bin> [width height]");
+			System.exit(0);
+		}
+		int[] dimensions;
+		if(args.length == 4) {
+			dimensions = new int[] {Integer.parseInt(args[2]), Integer.parseInt(args[3])};
+		}else {
+			dimensions = textDimensions(new File(args[0]));
+		}
+		ElevationFile elevationFile;
+		try(Scanner scanner = new Scanner(new FileInputStream(args[0]))) {
+			elevationFile = readText(scanner, dimensions[0], dimensions[1]);
+		}
+		elevationFile.writeBinary(new File(args[1]));
+		System.out.println("Wrote " + elevationFile.width + "x" + elevationFile.height + " elevations to " + args[1]
+				+ (elevationFile.fitsFloat() ? " as float32" : " as float64"));
+	}
+
+	/**
+	 * Reads an elevation file one row at a time, so large grids can be
+	 * processed without holding every value in memory
+	 *
+	 */
+
+	static class RowReader implements Closeable {
+
+		Scanner scanner;
+		RandomAccessFile randomAccessFile;
+		FileChannel channel;
+		MappedByteBuffer band;
+		int bandFirstRow = 0;
+		int bandRows = 0;
+		int gridWidth;
+		int gridHeight;
+		int valueBytes;
+		int row = 0;
+
+		/**
+		 * Open a text or binary elevation file
+		 *
+		 * @param 		file			Elevation file
+		 *
+		 * @throws 		IOException		To handle if an IO exception occurs
+		 */
+
+		RowReader(File file) throws IOException {
+			if(isBinary(file)) {
+				randomAccessFile = new RandomAccessFile(file, "r");
+				channel = randomAccessFile.getChannel();
+				ByteBuffer header = readHeader(channel, file);
+				gridWidth = header.getInt(8);
+				gridHeight = header.getInt(12);
+				valueBytes = header.getInt(16);
+			}else {
+				int[] dimensions = textDimensions(file);
+				gridWidth = dimensions[0];
+				gridHeight = dimensions[1];
+				scanner = new Scanner(new FileInputStream(file));
+			}
+		}
+
+		/**
+		 * Read the next row. Binary rows are mapped a band at a time, so the
+		 * positions inside a band stay below 2 GiB
+		 *
+		 * @param 		values			Receives the first values.length elevations of the row
+		 *
+		 * @throws 		IOException		To handle if an IO exception occurs
+		 */
+
+		void next(double[] values) throws IOException {
+			if(channel != null) {
+				if(band == null || row >= bandFirstRow + bandRows) {
+					bandFirstRow = row;
+					bandRows = Math.min(getBandRows(gridWidth, valueBytes), gridHeight - row);
+					band = mapRows(channel, FileChannel.MapMode.READ_ONLY, gridWidth, valueBytes, bandFirstRow, bandRows);
+				}
+				int offset = (row - bandFirstRow) * gridWidth * valueBytes;
+				for(int xCoordinate = 0; xCoordinate < values.length; xCoordinate++) {
+					int position = offset + xCoordinate * valueBytes;
+					values[xCoordinate] = valueBytes == 8 ? band.getDouble(position) : band.getFloat(position);
+				}
+			}else {
+				for(int xCoordinate = 0; xCoordinate < values.length; xCoordinate++) {
+					values[xCoordinate] = scanner.nextDouble();
+				}
+				if(scanner.hasNextLine()) {
+					scanner.nextLine();
+				}
+			}
+			row++;
+		}
+
+		public void close() throws IOException {
+			if(scanner != null) {
+				scanner.close();
+			}
+			if(randomAccessFile != null) {
+				randomAccessFile.close();
+			}
+		}
+
+	}
+
+}
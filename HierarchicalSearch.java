@@ -0,0 +1,299 @@
+/**
+ * Hierarchical search of one leg over a cluster graph. The start and the
+ * destination are joined to the entrances of their clusters, the fastest
+ * path over the entrances is found, and the pixel path is then searched
+ * only inside the clusters that path runs through
+ *
+ * Every step is scored with Path.getNeighborTime, the cost model of
+ * aStarSearch and getLegTime, and the pixel search is guided by the lower
+ * bound of the map and reopens pixels like aStarSearch with landmarks, so
+ * it is exact inside the corridor. The entrance path
+ * is one of the paths it may take, so the time of the leg is at least the
+ * fastest time of the map, which aStarSearch finds with landmarks, and at
+ * most entrancePathTime. It can be faster than aStarSearch without
+ * landmarks, whose straight line heuristic is inflated. The corridor is
+ * widened by a ring of clusters, so time is only lost where the fastest
+ * route strays more than a cluster from the entrance path
+ *
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class HierarchicalSearch {
+
+	static final int CORRIDOR_RING = 1;
+
+	ClusterGraph graph;
+	Path map;
+	int width;
+	long expandedNodes = 0;
+	SearchMetrics.Leg legMetrics;
+	double pathTime = Double.POSITIVE_INFINITY;
+	double entrancePathTime = Double.POSITIVE_INFINITY;
+
+	int startNode;
+	int destinationNode;
+
+	/**
+	 * Creates a search on the cluster graph of a map
+	 *
+	 * @param 		graph			Cluster graph of the map and its season
+	 */
+
+	public HierarchicalSearch(ClusterGraph graph) {
+		this.graph = graph;
+		map = graph.map;
+		width = graph.width;
+	}
+
+	/**
+	 * Find the path of a leg
+	 *
+	 * @param 		x1				X Coordinate of Start
+	 *
+	 * @param 		y1				Y Coordinate of Start
+	 *
+	 * @param 		x2				X Coordinate of Destination
+	 *
+	 * @param 		y2				Y Coordinate of Destination
+	 *
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the
+	 * 								destination cannot be reached
+	 */
+
+	public int[] search(int x1, int y1, int x2, int y2) {
+		startNode = y1 * width + x1;
+		destinationNode = y2 * width + x2;
+		if(startNode == destinationNode) {
+			return new int[0];
+		}
+		boolean[] corridor = findCorridor();
+		if(corridor == null) {
+			return new int[0];
+		}
+		return searchCorridor(corridor);
+	}
+
+	/**
+	 * Search the entrance graph with the start and the destination added to it
+	 *
+	 * @return						Clusters the entrance path runs through, null if there is none
+	 */
+
+	boolean[] findCorridor() {
+		int entranceCount = graph.entranceCount;
+		int startEntrance = entranceCount;
+		int destinationEntrance = entranceCount + 1;
+		int startCluster = graph.getCluster(startNode);
+		int destinationCluster = graph.getCluster(destinationNode);
+		int clusterArea = graph.clusterSize * graph.clusterSize;
+
+		double[] startTime = new double[clusterArea];
+		double[] destinationTime = new double[clusterArea];
+		expandedNodes += graph.clusterSearch(startCluster, startNode, false, startNode, destinationNode, startTime);
+		expandedNodes += graph.clusterSearch(destinationCluster, destinationNode, true, startNode, destinationNode, destinationTime);
+
+		double[] gValue = new double[entranceCount + 2];
+		int[] parentEntrance = new int[entranceCount + 2];
+		BitSet closeNodes = new BitSet(entranceCount + 2);
+		IndexedMinHeap openNodes = new IndexedMinHeap(entranceCount + 2);
+		Arrays.fill(gValue, Double.POSITIVE_INFINITY);
+		Arrays.fill(parentEntrance, -1);
+		gValue[startEntrance] = 0.0;
+		openNodes.add(startEntrance, map.getLowerBoundTime(startNode, destinationNode));
+
+		while(!openNodes.isEmpty()) {
+			int currentEntrance = openNodes.poll();
+			if(currentEntrance == destinationEntrance) {
+				break;
+			}
+			closeNodes.set(currentEntrance);
+			expandedNodes++;
+			if(currentEntrance == startEntrance) {
+				for(int entrance : graph.clusterEntrances[startCluster]) {
+					relax(currentEntrance, entrance, startTime[graph.getLocalNode(graph.entranceNode[entrance])], gValue, parentEntrance, closeNodes, openNodes);
+				}
+				if(startCluster == destinationCluster) {
+					relax(currentEntrance, destinationEntrance, startTime[graph.getLocalNode(destinationNode)], gValue, parentEntrance, closeNodes, openNodes);
+				}
+				continue;
+			}
+			int[] targets = graph.edgeTarget[currentEntrance];
+			double[] times = graph.edgeTime[currentEntrance];
+			for(int index = 0; index < targets.length; index++) {
+				relax(currentEntrance, targets[index], times[index], gValue, parentEntrance, closeNodes, openNodes);
+			}
+			int currentNode = graph.entranceNode[currentEntrance];
+			if(graph.getCluster(currentNode) == destinationCluster) {
+				relax(currentEntrance, destinationEntrance, destinationTime[graph.getLocalNode(currentNode)], gValue, parentEntrance, closeNodes, openNodes);
+			}
+		}
+		if(legMetrics != null) {
+			legMetrics.addHeap(openNodes);
+		}
+
+		if(gValue[destinationEntrance] == Double.POSITIVE_INFINITY) {
+			return null;
+		}
+		entrancePathTime = gValue[destinationEntrance];
+		boolean[] corridor = new boolean[graph.clustersX * graph.clustersY];
+		markCorridor(corridor, startCluster);
+		markCorridor(corridor, destinationCluster);
+		for(int entrance = parentEntrance[destinationEntrance]; entrance != startEntrance; entrance = parentEntrance[entrance]) {
+			markCorridor(corridor, graph.getCluster(graph.entranceNode[entrance]));
+		}
+		return corridor;
+	}
+
+	/**
+	 * Add a cluster and the clusters around it to the corridor
+	 */
+
+	void markCorridor(boolean[] corridor, int cluster) {
+		int clusterX = cluster % graph.clustersX;
+		int clusterY = cluster / graph.clustersX;
+		for(int aroundY = Math.max(0, clusterY - CORRIDOR_RING); aroundY <= Math.min(graph.clustersY - 1, clusterY + CORRIDOR_RING); aroundY++) {
+			for(int aroundX = Math.max(0, clusterX - CORRIDOR_RING); aroundX <= Math.min(graph.clustersX - 1, clusterX + CORRIDOR_RING); aroundX++) {
+				corridor[aroundY * graph.clustersX + aroundX] = true;
+			}
+		}
+	}
+
+	void relax(int currentEntrance, int entrance, double stepTime, double[] gValue, int[] parentEntrance, BitSet closeNodes, IndexedMinHeap openNodes) {
+		if(stepTime == Double.POSITIVE_INFINITY || closeNodes.get(entrance)) {
+			return;
+		}
+		double time = gValue[currentEntrance] + stepTime;
+		if(time < gValue[entrance]) {
+			gValue[entrance] = time;
+			parentEntrance[entrance] = currentEntrance;
+			int node = entrance < graph.entranceCount ? graph.entranceNode[entrance] : destinationNode;
+			double fValue = time + map.getLowerBoundTime(node, destinationNode);
+			if(openNodes.contains(entrance)) {
+				openNodes.decreaseKey(entrance, fValue);
+			}else {
+				openNodes.add(entrance, fValue);
+			}
+		}
+	}
+
+	/**
+	 * A Star over the pixels of the corridor only. The pixels of the corridor
+	 * are numbered cluster by cluster, so the arrays follow its size and not
+	 * the size of the map. The float landmark tables can be off by a rounding
+	 * step, so with them a pixel reached faster after it was closed is
+	 * opened again, as in aStarSearch
+	 *
+	 * @param 		corridor		Clusters the search may enter
+	 *
+	 * @return						Path coordinates of the leg
+	 */
+
+	int[] searchCorridor(boolean[] corridor) {
+		int clusterArea = graph.clusterSize * graph.clusterSize;
+		int[] corridorSlot = new int[corridor.length];
+		int slotCount = 0;
+		for(int cluster = 0; cluster < corridor.length; cluster++) {
+			corridorSlot[cluster] = corridor[cluster] ? slotCount++ : -1;
+		}
+		int[] slotCluster = new int[slotCount];
+		for(int cluster = 0; cluster < corridor.length; cluster++) {
+			if(corridorSlot[cluster] != -1) {
+				slotCluster[corridorSlot[cluster]] = cluster;
+			}
+		}
+
+		int corridorSize = slotCount * clusterArea;
+		double[] gValue = new double[corridorSize];
+		int[] parentNode = new int[corridorSize];
+		BitSet closeNodes = new BitSet(corridorSize);
+		IndexedMinHeap openNodes = new IndexedMinHeap(corridorSize);
+		Arrays.fill(gValue, Double.POSITIVE_INFINITY);
+		Arrays.fill(parentNode, -1);
+
+		boolean reopen = map.landmarkTable != null;
+		int start = getCorridorNode(startNode, corridorSlot);
+		int destination = getCorridorNode(destinationNode, corridorSlot);
+		gValue[start] = 0.0;
+		openNodes.add(start, map.getLowerBoundTime(startNode, destinationNode));
+
+		while(!openNodes.isEmpty()) {
+			int current = openNodes.poll();
+			if(current == destination) {
+				break;
+			}
+			closeNodes.set(current);
+			expandedNodes++;
+			int currentNode = getMapNode(current, slotCluster);
+			int currentX = currentNode % width;
+			int currentY = currentNode / width;
+			for(int direction = 0; direction < 4; direction++) {
+				int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+				int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+				if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= graph.height) {
+					continue;
+				}
+				int neighborNode = yNeighborValue * width + xNeighborValue;
+				if(corridorSlot[graph.getCluster(neighborNode)] == -1) {
+					continue;
+				}
+				int neighbor = getCorridorNode(neighborNode, corridorSlot);
+				if(closeNodes.get(neighbor) && !reopen || !graph.canStep(currentNode, neighborNode, startNode, destinationNode)) {
+					continue;
+				}
+				double time = gValue[current] + map.getNeighborTime(currentX, currentY, direction);
+				if(time < gValue[neighbor]) {
+					closeNodes.clear(neighbor);
+					gValue[neighbor] = time;
+					parentNode[neighbor] = current;
+					double fValue = time + map.getLowerBoundTime(neighborNode, destinationNode);
+					if(openNodes.contains(neighbor)) {
+						openNodes.decreaseKey(neighbor, fValue);
+					}else {
+						openNodes.add(neighbor, fValue);
+					}
+				}
+			}
+		}
+		if(legMetrics != null) {
+			legMetrics.addHeap(openNodes);
+		}
+
+		pathTime = gValue[destination];
+		if(pathTime == Double.POSITIVE_INFINITY) {
+			return new int[0];
+		}
+		int pathLength = 2;
+		for(int node = parentNode[destination]; parentNode[node] != -1; node = parentNode[node]) {
+			pathLength++;
+		}
+		int[] legCoordinates = new int[2 * pathLength];
+		legCoordinates[0] = destinationNode % width;
+		legCoordinates[1] = destinationNode / width;
+		int lastNode = getMapNode(parentNode[destination], slotCluster);
+		legCoordinates[2] = lastNode % width;
+		legCoordinates[3] = lastNode / width;
+		int index = 4;
+		for(int node = parentNode[destination]; parentNode[node] != -1; node = parentNode[node]) {
+			int mapNode = getMapNode(node, slotCluster);
+			legCoordinates[index++] = mapNode % width;
+			legCoordinates[index++] = mapNode / width;
+		}
+		return legCoordinates;
+	}
+
+	int getCorridorNode(int node, int[] corridorSlot) {
+		return corridorSlot[graph.getCluster(node)] * graph.clusterSize * graph.clusterSize + graph.getLocalNode(node);
+	}
+
+	int getMapNode(int corridorNode, int[] slotCluster) {
+		int clusterArea = graph.clusterSize * graph.clusterSize;
+		int cluster = slotCluster[corridorNode / clusterArea];
+		int localNode = corridorNode % clusterArea;
+		int xCoordinate = (cluster % graph.clustersX) * graph.clusterSize + localNode % graph.clusterSize;
+		int yCoordinate = (cluster / graph.clustersX) * graph.clusterSize + localNode / graph.clusterSize;
+		return yCoordinate * width + xCoordinate;
+	}
+
+}
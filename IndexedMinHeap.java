@@ -0,0 +1,232 @@
+/**
+ * Binary min heap of node ids keyed by their f value. Every node
+ * keeps its position in the heap, so lookups and decrease-key
+ * operations never have to search the heap for a value
+ *
+ * The heap counts its inserts and decrease-keys and keeps its largest
+ * size, for the search metrics
+ *
+ */
+
+import java.util.Arrays;
+
+public class IndexedMinHeap {
+
+	int[] heapNodes;
+	double[] heapKeys;
+	int[] nodePosition;
+	int size = 0;
+	long pushCount = 0;
+	long decreaseKeyCount = 0;
+	int peakSize = 0;
+
+	/**
+	 * Creates an empty heap for node ids in the range [0, nodeCount)
+	 *
+	 * @param 		nodeCount		Number of nodes in the grid
+	 */
+
+	public IndexedMinHeap(int nodeCount) {
+		this();
+		nodePosition = new int[nodeCount];
+		Arrays.fill(nodePosition, -1);
+	}
+
+	/**
+	 * Creates an empty heap for subclasses that store node positions themselves
+	 */
+
+	IndexedMinHeap() {
+		heapNodes = new int[16];
+		heapKeys = new double[16];
+	}
+
+	/**
+	 * Check whether the heap is empty
+	 *
+	 * @return						True if no node is left in the heap
+	 */
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Number of nodes in the heap
+	 *
+	 * @return						Heap size
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Check whether the node is currently in the heap
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @return						True if the node is in the heap
+	 */
+
+	public boolean contains(int node) {
+		return position(node) >= 0;
+	}
+
+	/**
+	 * Key of a node that is currently in the heap
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @return						Key of the node
+	 */
+
+	public double key(int node) {
+		return heapKeys[position(node)];
+	}
+
+	/**
+	 * Insert a node that is not in the heap yet
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @param 		key				Key of the node
+	 */
+
+	public void add(int node, double key) {
+		if(size == heapNodes.length) {
+			heapNodes = Arrays.copyOf(heapNodes, size * 2);
+			heapKeys = Arrays.copyOf(heapKeys, size * 2);
+		}
+		heapNodes[size] = node;
+		heapKeys[size] = key;
+		setPosition(node, size);
+		siftUp(size++);
+		pushCount++;
+		if(size > peakSize) {
+			peakSize = size;
+		}
+	}
+
+	/**
+	 * Lower the key of a node that is already in the heap
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @param 		key				New key, not greater than the current key
+	 */
+
+	public void decreaseKey(int node, double key) {
+		int position = position(node);
+		heapKeys[position] = key;
+		siftUp(position);
+		decreaseKeyCount++;
+	}
+
+	/**
+	 * Key of the node at the top of the heap
+	 *
+	 * @return						Lowest key in the heap
+	 */
+
+	public double peekKey() {
+		return heapKeys[0];
+	}
+
+	/**
+	 * Remove the node with the lowest key
+	 *
+	 * @return						Node id with the lowest key
+	 */
+
+	public int poll() {
+		int lowestNode = heapNodes[0];
+		setPosition(lowestNode, -1);
+		size--;
+		if(size > 0) {
+			heapNodes[0] = heapNodes[size];
+			heapKeys[0] = heapKeys[size];
+			setPosition(heapNodes[0], 0);
+			siftDown(0);
+		}
+		return lowestNode;
+	}
+
+	/**
+	 * Heap position of a node
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @return						Position in the heap, -1 if the node is not in the heap
+	 */
+
+	int position(int node) {
+		return nodePosition[node];
+	}
+
+	/**
+	 * Store the heap position of a node
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @param 		position		Position in the heap, -1 to remove the node
+	 */
+
+	void setPosition(int node, int position) {
+		nodePosition[node] = position;
+	}
+
+	/**
+	 * Move an entry up until its parent has a lower or equal key
+	 *
+	 * @param 		position		Heap position of the entry
+	 */
+
+	void siftUp(int position) {
+		int node = heapNodes[position];
+		double key = heapKeys[position];
+		while(position > 0) {
+			int parent = (position - 1) >> 1;
+			if(heapKeys[parent] <= key) {
+				break;
+			}
+			heapNodes[position] = heapNodes[parent];
+			heapKeys[position] = heapKeys[parent];
+			setPosition(heapNodes[position], position);
+			position = parent;
+		}
+		heapNodes[position] = node;
+		heapKeys[position] = key;
+		setPosition(node, position);
+	}
+
+	/**
+	 * Move an entry down until both children have a greater or equal key
+	 *
+	 * @param 		position		Heap position of the entry
+	 */
+
+	void siftDown(int position) {
+		int node = heapNodes[position];
+		double key = heapKeys[position];
+		int half = size >> 1;
+		while(position < half) {
+			int child = 2 * position + 1;
+			int right = child + 1;
+			if(right < size && heapKeys[right] < heapKeys[child]) {
+				child = right;
+			}
+			if(key <= heapKeys[child]) {
+				break;
+			}
+			heapNodes[position] = heapNodes[child];
+			heapKeys[position] = heapKeys[child];
+			setPosition(heapNodes[position], position);
+			position = child;
+		}
+		heapNodes[position] = node;
+		heapKeys[position] = key;
+		setPosition(node, position);
+	}
+
+}
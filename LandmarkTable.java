@@ -0,0 +1,394 @@
+/**
+ * Landmark tables for the ALT lower bound of a season map. A few pixels
+ * far apart are picked as landmarks and the fastest time from every
+ * landmark to every pixel is found with Dijkstra's algorithm. By the
+ * triangle inequality the time from a pixel to the destination is at
+ * least the difference of their times from any landmark, which is a far
+ * tighter bound than the straight line around water and impassable land
+ *
+ * Fall is the only season whose step times depend on the direction, so
+ * its tables also hold the time from every pixel to each landmark.
+ *
+ * Binary layout (little-endian):
+ * 	magic "AWOL", version, width, height, landmark count, directions (1 or 2),
+ * 	number of landmarks asked for, the SHA-256 of the terrain, speeds and
+ * 	elevation as 64 hex characters, the landmark node ids, then per landmark
+ * 	the times from it and, for 2 directions, the times to it as float32 row
+ * 	by row. Unreachable pixels are stored as infinity. Fewer landmarks than
+ * 	asked for are found when the map has fewer reachable pixels to spread
+ * 	them over
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class LandmarkTable {
+
+	static final int MAGIC = 0x4C4F5741;
+	static final int VERSION = 3;
+	static final int HEADER_SIZE = 28 + EdgeTable.HASH_SIZE;
+
+	int width;
+	int height;
+	String contentHash;
+	int requestedCount;
+	int[] landmarkNode;
+	float[][] fromLandmark;
+	float[][] toLandmark;
+
+	LandmarkTable(int width, int height, int landmarkCount, boolean directed, String contentHash) {
+		this.width = width;
+		this.height = height;
+		this.contentHash = contentHash;
+		landmarkNode = new int[landmarkCount];
+		fromLandmark = new float[landmarkCount][];
+		toLandmark = directed ? new float[landmarkCount][] : fromLandmark;
+	}
+
+	/**
+	 * Tables of a season map. They are read from the file next to the map
+	 * if it was written for the same terrain, speeds and elevation, and are
+	 * computed and written there otherwise
+	 *
+	 * @param 		map					Map with the terrain and speeds of its season
+	 *
+	 * @param 		weather				Current Weather
+	 *
+	 * @param 		landmarkCount		Number of landmarks
+	 *
+	 * @return							Landmark tables of the map
+	 */
+
+	public static LandmarkTable forMap(Path map, String weather, int landmarkCount) {
+		String contentHash = map.getContentHash();
+		File file = map.mapPath == null ? null : new File(map.mapPath + "." + weather + ".landmarks");
+		if(file != null && file.exists()) {
+			try {
+				LandmarkTable landmarkTable = read(file);
+				if(landmarkTable.contentHash.equals(contentHash) && landmarkTable.requestedCount == landmarkCount
+						&& landmarkTable.width == map.mapWidth && landmarkTable.height == map.mapHeight) {
+					return landmarkTable;
+				}
+			}catch(IOException exception) {
+				System.err.println("Rebuilding landmarks, could not read " + file + ": " + exception.getMessage());
+			}
+		}
+		LandmarkTable landmarkTable = build(map, landmarkCount, contentHash);
+		if(file != null) {
+			try {
+				landmarkTable.write(file);
+			}catch(IOException exception) {
+				System.err.println("Could not write " + file + ": " + exception.getMessage());
+			}
+		}
+		return landmarkTable;
+	}
+
+	/**
+	 * Pick the landmarks and find their times. Every landmark is the pixel
+	 * whose time from the closest landmark picked so far is the largest; the
+	 * first is the pixel farthest from the middle of the map
+	 *
+	 * @param 		map					Map with the terrain and speeds of its season
+	 *
+	 * @param 		requestedCount		Number of landmarks to place
+	 *
+	 * @param 		contentHash			SHA-256 of the map
+	 *
+	 * @return							Landmark tables of the map
+	 */
+
+	static LandmarkTable build(Path map, int requestedCount, String contentHash) {
+		int nodeCount = map.mapWidth * map.mapHeight;
+		List<Integer> landmarks = new ArrayList<Integer>();
+		List<float[]> landmarkTimes = new ArrayList<float[]>();
+		float[] closestTime = new float[nodeCount];
+		Arrays.fill(closestTime, Float.POSITIVE_INFINITY);
+		int landmark = getFarthestNode(getTimes(map, getMiddleNode(map), false));
+		while(landmarks.size() < requestedCount && landmark != -1) {
+			float[] times = getTimes(map, landmark, false);
+			landmarks.add(landmark);
+			landmarkTimes.add(times);
+			for(int node = 0; node < nodeCount; node++) {
+				closestTime[node] = Math.min(closestTime[node], times[node]);
+			}
+			landmark = getFarthestNode(closestTime);
+		}
+
+		boolean directed = isDirected(map.speedTable);
+		int landmarkCount = landmarks.size();
+		LandmarkTable landmarkTable = new LandmarkTable(map.mapWidth, map.mapHeight, landmarkCount, directed, contentHash);
+		landmarkTable.requestedCount = requestedCount;
+		for(int index = 0; index < landmarkCount; index++) {
+			landmarkTable.landmarkNode[index] = landmarks.get(index);
+			landmarkTable.fromLandmark[index] = landmarkTimes.get(index);
+		}
+		if(directed) {
+			List<Callable<float[]>> backwardSearches = new ArrayList<Callable<float[]>>();
+			for(int index = 0; index < landmarkCount; index++) {
+				int node = landmarkTable.landmarkNode[index];
+				backwardSearches.add(() -> getTimes(map, node, true));
+			}
+			List<float[]> times = Path.invokeAll(Math.max(1, Math.min(map.parallelism, landmarkCount)), backwardSearches, "building the landmarks");
+			for(int index = 0; index < landmarkCount; index++) {
+				landmarkTable.toLandmark[index] = times.get(index);
+			}
+		}
+		return landmarkTable;
+	}
+
+	/**
+	 * Fastest time between a pixel and every other pixel over passable terrain
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @param 		sourceNode		Node id of the pixel
+	 *
+	 * @param 		backward		True for the times to the pixel instead of from it
+	 *
+	 * @return						Time of every pixel, infinity if it cannot be reached
+	 */
+
+	static float[] getTimes(Path map, int sourceNode, boolean backward) {
+		int width = map.mapWidth;
+		int height = map.mapHeight;
+		int nodeCount = width * height;
+		double[] time = new double[nodeCount];
+		BitSet closeNodes = new BitSet(nodeCount);
+		IndexedMinHeap openNodes = new IndexedMinHeap(nodeCount);
+		Arrays.fill(time, Double.POSITIVE_INFINITY);
+		time[sourceNode] = 0.0;
+		openNodes.add(sourceNode, 0.0);
+
+		while(!openNodes.isEmpty()) {
+			int currentNode = openNodes.poll();
+			closeNodes.set(currentNode);
+			int currentX = currentNode % width;
+			int currentY = currentNode / width;
+			for(int direction = 0; direction < 4; direction++) {
+				int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+				int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+				if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height) {
+					continue;
+				}
+				int neighborNode = yNeighborValue * width + xNeighborValue;
+				if(closeNodes.get(neighborNode) || map.terrainSpeed[map.terrainClass[neighborNode]] <= 0) {
+					continue;
+				}
+				double stepTime = backward
+						? map.getNeighborTime(xNeighborValue, yNeighborValue, direction ^ 1)
+						: map.getNeighborTime(currentX, currentY, direction);
+				double neighborTime = time[currentNode] + stepTime;
+				if(neighborTime < time[neighborNode]) {
+					time[neighborNode] = neighborTime;
+					if(openNodes.contains(neighborNode)) {
+						openNodes.decreaseKey(neighborNode, neighborTime);
+					}else {
+						openNodes.add(neighborNode, neighborTime);
+					}
+				}
+			}
+		}
+
+		float[] times = new float[nodeCount];
+		for(int node = 0; node < nodeCount; node++) {
+			times[node] = (float) time[node];
+		}
+		return times;
+	}
+
+	/**
+	 * Passable pixel closest to the middle of the map, searched in growing squares
+	 */
+
+	static int getMiddleNode(Path map) {
+		int middleX = map.mapWidth / 2;
+		int middleY = map.mapHeight / 2;
+		for(int radius = 0; radius <= Math.max(map.mapWidth, map.mapHeight); radius++) {
+			for(int yCoordinate = Math.max(0, middleY - radius); yCoordinate <= Math.min(map.mapHeight - 1, middleY + radius); yCoordinate++) {
+				for(int xCoordinate = Math.max(0, middleX - radius); xCoordinate <= Math.min(map.mapWidth - 1, middleX + radius); xCoordinate++) {
+					int node = yCoordinate * map.mapWidth + xCoordinate;
+					if(map.terrainSpeed[map.terrainClass[node]] > 0) {
+						return node;
+					}
+				}
+			}
+		}
+		return 0;
+	}
+
+	static int getFarthestNode(float[] times) {
+		int farthestNode = -1;
+		float farthestTime = 0;
+		for(int node = 0; node < times.length; node++) {
+			if(times[node] > farthestTime && times[node] < Float.POSITIVE_INFINITY) {
+				farthestTime = times[node];
+				farthestNode = node;
+			}
+		}
+		return farthestNode;
+	}
+
+	/**
+	 * Check whether a step takes a different time in the two directions,
+	 * which is the case when the speed table has more than one row
+	 */
+
+	static boolean isDirected(double[][] speedTable) {
+		for(double[] speed : speedTable) {
+			if(!Arrays.equals(speed, speedTable[0])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Lower bound on the time between two pixels from every landmark. The
+	 * times are stored as float32, so the rounding of both times is taken off
+	 *
+	 * @param 		fromNode		Node id of the first pixel
+	 *
+	 * @param 		toNode			Node id of the second pixel
+	 *
+	 * @return						Time no path between the pixels can beat
+	 */
+
+	public double getLowerBound(int fromNode, int toNode) {
+		double lowerBound = 0;
+		for(int index = 0; index < landmarkNode.length; index++) {
+			float[] from = fromLandmark[index];
+			float[] to = toLandmark[index];
+			float fromTime = from[fromNode];
+			float toTime = from[toNode];
+			if(fromTime < Float.POSITIVE_INFINITY && toTime < Float.POSITIVE_INFINITY) {
+				lowerBound = Math.max(lowerBound, (double) toTime - fromTime - Math.ulp(toTime) - Math.ulp(fromTime));
+			}
+			fromTime = to[fromNode];
+			toTime = to[toNode];
+			if(fromTime < Float.POSITIVE_INFINITY && toTime < Float.POSITIVE_INFINITY) {
+				lowerBound = Math.max(lowerBound, (double) fromTime - toTime - Math.ulp(toTime) - Math.ulp(fromTime));
+			}
+		}
+		return lowerBound;
+	}
+
+	/**
+	 * Read tables written by write
+	 *
+	 * @param 		file			Landmark file
+	 *
+	 * @return						Landmark tables
+	 *
+	 * @throws 		IOException		If the file is not a complete landmark file
+	 */
+
+	public static LandmarkTable read(File file) throws IOException {
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if(channel.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a landmark file: " + file);
+			}
+			int width = buffer.getInt(8);
+			int height = buffer.getInt(12);
+			int landmarkCount = buffer.getInt(16);
+			int directions = buffer.getInt(20);
+			long nodeCount = (long) width * height;
+			if(channel.size() != HEADER_SIZE + 4L * landmarkCount + 4L * nodeCount * landmarkCount * directions) {
+				throw new IOException("Truncated landmark file: " + file);
+			}
+
+			byte[] hash = new byte[EdgeTable.HASH_SIZE];
+			buffer.position(28);
+			buffer.get(hash);
+			LandmarkTable landmarkTable = new LandmarkTable(width, height, landmarkCount, directions == 2, new String(hash, StandardCharsets.US_ASCII));
+			landmarkTable.requestedCount = buffer.getInt(24);
+			for(int index = 0; index < landmarkCount; index++) {
+				landmarkTable.landmarkNode[index] = buffer.getInt();
+			}
+			FloatBuffer values = buffer.asFloatBuffer();
+			for(int index = 0; index < landmarkCount; index++) {
+				landmarkTable.fromLandmark[index] = new float[(int) nodeCount];
+				values.get(landmarkTable.fromLandmark[index]);
+				if(directions == 2) {
+					landmarkTable.toLandmark[index] = new float[(int) nodeCount];
+					values.get(landmarkTable.toLandmark[index]);
+				}
+			}
+			return landmarkTable;
+		}
+	}
+
+	/**
+	 * Write the tables in the binary format, through a temporary file that
+	 * replaces the file once it is complete
+	 *
+	 * @param 		file			Output file
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public void write(File file) throws IOException {
+		int directions = toLandmark == fromLandmark ? 1 : 2;
+		int nodeCount = width * height;
+		long size = HEADER_SIZE + 4L * landmarkNode.length + 4L * nodeCount * landmarkNode.length * directions;
+		EdgeTable.writeMapped(file, size, buffer -> {
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(landmarkNode.length).putInt(directions).putInt(requestedCount);
+			buffer.put(contentHash.getBytes(StandardCharsets.US_ASCII));
+			for(int node : landmarkNode) {
+				buffer.putInt(node);
+			}
+			FloatBuffer values = buffer.asFloatBuffer();
+			for(int index = 0; index < landmarkNode.length; index++) {
+				values.put(fromLandmark[index]);
+				if(directions == 2) {
+					values.put(toLandmark[index]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Compute the landmark tables of a map ahead of the searches
+	 *
+	 * @param 		args		Map image, elevation file, season or all, optional number of landmarks
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 3 && args.length != 4) {
+			System.out.println("Usage: java LandmarkTable <map.png> <elevation> <season|all> [landmarks]");
+			System.exit(0);
+		}
+		System.setProperty("java.awt.headless", "true");
+		int landmarkCount = args.length == 4 ? Integer.parseInt(args[3]) : Path.DEFAULT_LANDMARKS;
+		Path baseMap = new Path();
+		baseMap.readMap(args[0]);
+		baseMap.fileLoad(args[1]);
+		for(String weather : args[2].equals("all") ? Path.seasons : new String[] {args[2]}) {
+			if(!Path.isSeason(weather)) {
+				System.out.println("Enter Correct Season");
+				return;
+			}
+			Path seasonMap = baseMap.forSeason(weather);
+			forMap(seasonMap, weather, landmarkCount);
+			System.out.println("Landmarks of " + weather + " in " + args[0] + "." + weather + ".landmarks");
+		}
+	}
+
+}
@@ -0,0 +1,343 @@
+/**
+ * Cache of solved legs. Courses are often run again with only a control
+ * or two moved, so every leg is kept with its time under a key made of a
+ * hash of the terrain, speeds and elevation of the season map, the season,
+ * the search and the two controls. A leg is only reused for the same
+ * inputs, and a changed map or elevation file never matches an old entry
+ *
+ * The most recently used legs are kept in memory up to a fixed count, and
+ * with a directory every leg is also written to its own file there, so
+ * later runs and other processes find it too. The directory keeps at most
+ * -Dpath.legCacheFiles=N legs (default 100000); when a new leg goes over
+ * that, the legs least recently written or read are deleted until a tenth
+ * of the room is free again
+ *
+ * Leg file layout (big-endian):
+ * 	magic "AWLC", version, time of the leg (float64), coordinate count,
+ * 	then the path coordinates of the leg in the order of aStarSearch
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LegCache {
+
+	static final int MAGIC = 0x41574C43;
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 20;
+
+	int capacity;
+	File directory;
+	int diskCapacity = Integer.getInteger("path.legCacheFiles", 100000);
+	int diskLegs;
+	LinkedHashMap<String, Leg> legs;
+	LongAdder hits = new LongAdder();
+	LongAdder diskHits = new LongAdder();
+	LongAdder misses = new LongAdder();
+	LongAdder evictions = new LongAdder();
+	LongAdder diskEvictions = new LongAdder();
+
+	/**
+	 * Path coordinates of a solved leg and its time
+	 *
+	 */
+
+	static class Leg {
+
+		int[] legCoordinates;
+		double time;
+
+		Leg(int[] legCoordinates, double time) {
+			this.legCoordinates = legCoordinates;
+			this.time = time;
+		}
+
+	}
+
+	/**
+	 * Creates a cache
+	 *
+	 * @param 		capacity		Number of legs kept in memory
+	 *
+	 * @param 		directory		Directory of the leg files, null to keep legs in memory only
+	 */
+
+	public LegCache(int capacity, File directory) {
+		this.capacity = capacity;
+		this.directory = directory;
+		legs = new LinkedHashMap<String, Leg>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Leg> eldest) {
+				if(size() > LegCache.this.capacity) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+		if(directory != null) {
+			directory.mkdirs();
+			diskLegs = listLegFiles().length;
+		}
+	}
+
+	/**
+	 * Cache set with -Dpath.legCache=N legs in memory and -Dpath.legCacheDir
+	 *
+	 * @return						Cache, null if neither is set
+	 */
+
+	static LegCache fromProperties() {
+		int capacity = Integer.getInteger("path.legCache", 0);
+		String directory = System.getProperty("path.legCacheDir");
+		if(capacity <= 0 && directory == null) {
+			return null;
+		}
+		return new LegCache(Math.max(0, capacity), directory == null ? null : new File(directory));
+	}
+
+	/**
+	 * Path coordinates of a leg, from the cache or searched on the map and
+	 * then kept. Two threads asking for the same new leg may both search it
+	 *
+	 * @param 		map				Map of the season
+	 *
+	 * @param 		x1				X Coordinate of Start
+	 *
+	 * @param 		y1				Y Coordinate of Start
+	 *
+	 * @param 		x2				X Coordinate of Destination
+	 *
+	 * @param 		y2				Y Coordinate of Destination
+	 *
+	 * @param 		weather			Current Weather
+	 *
+	 * @param 		legMetrics		Counters of the leg, null if they are not recorded
+	 *
+	 * @return						Path coordinates of the leg, a copy the caller may keep
+	 */
+
+	public int[] getLeg(Path map, int x1, int y1, int x2, int y2, String weather, SearchMetrics.Leg legMetrics) {
+		String key = getKey(map, x1, y1, x2, y2, weather);
+		Leg leg;
+		synchronized(this) {
+			leg = legs.get(key);
+		}
+		if(leg != null) {
+			hits.increment();
+			if(legMetrics != null) {
+				legMetrics.cached = true;
+			}
+			return leg.legCoordinates.clone();
+		}
+		leg = readLeg(key);
+		if(leg != null) {
+			diskHits.increment();
+			if(legMetrics != null) {
+				legMetrics.cached = true;
+			}
+		}else {
+			misses.increment();
+			int[] legCoordinates = map.findLeg(x1, y1, x2, y2, weather, legMetrics);
+			leg = new Leg(legCoordinates, map.getLegTime(legCoordinates, x1, y1));
+			writeLeg(key, leg);
+		}
+		if(capacity > 0) {
+			synchronized(this) {
+				legs.put(key, leg);
+			}
+		}
+		return leg.legCoordinates.clone();
+	}
+
+	/**
+	 * Time of a leg that is in the cache
+	 *
+	 * @return						Time of the leg, NaN if it is not in memory
+	 */
+
+	public synchronized double getTime(Path map, int x1, int y1, int x2, int y2, String weather) {
+		Leg leg = legs.get(getKey(map, x1, y1, x2, y2, weather));
+		return leg == null ? Double.NaN : leg.time;
+	}
+
+	/**
+	 * Key of a leg, with the search and its settings from Path.getSearchName
+	 */
+
+	static String getKey(Path map, int x1, int y1, int x2, int y2, String weather) {
+		return map.getContentHash() + "." + weather + "." + map.getSearchName() + "." + x1 + "_" + y1 + "_" + x2 + "_" + y2;
+	}
+
+	/**
+	 * SHA-256 of everything a leg depends on
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @return						Hash of the terrain classes, speeds and elevation in hex
+	 */
+
+	static String getContentHash(Path map) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}catch(NoSuchAlgorithmException exception) {
+			throw new IllegalStateException(exception);
+		}
+		digest.update(ByteBuffer.allocate(8).putInt(map.mapWidth).putInt(map.mapHeight).array());
+		digest.update(map.terrainClass);
+		ByteBuffer buffer = ByteBuffer.allocate(8 * Math.max(map.mapWidth, TerrainClass.COUNT));
+		for(double[] speed : map.speedTable) {
+			buffer.clear();
+			for(double terrainSpeed : speed) {
+				buffer.putDouble(terrainSpeed);
+			}
+			buffer.flip();
+			digest.update(buffer);
+		}
+		for(int yCoordinate = 0; yCoordinate < map.mapHeight; yCoordinate++) {
+			buffer.clear();
+			for(int xCoordinate = 0; xCoordinate < map.mapWidth; xCoordinate++) {
+				buffer.putDouble(map.coordinateElevationArray[yCoordinate][xCoordinate]);
+			}
+			buffer.flip();
+			digest.update(buffer);
+		}
+		StringBuilder hash = new StringBuilder();
+		for(byte value : digest.digest()) {
+			hash.append(String.format("%02x", value));
+		}
+		return hash.toString();
+	}
+
+	/**
+	 * Read a leg file, a missing or unreadable file is a miss
+	 */
+
+	Leg readLeg(String key) {
+		if(directory == null) {
+			return null;
+		}
+		File file = new File(directory, key + ".leg");
+		if(!file.exists()) {
+			return null;
+		}
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException("Not a leg file");
+			}
+			double time = input.readDouble();
+			int coordinateCount = input.readInt();
+			if(coordinateCount < 0 || coordinateCount % 2 != 0 || file.length() != HEADER_SIZE + 4L * coordinateCount) {
+				throw new IOException("Corrupt leg file, " + coordinateCount + " coordinates in " + file.length() + " bytes");
+			}
+			int[] legCoordinates = new int[coordinateCount];
+			for(int index = 0; index < legCoordinates.length; index++) {
+				legCoordinates[index] = input.readInt();
+			}
+			file.setLastModified(System.currentTimeMillis());
+			return new Leg(legCoordinates, time);
+		}catch(IOException exception) {
+			System.err.println("Could not read " + file + ": " + exception.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Write a leg file. It is written next to its name and then moved, so a
+	 * reader never sees half a leg
+	 */
+
+	void writeLeg(String key, Leg leg) {
+		if(directory == null) {
+			return;
+		}
+		File file = new File(directory, key + ".leg");
+		File temporaryFile = null;
+		try {
+			temporaryFile = File.createTempFile(key, ".tmp", directory);
+			try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeDouble(leg.time);
+				output.writeInt(leg.legCoordinates.length);
+				for(int coordinate : leg.legCoordinates) {
+					output.writeInt(coordinate);
+				}
+			}
+			boolean newLeg = !file.exists();
+			Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if(newLeg) {
+				addDiskLeg();
+			}
+		}catch(IOException exception) {
+			System.err.println("Could not write " + file + ": " + exception.getMessage());
+		}finally {
+			if(temporaryFile != null) {
+				temporaryFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Count a new leg file and delete the legs least recently used when the
+	 * directory holds more than diskCapacity
+	 */
+
+	synchronized void addDiskLeg() {
+		diskLegs++;
+		if(diskLegs <= diskCapacity) {
+			return;
+		}
+		File[] legFiles = listLegFiles();
+		long[] lastUsed = new long[legFiles.length];
+		Integer[] order = new Integer[legFiles.length];
+		for(int index = 0; index < legFiles.length; index++) {
+			lastUsed[index] = legFiles[index].lastModified();
+			order[index] = index;
+		}
+		Arrays.sort(order, (first, second) -> Long.compare(lastUsed[first], lastUsed[second]));
+		diskLegs = legFiles.length;
+		for(int index = 0; index < legFiles.length && diskLegs > diskCapacity - diskCapacity / 10; index++) {
+			if(legFiles[order[index]].delete()) {
+				diskLegs--;
+				diskEvictions.increment();
+			}
+		}
+	}
+
+	File[] listLegFiles() {
+		File[] legFiles = directory.listFiles((parent, name) -> name.endsWith(".leg"));
+		return legFiles == null ? new File[0] : legFiles;
+	}
+
+	/**
+	 * Counters for sizing the cache
+	 *
+	 * @return						Hits in memory and on disk, misses, evictions from memory and disk and
+	 * 								the legs in memory
+	 */
+
+	public synchronized String getStats() {
+		return "hits=" + hits.sum() + " diskHits=" + diskHits.sum() + " misses=" + misses.sum()
+				+ " evictions=" + evictions.sum() + " diskEvictions=" + diskEvictions.sum() + " size=" + legs.size() + "/" + capacity;
+	}
+
+}
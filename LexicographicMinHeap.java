@@ -0,0 +1,227 @@
+/**
+ * Binary min heap of node ids keyed by a pair of values, compared by the
+ * first value and then by the second. Like IndexedMinHeap every node keeps
+ * its position, and a node can also be moved or removed, as the keys of an
+ * incremental search go up as well as down
+ *
+ */
+
+import java.util.Arrays;
+
+public class LexicographicMinHeap {
+
+	int[] heapNodes;
+	double[] heapFirstKeys;
+	double[] heapSecondKeys;
+	int[] nodePosition;
+	int size = 0;
+
+	/**
+	 * Creates an empty heap for node ids in the range [0, nodeCount)
+	 *
+	 * @param 		nodeCount		Number of nodes in the grid
+	 */
+
+	public LexicographicMinHeap(int nodeCount) {
+		heapNodes = new int[16];
+		heapFirstKeys = new double[16];
+		heapSecondKeys = new double[16];
+		nodePosition = new int[nodeCount];
+		Arrays.fill(nodePosition, -1);
+	}
+
+	/**
+	 * Check whether the heap is empty
+	 *
+	 * @return						True if no node is left in the heap
+	 */
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Number of nodes in the heap
+	 *
+	 * @return						Heap size
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Check whether the node is currently in the heap
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @return						True if the node is in the heap
+	 */
+
+	public boolean contains(int node) {
+		return nodePosition[node] >= 0;
+	}
+
+	/**
+	 * First key of the node at the top of the heap
+	 *
+	 * @return						Lowest first key in the heap
+	 */
+
+	public double peekFirstKey() {
+		return heapFirstKeys[0];
+	}
+
+	/**
+	 * Second key of the node at the top of the heap
+	 *
+	 * @return						Second key of the lowest entry
+	 */
+
+	public double peekSecondKey() {
+		return heapSecondKeys[0];
+	}
+
+	/**
+	 * Insert a node that is not in the heap yet
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @param 		firstKey		First key of the node
+	 *
+	 * @param 		secondKey		Second key of the node
+	 */
+
+	public void add(int node, double firstKey, double secondKey) {
+		if(size == heapNodes.length) {
+			heapNodes = Arrays.copyOf(heapNodes, size * 2);
+			heapFirstKeys = Arrays.copyOf(heapFirstKeys, size * 2);
+			heapSecondKeys = Arrays.copyOf(heapSecondKeys, size * 2);
+		}
+		heapNodes[size] = node;
+		heapFirstKeys[size] = firstKey;
+		heapSecondKeys[size] = secondKey;
+		nodePosition[node] = size;
+		siftUp(size++);
+	}
+
+	/**
+	 * Change the keys of a node that is already in the heap
+	 *
+	 * @param 		node			Node id
+	 *
+	 * @param 		firstKey		New first key
+	 *
+	 * @param 		secondKey		New second key
+	 */
+
+	public void update(int node, double firstKey, double secondKey) {
+		int position = nodePosition[node];
+		heapFirstKeys[position] = firstKey;
+		heapSecondKeys[position] = secondKey;
+		siftUp(position);
+		siftDown(nodePosition[node]);
+	}
+
+	/**
+	 * Take a node out of the heap wherever it is
+	 *
+	 * @param 		node			Node id that is in the heap
+	 */
+
+	public void remove(int node) {
+		int position = nodePosition[node];
+		nodePosition[node] = -1;
+		size--;
+		if(position == size) {
+			return;
+		}
+		heapNodes[position] = heapNodes[size];
+		heapFirstKeys[position] = heapFirstKeys[size];
+		heapSecondKeys[position] = heapSecondKeys[size];
+		int movedNode = heapNodes[position];
+		nodePosition[movedNode] = position;
+		siftUp(position);
+		siftDown(nodePosition[movedNode]);
+	}
+
+	/**
+	 * Remove the node with the lowest keys
+	 *
+	 * @return						Node id with the lowest keys
+	 */
+
+	public int poll() {
+		int lowestNode = heapNodes[0];
+		remove(lowestNode);
+		return lowestNode;
+	}
+
+	/**
+	 * Check whether the keys at a heap position are lower than a pair of keys
+	 */
+
+	boolean less(int position, double firstKey, double secondKey) {
+		return heapFirstKeys[position] < firstKey || (heapFirstKeys[position] == firstKey && heapSecondKeys[position] < secondKey);
+	}
+
+	/**
+	 * Move an entry up until its parent has lower or equal keys
+	 *
+	 * @param 		position		Heap position of the entry
+	 */
+
+	void siftUp(int position) {
+		int node = heapNodes[position];
+		double firstKey = heapFirstKeys[position];
+		double secondKey = heapSecondKeys[position];
+		while(position > 0) {
+			int parent = (position - 1) >> 1;
+			if(firstKey > heapFirstKeys[parent] || (firstKey == heapFirstKeys[parent] && secondKey >= heapSecondKeys[parent])) {
+				break;
+			}
+			heapNodes[position] = heapNodes[parent];
+			heapFirstKeys[position] = heapFirstKeys[parent];
+			heapSecondKeys[position] = heapSecondKeys[parent];
+			nodePosition[heapNodes[position]] = position;
+			position = parent;
+		}
+		heapNodes[position] = node;
+		heapFirstKeys[position] = firstKey;
+		heapSecondKeys[position] = secondKey;
+		nodePosition[node] = position;
+	}
+
+	/**
+	 * Move an entry down until both children have greater or equal keys
+	 *
+	 * @param 		position		Heap position of the entry
+	 */
+
+	void siftDown(int position) {
+		int node = heapNodes[position];
+		double firstKey = heapFirstKeys[position];
+		double secondKey = heapSecondKeys[position];
+		int half = size >> 1;
+		while(position < half) {
+			int child = 2 * position + 1;
+			int right = child + 1;
+			if(right < size && less(right, heapFirstKeys[child], heapSecondKeys[child])) {
+				child = right;
+			}
+			if(!less(child, firstKey, secondKey)) {
+				break;
+			}
+			heapNodes[position] = heapNodes[child];
+			heapFirstKeys[position] = heapFirstKeys[child];
+			heapSecondKeys[position] = heapSecondKeys[child];
+			nodePosition[heapNodes[position]] = position;
+			position = child;
+		}
+		heapNodes[position] = node;
+		heapFirstKeys[position] = firstKey;
+		heapSecondKeys[position] = secondKey;
+		nodePosition[node] = position;
+	}
+
+}
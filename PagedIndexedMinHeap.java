@@ -0,0 +1,46 @@
+/**
+ * Indexed min heap whose node positions are stored in pages that are
+ * allocated on first use, so a search over a very large grid only pays
+ * for the pages it actually reaches
+ *
+ */
+
+import java.util.Arrays;
+
+public class PagedIndexedMinHeap extends IndexedMinHeap {
+
+	int[][] positionPages;
+	int pageBits;
+	int pageMask;
+
+	/**
+	 * Creates an empty heap
+	 *
+	 * @param 		pageCount		Number of pages covering all node ids
+	 *
+	 * @param 		pageBits		Number of low node id bits addressing a node inside its page
+	 */
+
+	public PagedIndexedMinHeap(int pageCount, int pageBits) {
+		super();
+		positionPages = new int[pageCount][];
+		this.pageBits = pageBits;
+		pageMask = (1 << pageBits) - 1;
+	}
+
+	int position(int node) {
+		int[] page = positionPages[node >>> pageBits];
+		return page == null ? -1 : page[node & pageMask];
+	}
+
+	void setPosition(int node, int position) {
+		int[] page = positionPages[node >>> pageBits];
+		if(page == null) {
+			page = new int[1 << pageBits];
+			Arrays.fill(page, -1);
+			positionPages[node >>> pageBits] = page;
+		}
+		page[node & pageMask] = position;
+	}
+
+}
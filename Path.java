@@ -4,41 +4,63 @@
  * 
  */
 
-import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 import javax.imageio.ImageIO;
-import javax.swing.JFrame;
 
-public class Path extends JFrame{
+public class Path {
 
-	double[][] coordinateElevationArray = new double[500][400];
+	double[][] coordinateElevationArray;
+	int mapWidth;
+	int mapHeight;
 	double straightDistance = 0;
 	ArrayList<Integer> destinationPathCoordinates = new ArrayList<Integer>();
 	ArrayList<Double> pathElevationList = new ArrayList<Double>();
 	ArrayList<Integer> neighborCoordinates = new ArrayList<Integer>();
-	Color[][] terrainColorArray;
+	TerrainRaster terrainRaster;
+	byte[] terrainClass;
 	BufferedImage displayImage;
-	Map<String, Integer> colorMap = new HashMap<String, Integer>();
+	double[] terrainSpeed;
+	double[][] speedTable;
+	double columnStepTime;
+	double rowStepTime;
 	double baseElevation;
 	List<Integer> parentCoordinates = new ArrayList<Integer>();
-	Map<String, Set<Integer>> waterEdgeParent = new HashMap<String, Set<Integer>>();
+	WaterEdges waterEdges;
 	List<Integer> displayWaterPath = new ArrayList<Integer>();
 	double totalPathLength = 0;
-	BufferedImage mapImage;
+	String mapPath;
+	String weather;
+	LandmarkTable landmarkTable;
+	EdgeTable edgeTable;
+	SeasonOverlay seasonOverlay;
+	int parallelism = Integer.getInteger("path.parallelism", Runtime.getRuntime().availableProcessors());
+	String searchMode = System.getProperty("path.search", "astar");
+	ClusterGraph clusterGraph;
+	SearchPyramid searchPyramid;
+	String contentHash;
+	boolean ownTerrain = false;
+	boolean frozen = false;
+	LongAdder expandedNodes = new LongAdder();
 
 
 	static int openLand = 20;
@@ -50,34 +72,74 @@ public class Path extends JFrame{
 	static int footPath = 24;
 
 
-	double hypDistance = Math.sqrt((10.29*10.29) + (7.55*7.55));
+	static int mudRadius = Integer.getInteger("path.mudRadius", 15);
+	static int iceRadius = Integer.getInteger("path.iceRadius", 7);
+	static double mudElevationStep = Double.parseDouble(System.getProperty("path.mudElevationStep", "1"));
+	static int clusterSize = Integer.getInteger("path.clusterSize", 32);
+	static int pyramidLevels = Integer.getInteger("path.pyramidLevels", 3);
+	static int landmarkCount = Integer.getInteger("path.landmarks", 0);
+	static int imageThreads = Integer.getInteger("path.imageThreads", 0);
+	static boolean useEdgeTable = Boolean.getBoolean("path.edgeTable");
+	static final int DEFAULT_LANDMARKS = 8;
+	static LegCache legCache = LegCache.fromProperties();
 
+	static double hypDistance = Math.sqrt((10.29*10.29) + (7.55*7.55));
+
+	static String[] seasons = {"summer", "fall", "winter", "spring"};
+
+	static int[] neighborOffsetX = {1, -1, 0, 0};
+	static int[] neighborOffsetY = {0, 0, 1, -1};
 
-	public Path() {
-		setBounds(100, 100, 395, 500);
-		setResizable(false);
-		setDefaultCloseOperation(EXIT_ON_CLOSE);
-	}
 
 	/**
-	 * Loads the Elevation File
+	 * Loads the Elevation File for the area of the map, so the map has to be read first
 	 * 
 	 * @param 	scanner			Scanner Object to load the file
+	 * 
+	 * @throws 	IOException		If the elevation grid does not cover the map
 	 */
 	
-	public void fileLoad(Scanner scanner) {
+	public void fileLoad(Scanner scanner) throws IOException {
+		useElevation(ElevationFile.readText(scanner, mapWidth, mapHeight));
+	}
 
-		for(int yCoordinate = 0; yCoordinate <= 499; yCoordinate++) {
-			for(int xCoordinate = 0; xCoordinate <= 394; xCoordinate++) {
-				coordinateElevationArray[yCoordinate][xCoordinate] = scanner.nextDouble();
-				if(baseElevation == 0 || coordinateElevationArray[yCoordinate][xCoordinate] < baseElevation) {
-					baseElevation = coordinateElevationArray[yCoordinate][xCoordinate];
-				}
-				if(xCoordinate == 394 && scanner.hasNextLine()) {
-					scanner.nextLine();
-				}
+	/**
+	 * Loads the Elevation File, memory-mapping it if it is in the binary format
+	 * and parsing it as text otherwise
+	 * 
+	 * @param 		elevationPath		Elevation file
+	 * 
+	 * @throws 		IOException			To handle if an IO exception occurs
+	 */
+	
+	public void fileLoad(String elevationPath) throws IOException {
+		SearchMetrics.Phase phase = SearchMetrics.beginPhase("fileLoad", null);
+		File elevationFile = new File(elevationPath);
+		if(ElevationFile.isBinary(elevationFile)) {
+			useElevation(ElevationFile.readBinary(elevationFile));
+		}else {
+			try(Scanner scanner = new Scanner(new FileInputStream(elevationFile))) {
+				fileLoad(scanner);
 			}
 		}
+		SearchMetrics.endPhase(phase);
+	}
+
+	/**
+	 * Use a loaded elevation grid, which has to cover the whole map
+	 * 
+	 * @param 		elevationFile		Loaded elevation grid
+	 * 
+	 * @throws 		IOException			If the grid is smaller than the map
+	 */
+	
+	public void useElevation(ElevationFile elevationFile) throws IOException {
+		if(elevationFile.width < mapWidth || elevationFile.height < mapHeight) {
+			throw new IOException("Elevation grid " + elevationFile.width + "x" + elevationFile.height 
+					+ " does not cover the " + mapWidth + "x" + mapHeight + " map");
+		}
+		coordinateElevationArray = elevationFile.elevation;
+		baseElevation = elevationFile.baseElevation(mapWidth, mapHeight);
 	}
 
 	/**
@@ -89,13 +151,25 @@ public class Path extends JFrame{
 	 */
 	
 	public void readMap(String mapPath) throws IOException {
-		mapImage = ImageIO.read(new File(mapPath));	
-		terrainColorArray = new Color[mapImage.getWidth()][mapImage.getHeight()];
-		for(int yCoordinate = 0; yCoordinate < mapImage.getHeight(); yCoordinate++) {
-			for(int xCoordinate = 0; xCoordinate < mapImage.getWidth(); xCoordinate++) {
-				terrainColorArray[xCoordinate][yCoordinate] = new Color(mapImage.getRGB(xCoordinate, yCoordinate));
-			}
-		}	
+		SearchMetrics.Phase phase = SearchMetrics.beginPhase("readMap", null);
+		this.mapPath = mapPath;
+		terrainRaster = TerrainRaster.fromImage(ImageIO.read(new File(mapPath)));
+		mapWidth = terrainRaster.width;
+		mapHeight = terrainRaster.height;
+		terrainClass = new byte[mapWidth * mapHeight];
+		RasterKernels.kernels.classify(terrainRaster.pixels, terrainClass, 0, terrainClass.length);
+		SearchMetrics.endPhase(phase);
+	}
+
+	/**
+	 * Use the terrain of a season on top of the map
+	 * 
+	 * @param 		overlay			Pixels changed by the season
+	 */
+	
+	public void useOverlay(SeasonOverlay overlay) {
+		seasonOverlay = overlay;
+		terrainClass = overlay.apply(terrainClass);
 	}
 
 	/**
@@ -107,25 +181,11 @@ public class Path extends JFrame{
 	 */
 	
 	public void displayImage(String outputFileName) throws IOException {
-		displayImage = new BufferedImage(terrainColorArray.length, terrainColorArray[0].length, BufferedImage.TYPE_INT_RGB);
-		for(int xCoordinate = 0; xCoordinate < terrainColorArray.length; xCoordinate++) {
-			for(int yCoordinate = 0; yCoordinate < terrainColorArray[xCoordinate].length; yCoordinate++) {
-				displayImage.setRGB(xCoordinate, yCoordinate, terrainColorArray[xCoordinate][yCoordinate].getRGB());
-			}
-		}
+		SearchMetrics.Phase phase = SearchMetrics.beginPhase("displayImage", weather);
+		displayImage = renderRoute(parentCoordinates, destinationPathCoordinates);
 		File outputFile = new File(outputFileName);
 		ImageIO.write(displayImage, "png", outputFile);
-		repaint();
-	}
-
-	/**
-	 * Displays the output image
-	 * 
-	 * @param		g			Display the image
-	 */
-	
-	public void paint(Graphics g) {
-		g.drawImage(displayImage, 0, 0, this);
+		SearchMetrics.endPhase(phase);
 	}
 
 	/**
@@ -171,12 +231,34 @@ public class Path extends JFrame{
 	 */
 	
 	public double calculateStraightDistance(int x1, int y1, int x2, int y2, double h1, double h2) {
+		straightDistance = getStraightDistance(x1, y1, x2, y2, h1, h2);
+		return straightDistance;
+	}
+
+	/**
+	 * Straight line distance between two pixels
+	 * 
+	 * @param 		x1			X Coordinate of start
+	 * 
+	 * @param 		y1			Y Coordinate of start
+	 * 	
+	 * @param 		x2			X Coordinate of destination
+	 * 
+	 * @param 		y2			Y Coordinate of destination
+	 * 
+	 * @param 		h1			Elevation of Start
+	 * 
+	 * @param 		h2			Elevation of Destination
+	 * 
+	 * @return					Straight Line Distance
+	 */
+	
+	static double getStraightDistance(int x1, int y1, int x2, int y2, double h1, double h2) {
 		double xDistance = (x1 - x2) * 10.29;
 		double yDistance = (y1 - y2) * 7.55;
 		double hDistance = h1 - h2;
 
-		straightDistance = Math.sqrt(xDistance*xDistance + yDistance*yDistance + hDistance*hDistance);
-		return straightDistance;
+		return Math.sqrt(xDistance*xDistance + yDistance*yDistance + hDistance*hDistance);
 	}
 
 	/**
@@ -195,7 +277,7 @@ public class Path extends JFrame{
 		for(int index = 0; index < 4; index++) {
 			int neighborX = currentX + calculateNeighborCoordinates[index][0];
 			int neighborY = currentY + calculateNeighborCoordinates[index][1];
-			if((0 <= neighborX && neighborX <= 394) && (0 <= neighborY && neighborY <= 499)) {
+			if((0 <= neighborX && neighborX < mapWidth) && (0 <= neighborY && neighborY < mapHeight)) {
 				neighborCoordinates.add(neighborX);
 				neighborCoordinates.add(neighborY);
 			}
@@ -218,7 +300,7 @@ public class Path extends JFrame{
 		for(int index = 0; index < 8; index++) {
 			int neighborX = currentX + calculateNeighborCoordinates[index][0];
 			int neighborY = currentY + calculateNeighborCoordinates[index][1];
-			if((0 <= neighborX && neighborX <= 394) && (0 <= neighborY && neighborY <= 499)) {
+			if((0 <= neighborX && neighborX < mapWidth) && (0 <= neighborY && neighborY < mapHeight)) {
 				neighborCoordinates.add(neighborX);
 				neighborCoordinates.add(neighborY);
 			}
@@ -227,178 +309,173 @@ public class Path extends JFrame{
 	}
 
 	/**
-	 * Store the total path
+	 * Store the total path. The legs only read the terrain and elevation, so they
+	 * are solved concurrently and stitched back together in course order
 	 * 
 	 * @param 		weather       Current Weather
 	 * 
 	 */
 	
 	public void calculatePath(String weather) {
-		List<Integer> displayFinalPath = new ArrayList<Integer>();
-		for(int index = 0; index < destinationPathCoordinates.size() - 3; index+=2) {
-			displayFinalPath.addAll(aStarSearch(destinationPathCoordinates.get(index), destinationPathCoordinates.get(index + 1), 
-					destinationPathCoordinates.get(index + 2), destinationPathCoordinates.get(index + 3), weather));
-		}
-		terrainColorArray[destinationPathCoordinates.get(0)][destinationPathCoordinates.get(1)] = new Color(255, 0, 0);
-		for( int indexColor = 0; indexColor < displayFinalPath.size() - 1; indexColor+=2) {
-			terrainColorArray[displayFinalPath.get(indexColor)][displayFinalPath.get(indexColor + 1)] = new Color(255, 0, 0);
-		}
-		
-		List<Integer> pixelHighhlightList = new ArrayList<Integer>();
-		for(int index = 0; index < destinationPathCoordinates.size() - 1; index += 2) {
-			pixelHighhlightList = getPixelNeighbor(destinationPathCoordinates.get(index), destinationPathCoordinates.get(index + 1));
-
-			for( int indexColor = 0; indexColor < pixelHighhlightList.size() - 1; indexColor+=2) {
-				int xNeighborValue = pixelHighhlightList.get(indexColor);
-				int yNeighborValue = pixelHighhlightList.get(indexColor + 1);
-
-				terrainColorArray[xNeighborValue][yNeighborValue] = new Color(75, 0, 130);
+		SearchMetrics.Phase phase = SearchMetrics.beginPhase("search", weather);
+		for(int[] legCoordinates : solveLegs(destinationPathCoordinates, weather)) {
+			for(int coordinate : legCoordinates) {
+				parentCoordinates.add(coordinate);
 			}
 		}
-
+		SearchMetrics.endPhase(phase);
 	}
 
 	/**
-	 * Default speed for various paths according to the weather
+	 * Solve every leg of a course
 	 * 
-	 * @param 		weather			Current Weather	
+	 * @param 		controls		Control coordinates of the course
+	 * 
+	 * @param 		weather			Current Weather
+	 * 
+	 * @return						Path coordinates of every leg in course order
 	 */
 	
-	public void addDefaultSpeed(String weather) {
-		colorMap.put("248,148,18", openLand);
-		colorMap.put("255,192,0", roughMeadow);
-		colorMap.put("255,255,255", easyMovementForest);
-		colorMap.put("2,208,60", slowRunForest);
-		colorMap.put("2,136,40", walkForest);
-		colorMap.put("71,51,3", pavelRoad);
-		colorMap.put("0,0,0", footPath);
-		if(weather.equals("winter")) {
-			colorMap.put("135,206,250", 14);
+	public List<int[]> solveLegs(List<Integer> controls, String weather) {
+		List<int[]> legCoordinates = new ArrayList<int[]>();
+		List<Callable<int[]>> legs = new ArrayList<Callable<int[]>>();
+		for(int index = 0; index < controls.size() - 3; index+=2) {
+			int x1 = controls.get(index);
+			int y1 = controls.get(index + 1);
+			int x2 = controls.get(index + 2);
+			int y2 = controls.get(index + 3);
+			if(parallelism <= 1) {
+				legCoordinates.add(searchLeg(x1, y1, x2, y2, weather));
+			}else {
+				legs.add(() -> searchLeg(x1, y1, x2, y2, weather));
+			}
 		}
-		if(weather.equals("spring")) {
-			colorMap.put("139,69,19", 6);
+		if(legs.isEmpty()) {
+			return legCoordinates;
 		}
 
+		legCoordinates.addAll(invokeAll(Math.min(parallelism, legs.size()), legs, "solving the legs"));
+		return legCoordinates;
 	}
 
 	/**
-	 * Calculate time to travel between two coordinates according to the color of pixels
+	 * Run tasks on a pool of their own and wait for all of them
 	 * 
-	 * @param 		currentX			X Coordinate of the current
+	 * @param 		parallelism		Number of threads of the pool
 	 * 
-	 * @param 		currentY			Y Coordinate of the current
+	 * @param 		tasks			Tasks to run
 	 * 
-	 * @param 		xNeighborValue		X Coordinate of the Neighbor
+	 * @param 		activity		What the tasks do, for the message when interrupted
 	 * 
-	 * @param 		yNeighborValue		Y Coordinate of the Neighbor
+	 * @return						Results of the tasks in task order
+	 */
+	
+	static <T> List<T> invokeAll(int parallelism, List<Callable<T>> tasks, String activity) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return invokeAll(pool, tasks, activity);
+		}finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Run tasks on a pool and wait for all of them
 	 * 
-	 * @param 		index				Direction of the Neighbor with respect to current coordinate
-	 * 		
-	 * @param 		weather				Current Weather
+	 * @param 		pool			Pool that runs the tasks
 	 * 
-	 * @return							Time from current coordinate to destination coordinate
+	 * @param 		tasks			Tasks to run
+	 * 
+	 * @param 		activity		What the tasks do, for the message when interrupted
+	 * 
+	 * @return						Results of the tasks in task order
 	 */
 	
-	public double getColorTime(int currentX, int currentY, int xNeighborValue, int yNeighborValue, int index, String weather, Map<String, Double> gValue) {
-		
-		String previousGCoordinate = Integer.valueOf(currentX) + "," + Integer.valueOf(currentY);
-		double previousGValue = gValue.get(previousGCoordinate);
-		
-		String neighborGCoordinate = Integer.valueOf(xNeighborValue) + "," + Integer.valueOf(yNeighborValue);
-
-		double gDistance = 0;		
-		int currentColor = terrainColorArray[currentX][currentY].getRGB();
-		int neighborColor = terrainColorArray[xNeighborValue][yNeighborValue].getRGB();
-
-		int redCurrent = (currentColor >> 16) & 0xff;
-		int greenCurrent = (currentColor >> 8) & 0xff;
-		int blueCurrent = (currentColor) & 0xff;
-
-		String finalCurrentColor = Integer.valueOf(redCurrent) + "," + Integer.valueOf(greenCurrent) + "," + Integer.valueOf(blueCurrent);
-
-		int redNeighbor = (neighborColor >> 16) & 0xff;
-		int greenNeighbor = (neighborColor >> 8) & 0xff;
-		int blueNeighbor = (neighborColor) & 0xff;
-
-		String finalNeighborColor = Integer.valueOf(redNeighbor) + "," + Integer.valueOf(greenNeighbor) + "," + Integer.valueOf(blueNeighbor);
-
-		double nextElevation = coordinateElevationArray[yNeighborValue][xNeighborValue];
-		double currentElevation = coordinateElevationArray[currentY][currentX];
-
-		gDistance = calculateStraightDistance(currentX, currentY, xNeighborValue, yNeighborValue, currentElevation, nextElevation);
-		double time = 0;
+	static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks, String activity) {
+		return getAll(pool.invokeAll(tasks), activity);
+	}
 
-		if(weather.equals("fall") && finalCurrentColor.equals("255,255,255")) {
-			colorMap.put("248,148,18", openLand - 2);
-			colorMap.put("255,192,0", roughMeadow - 1);
-			colorMap.put("255,255,255", easyMovementForest - 8);
-			colorMap.put("2,208,60", slowRunForest - 2);
-			colorMap.put("2,136,40", walkForest - 4);
-			colorMap.put("71,51,3", pavelRoad - 1);
-			colorMap.put("0,0,0", footPath - 4);
-		}
-		
-		if(index == 0 || index == 2) {
-			time = previousGValue + ((gDistance / ((10.29/2) * colorMap.get(finalCurrentColor))) + (gDistance / ((10.29/2) * colorMap.get(finalNeighborColor))));
-		}
-		if(index == 4 || index == 6) {
-			time = previousGValue + ((gDistance / ((7.55/2) * colorMap.get(finalCurrentColor))) + (gDistance / ((7.55/2) * colorMap.get(finalNeighborColor))));
-		}else {
-			time = previousGValue + ((gDistance / ((hypDistance) * colorMap.get(finalCurrentColor))) + (gDistance / ((hypDistance) * colorMap.get(finalNeighborColor))));
-		}			
-		
-		
-		if(gValue.containsKey(neighborGCoordinate)) {	
-			double previousNeighborGValue = gValue.get(neighborGCoordinate);
-			if(time < previousNeighborGValue) {
-				gValue.put(neighborGCoordinate, time);
+	/**
+	 * Wait for the results of tasks. A runtime exception of a task is thrown
+	 * as it is, an IO exception as an UncheckedIOException and any other
+	 * exception as an IllegalStateException
+	 * 
+	 * @param 		futures			Futures of the tasks
+	 * 
+	 * @param 		activity		What the tasks do, for the message when interrupted
+	 * 
+	 * @return						Results of the tasks in task order
+	 */
+	
+	static <T> List<T> getAll(List<Future<T>> futures, String activity) {
+		List<T> results = new ArrayList<T>(futures.size());
+		try {
+			for(Future<T> future : futures) {
+				results.add(future.get());
 			}
-			else {
-				time = previousNeighborGValue;
+		}catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while " + activity, exception);
+		}catch(ExecutionException exception) {
+			if(exception.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) exception.getCause();
 			}
-		}else {
-			gValue.put(neighborGCoordinate, time);
-		}
-
-		if(weather.equals("fall") && finalCurrentColor.equals("255,255,255")) {
-			addDefaultSpeed(weather);
+			if(exception.getCause() instanceof IOException) {
+				throw new UncheckedIOException((IOException) exception.getCause());
+			}
+			throw new IllegalStateException(exception.getCause());
 		}
-
-		return time;
+		return results;
 	}
 
 	/**
-	 * Calculate the path between start and destination
+	 * Solve one leg, from the leg cache when it is on
+	 * 
+	 * @param 		x1				X Coordinate of Start
 	 * 
-	 * @param 		parentCoordinate					Path Coordinates
+	 * @param 		y1				Y Coordinate of Start
+	 * 
+	 * @param 		x2				X Coordinate of Destination
+	 * 
+	 * @param 		y2				Y Coordinate of Destination
 	 * 
-	 * @param 		parentCoordinatesValue				Path Coordinates to search
+	 * @param 		weather			Current Weather
 	 * 
-	 * @param 		keySet								Coordinates
+	 * @return						Path coordinates of the leg
 	 */
 	
-	public void getPath(Map<String, Set<String>> parentCoordinate, String parentCoordinatesValue, Set<String> keySet) {
-		for(Set<String> mapValues : parentCoordinate.values()) {
-			if(mapValues.contains(parentCoordinatesValue)) {
-				for(String key : keySet) {
-					if(parentCoordinate.get(key).contains(parentCoordinatesValue)) {
-						String[] parentXYValues = parentCoordinatesValue.split(",");
-						int parentXValue = Integer.parseInt(parentXYValues[0]);
-						int parentYValue = Integer.parseInt(parentXYValues[1]);
-						parentCoordinates.add(parentXValue);
-						parentCoordinates.add(parentYValue);
-						parentCoordinate.get(key).remove(parentCoordinatesValue);
-						parentCoordinatesValue = key;
-						getPath(parentCoordinate, parentCoordinatesValue, keySet);
-					}
-				}
-			}
+	public int[] searchLeg(int x1, int y1, int x2, int y2, String weather) {
+		SearchMetrics.Leg legMetrics = SearchMetrics.beginLeg(weather, getSearchName(), x1, y1, x2, y2);
+		int[] legCoordinates = legCache != null ? legCache.getLeg(this, x1, y1, x2, y2, weather, legMetrics)
+				: findLeg(x1, y1, x2, y2, weather, legMetrics);
+		SearchMetrics.endLeg(legMetrics, legCoordinates);
+		return legCoordinates;
+	}
 
+	/**
+	 * Name of the search of the legs. The landmark, cluster and pyramid
+	 * settings are part of it, since A Star with landmarks and the
+	 * hierarchical and pyramid searches can find other paths
+	 * 
+	 * @return						Search mode with its settings
+	 */
+	
+	public String getSearchName() {
+		String search = searchMode;
+		if(search.equals("hierarchical")) {
+			search += clusterSize;
+		}
+		if(search.equals("pyramid") || search.equals("preview")) {
+			search += pyramidLevels;
+		}
+		if(landmarkTable != null) {
+			search += "-landmarks";
 		}
+		return search;
 	}
 
 	/**
-	 * Calculate the distance between start and end coordinates according to the weather
+	 * Search one leg with the search mode of the map
 	 * 
 	 * @param 		x1				X Coordinate of Start
 	 * 
@@ -410,524 +487,1051 @@ public class Path extends JFrame{
 	 * 
 	 * @param 		weather			Current Weather
 	 * 
-	 * @return						Visited Path Coordinates
+	 * @param 		legMetrics		Counters of the leg, null if they are not recorded
+	 * 
+	 * @return						Path coordinates of the leg
 	 */
 	
-	public List<Integer> aStarSearch(int x1, int y1, int x2, int y2, String weather) {
-
-		Map<String, Double> updateNodeMap = new HashMap<String, Double>();
-		Map<String, Set<String>> parentCoordinate = new HashMap<String, Set<String>>();
-
-		PriorityQueue<Double> fPriority = new PriorityQueue<Double>();
-		Map<Integer, Set<Integer>> openCoordinates = new HashMap<Integer, Set<Integer>>();
-		Map<Integer, Set<Integer>> closeCoordinates = new HashMap<Integer, Set<Integer>>();
-		
-		Map<String, Double> gValue = new HashMap<String, Double>();
-		String gCoordinate = Integer.valueOf(x1) + "," + Integer.valueOf(y1);
-		gValue.put(gCoordinate, 0.0);
-
-		int currentX = x1;
-		int currentY = y1;
-		int destinationX = x2;
-		int destinationY = y2;
-		int xNeighborValue = 0;
-		int yNeighborValue = 0;
-		int lowestFXCoordinate = 0;
-		int lowestFYCoordinate = 0;
-		double gDistance = 0;
-		double newFValue= 0;
-		String coordinates = "";
-		String parentCoordinatesValue = "";
-		double nextElevation = coordinateElevationArray[yNeighborValue][xNeighborValue];
-		double currentElevation = coordinateElevationArray[currentY][currentX];
-		double destinationElevation = coordinateElevationArray[destinationY][destinationX];
-		double heuristicDistance = calculateStraightDistance(x1, y1, x2, y2, currentElevation, nextElevation);
-		double fValue = heuristicDistance;
-
-		while(!(currentX == destinationX && currentY == destinationY)) {
-
-			ArrayList<Integer> requiredNeighborCoordinates = getNeighborCoordinates(currentX, currentY);
-			for(int index = 0; index < requiredNeighborCoordinates.size(); index+=2) {
-				xNeighborValue = requiredNeighborCoordinates.get(index);
-				yNeighborValue = requiredNeighborCoordinates.get(index + 1);
-
-				int neighborColor = terrainColorArray[xNeighborValue][yNeighborValue].getRGB();
-
-				int redNeighbor = (neighborColor >> 16) & 0xff;
-				int greenNeighbor = (neighborColor >> 8) & 0xff;
-				int blueNeighbor = (neighborColor) & 0xff;
-
-				String finalNeighborColor = Integer.valueOf(redNeighbor) + "," + Integer.valueOf(greenNeighbor) + "," + Integer.valueOf(blueNeighbor);
-
-				if(colorMap.containsKey(finalNeighborColor)) {
-					gDistance = getColorTime(currentX, currentY, xNeighborValue, yNeighborValue, index, weather, gValue);
-					heuristicDistance = calculateStraightDistance(xNeighborValue, yNeighborValue, destinationX, destinationY, nextElevation, destinationElevation) / openLand;
-
-					newFValue = gDistance + heuristicDistance;
-
-					if(!openCoordinates.containsKey(xNeighborValue) && !closeCoordinates.containsKey(xNeighborValue) ) {
-
-						Set<Integer> mapOCoordinateInteger = new HashSet<Integer>();
-						mapOCoordinateInteger.add(yNeighborValue);
-						openCoordinates.put(xNeighborValue, mapOCoordinateInteger);
-
-						fPriority.add(newFValue);
-
-						coordinates = Integer.valueOf(xNeighborValue) + "," + Integer.valueOf(yNeighborValue);
-
-						updateNodeMap.put(coordinates, newFValue);
-						parentCoordinatesValue = Integer.valueOf(currentX) + "," + Integer.valueOf(currentY);
-						if(!parentCoordinate.containsKey(parentCoordinatesValue)) {
-							Set<String> pCoordinateVal = new HashSet<String>();
-							pCoordinateVal.add(coordinates);
-							parentCoordinate.put(parentCoordinatesValue, pCoordinateVal);
-						}else {
-							parentCoordinate.get(parentCoordinatesValue).add(coordinates);
-						}
-
-					}
-					if(!closeCoordinates.containsKey(xNeighborValue) 
-							&& (openCoordinates.containsKey(xNeighborValue) && !openCoordinates.get(xNeighborValue).contains(yNeighborValue))) {
-						openCoordinates.get(xNeighborValue).add(yNeighborValue);
-						fPriority.add(newFValue);
-
-						coordinates = Integer.valueOf(xNeighborValue) + "," + Integer.valueOf(yNeighborValue);
-						updateNodeMap.put(coordinates, newFValue);
-						parentCoordinatesValue = Integer.valueOf(currentX) + "," + Integer.valueOf(currentY);
-						if(!parentCoordinate.containsKey(parentCoordinatesValue)) {
-							Set<String> pCoordinateVal = new HashSet<String>();
-							pCoordinateVal.add(coordinates);
-							parentCoordinate.put(parentCoordinatesValue, pCoordinateVal);
-						}else {
-							parentCoordinate.get(parentCoordinatesValue).add(coordinates);
-						}
-					}
-					if(!openCoordinates.containsKey(xNeighborValue) 
-							&& (closeCoordinates.containsKey(xNeighborValue) && !closeCoordinates.get(xNeighborValue).contains(yNeighborValue))) {
-						Set<Integer> mapOCoordinateInteger = new HashSet<Integer>();
-						mapOCoordinateInteger.add(yNeighborValue);
-						openCoordinates.put(xNeighborValue, mapOCoordinateInteger);
-
-						fPriority.add(newFValue);
-
-						coordinates = Integer.valueOf(xNeighborValue) + "," + Integer.valueOf(yNeighborValue);
-						updateNodeMap.put(coordinates, newFValue);
-						parentCoordinatesValue = Integer.valueOf(currentX) + "," + Integer.valueOf(currentY);
-						if(!parentCoordinate.containsKey(parentCoordinatesValue)) {
-							Set<String> pCoordinateVal = new HashSet<String>();
-							pCoordinateVal.add(coordinates);
-							parentCoordinate.put(parentCoordinatesValue, pCoordinateVal);
-						}else {
-							parentCoordinate.get(parentCoordinatesValue).add(coordinates);
-						}
-					}
-					if((openCoordinates.containsKey(xNeighborValue) && !openCoordinates.get(xNeighborValue).contains(yNeighborValue)) 
-							&& (closeCoordinates.containsKey(xNeighborValue) && !closeCoordinates.get(xNeighborValue).contains(yNeighborValue))) {
-						openCoordinates.get(xNeighborValue).add(yNeighborValue);
-
-						fPriority.add(newFValue);
-
-						coordinates = Integer.valueOf(xNeighborValue) + "," + Integer.valueOf(yNeighborValue);
-						updateNodeMap.put(coordinates, newFValue);
-						parentCoordinatesValue = Integer.valueOf(currentX) + "," + Integer.valueOf(currentY);
-						if(!parentCoordinate.containsKey(parentCoordinatesValue)) {
-							Set<String> pCoordinateVal = new HashSet<String>();
-							pCoordinateVal.add(coordinates);
-							parentCoordinate.put(parentCoordinatesValue, pCoordinateVal);
-						}else {
-							parentCoordinate.get(parentCoordinatesValue).add(coordinates);
-						}
-					}
-
-
-					if((!closeCoordinates.containsKey(xNeighborValue))
-							&& openCoordinates.containsKey(xNeighborValue) && openCoordinates.get(xNeighborValue).contains(yNeighborValue)) {
-						coordinates = Integer.valueOf(xNeighborValue) + "," + Integer.valueOf(yNeighborValue);
-						parentCoordinatesValue = Integer.valueOf(currentX) + "," + Integer.valueOf(currentY);
-						double oldFValue = updateNodeMap.get(coordinates);
-						if(newFValue < oldFValue) {
-							fPriority.remove(oldFValue);
-							fPriority.add(newFValue);
-
-							updateNodeMap.remove(coordinates);
-							updateNodeMap.put(coordinates, newFValue);
-							Set<String> keySet = parentCoordinate.keySet();
-							for(String key : keySet) {
-								if(parentCoordinate.get(key).contains(coordinates)) {
-									parentCoordinate.get(key).remove(coordinates);
-									if(!parentCoordinate.containsKey(parentCoordinatesValue)) {
-										Set<String> pCoordinateVal = new HashSet<String>();
-										pCoordinateVal.add(coordinates);
-										parentCoordinate.put(parentCoordinatesValue, pCoordinateVal);
-									}else {
-										parentCoordinate.get(parentCoordinatesValue).add(coordinates);
-									}
-									break;
-								}
-							}
-						}
-					}
-
-					if((closeCoordinates.containsKey(xNeighborValue) && !closeCoordinates.get(xNeighborValue).contains(yNeighborValue))
-							&& openCoordinates.containsKey(xNeighborValue) && openCoordinates.get(xNeighborValue).contains(yNeighborValue)) {
-						coordinates = Integer.valueOf(xNeighborValue) + "," + Integer.valueOf(yNeighborValue);
-						parentCoordinatesValue = Integer.valueOf(currentX) + "," + Integer.valueOf(currentY);
-						double oldFValue = updateNodeMap.get(coordinates);
-
-						if(newFValue < oldFValue) {
-							fPriority.remove(oldFValue);
-							fPriority.add(newFValue);
-
-							updateNodeMap.remove(coordinates);
-							updateNodeMap.put(coordinates, newFValue);
-							Set<String> keySet = parentCoordinate.keySet();
-							for(String key : keySet) {
-								if(parentCoordinate.get(key).contains(coordinates)) {
-									parentCoordinate.get(key).remove(coordinates);
-									if(!parentCoordinate.containsKey(parentCoordinatesValue)) {
-										Set<String> pCoordinateVal = new HashSet<String>();
-										pCoordinateVal.add(coordinates);
-										parentCoordinate.put(parentCoordinatesValue, pCoordinateVal);
-									}else {
-										parentCoordinate.get(parentCoordinatesValue).add(coordinates);
-									}
-									break;
-								}
-							}
-						}
-					}
-				}
-				if(index == requiredNeighborCoordinates.size() - 2 || (xNeighborValue == destinationX && yNeighborValue == destinationY)) {
-					if(fPriority.size() == 0) {
-						System.out.println();
-					}
-
-					if(xNeighborValue == destinationX && yNeighborValue == destinationY) {
-
-						Set<String> keys = parentCoordinate.keySet();
-						String[] neighborXYValues = coordinates.split(",");
-						int neighborXValue = Integer.parseInt(neighborXYValues[0]);
-						int neighborYValue = Integer.parseInt(neighborXYValues[1]);
-
-						String[] parentXYValues = parentCoordinatesValue.split(",");
-						int parentXValue = Integer.parseInt(parentXYValues[0]);
-						int parentYValue = Integer.parseInt(parentXYValues[1]);
-						parentCoordinates.add(neighborXValue);
-						parentCoordinates.add(neighborYValue);
-						parentCoordinates.add(parentXValue);
-						parentCoordinates.add(parentYValue);
-
-						lowestFXCoordinate = xNeighborValue;
-						lowestFYCoordinate = yNeighborValue;
-
-
-						getPath(parentCoordinate, parentCoordinatesValue, keys);
-					}else {
-
-						double lowestFValue = fPriority.poll();
-						Set<String> keySet = updateNodeMap.keySet();
-						String nextKey = "";
-
-						for( String keys : keySet ) {
-							if(updateNodeMap.get(keys).equals(lowestFValue)) {
-								nextKey = keys;
-								updateNodeMap.remove(keys);
-								break;
-							}
-						}
-
-						String[] xyValues = nextKey.split(",");
-						lowestFXCoordinate = Integer.parseInt(xyValues[0]);
-						lowestFYCoordinate = Integer.parseInt(xyValues[1]);
-
-					}
-
-					requiredNeighborCoordinates.clear();
-
-				}
-
-			}
-
-			if(!closeCoordinates.containsKey(currentX)) {
-				Set<Integer> mapCCoordinateInteger = new HashSet<Integer>();
-				mapCCoordinateInteger.add(currentY);
-				closeCoordinates.put(currentX, mapCCoordinateInteger);
-			}
-			else {
-				closeCoordinates.get(currentX).add(currentY);
-			}
-			currentX = lowestFXCoordinate;
-			currentY = lowestFYCoordinate;
-			openCoordinates.get(lowestFXCoordinate).remove(lowestFYCoordinate);
+	public int[] findLeg(int x1, int y1, int x2, int y2, String weather, SearchMetrics.Leg legMetrics) {
+		if(searchMode.equals("bidirectional")) {
+			return bidirectionalSearch(x1, y1, x2, y2, legMetrics);
 		}
-
-		return parentCoordinates;
+		if(searchMode.equals("hierarchical")) {
+			return hierarchicalSearch(x1, y1, x2, y2, legMetrics);
+		}
+		if(searchMode.equals("pyramid")) {
+			return pyramidSearch(x1, y1, x2, y2, legMetrics);
+		}
+		if(searchMode.equals("preview")) {
+			return previewSearch(x1, y1, x2, y2, legMetrics);
+		}
+		return aStarSearch(x1, y1, x2, y2, weather, legMetrics);
 	}
 
 	/**
-	 * Get water Edges
+	 * Default speed for various paths according to the weather. Every row of
+	 * the speed table holds the speeds used when leaving a pixel of that class,
+	 * so the fall penalty for leaving easy movement forest is a precomputed row
 	 * 
+	 * @param 		weather			Current Weather	
 	 */
 	
-	public void getWaterEdges() {
-
-		int xNeighborValue = 0;
-		int yNeighborValue = 0;
-
-		List<String> checkWater = new ArrayList<String>();
-		for(int yLevel = 0; yLevel < mapImage.getHeight(); yLevel++) {
-			for(int xLevel = 0; xLevel < mapImage.getWidth(); xLevel++) {
-				int neighbor = terrainColorArray[xLevel][yLevel].getRGB();
-
-				int red = (neighbor >> 16) & 0xff;
-				int green = (neighbor >> 8) & 0xff;
-				int blue = (neighbor) & 0xff;
-
-				String finalColor = Integer.valueOf(red) + "," + Integer.valueOf(green) + "," + Integer.valueOf(blue);
-
-				ArrayList<Integer> requiredNeighborCoordinates = getNeighborCoordinates(xLevel, yLevel);
-				for(int index = 0; index < requiredNeighborCoordinates.size(); index+=2) {
-					xNeighborValue = requiredNeighborCoordinates.get(index);
-					yNeighborValue = requiredNeighborCoordinates.get(index + 1);
-
-					int neighborColor = terrainColorArray[xNeighborValue][yNeighborValue].getRGB();
-
-					int redCurrent = (neighborColor >> 16) & 0xff;
-					int greenCurrent = (neighborColor >> 8) & 0xff;
-					int blueCurrent = (neighborColor) & 0xff;
-
-					String finalCurrentColor = Integer.valueOf(redCurrent) + "," + Integer.valueOf(greenCurrent) + "," + Integer.valueOf(blueCurrent);
-					checkWater.add(finalCurrentColor);				
-				}
-				if(checkWater.contains("0,0,255") && !finalColor.equals("0,0,255")) {
-					String xParent = Integer.toString(xLevel);
-					String yParent = Integer.toString(yLevel);
-					String xyParent = xParent + "," + yParent;
-					Set<Integer> mapCCoordinateInteger = new HashSet<Integer>();
-					mapCCoordinateInteger.add(0);
-					waterEdgeParent.put(xyParent, mapCCoordinateInteger);
-				}
-				requiredNeighborCoordinates.clear();
-				checkWater.clear();
+	public void addDefaultSpeed(String weather) {
+		terrainSpeed = getDefaultSpeed(weather);
+		speedTable = getSpeedTable(weather, terrainSpeed);
+		double fastestSpeed = 0;
+		for(double[] speed : speedTable) {
+			for(double rowSpeed : speed) {
+				fastestSpeed = Math.max(fastestSpeed, rowSpeed);
 			}
-		}	
-
+		}
+		columnStepTime = getStepTime(10.29, 0, fastestSpeed, fastestSpeed);
+		rowStepTime = getStepTime(7.55, 4, fastestSpeed, fastestSpeed);
 	}
 
 	/**
-	 * Display the Mud in Spring Season
+	 * Speed of every terrain class according to the weather, 0 for impassable terrain
 	 * 
+	 * @param 		weather			Current Weather
+	 * 
+	 * @return						Speed indexed by terrain class
 	 */
 	
-	public void getSpringBFS(){
-		Queue<String> mudEdgeQueue = new LinkedList<String>();
-		String currentCoordinate = "";
-		int currentX = 0;
-		int currentY = 0;
-		int currentXNeighbor = 0;
-		int currentYNeighbor = 0;
-		Set<String> closedSet = new HashSet<String>();
-		Set<String> neighborSet = new HashSet<String>();
-		double baseHeight = 0;
-
-		List<String> iterateCoordinates = new ArrayList<String>();
-		List<Integer> testColor = new ArrayList<Integer>();
-
-		for( String keys : waterEdgeParent.keySet() ) {
-			mudEdgeQueue.add(keys);
+	static double[] getDefaultSpeed(String weather) {
+		double[] terrainSpeed = new double[TerrainClass.COUNT];
+		terrainSpeed[TerrainClass.OPEN_LAND] = openLand;
+		terrainSpeed[TerrainClass.ROUGH_MEADOW] = roughMeadow;
+		terrainSpeed[TerrainClass.EASY_MOVEMENT_FOREST] = easyMovementForest;
+		terrainSpeed[TerrainClass.SLOW_RUN_FOREST] = slowRunForest;
+		terrainSpeed[TerrainClass.WALK_FOREST] = walkForest;
+		terrainSpeed[TerrainClass.PAVED_ROAD] = pavelRoad;
+		terrainSpeed[TerrainClass.FOOT_PATH] = footPath;
+		if(weather.equals("winter")) {
+			terrainSpeed[TerrainClass.ICE] = 14;
 		}
-
-		for(int parentIndex = 0; parentIndex < 15; parentIndex++ ) {
-			while(mudEdgeQueue.size() > 0) {
-				iterateCoordinates.add(mudEdgeQueue.poll());
-			}
-			for(int levelIndex = 0; levelIndex < iterateCoordinates.size(); levelIndex++) {
-				currentCoordinate = iterateCoordinates.get(levelIndex);
-				String[] currentXY = currentCoordinate.split(",");
-				currentX = Integer.parseInt(currentXY[0]);
-				currentY = Integer.parseInt(currentXY[1]);
-				baseHeight = coordinateElevationArray[currentY][currentX];
-		
-				terrainColorArray[currentX][currentY] = new Color(139, 69, 19);
-
-				ArrayList<Integer> requiredNeighborCoordinates = getNeighborCoordinates(currentX, currentY);
-
-				for(int index = 0; index < requiredNeighborCoordinates.size(); index+=2) {
-					currentXNeighbor = requiredNeighborCoordinates.get(index);
-					currentYNeighbor = requiredNeighborCoordinates.get(index + 1);
-
-					String xNeighbor = Integer.toString(currentXNeighbor);
-					String yNeighbor = Integer.toString(currentYNeighbor);
-					String xyNeighbor = xNeighbor + "," + yNeighbor;
-
-					int neighborColor = terrainColorArray[currentXNeighbor][currentYNeighbor].getRGB();
-					int redCurrent = (neighborColor >> 16) & 0xff;
-					int greenCurrent = (neighborColor >> 8) & 0xff;
-					int blueCurrent = (neighborColor) & 0xff;
-					String finalCurrentColor = Integer.valueOf(redCurrent) + "," + Integer.valueOf(greenCurrent) + "," + Integer.valueOf(blueCurrent);
-
-					double currentHeight = Math.floor(Math.abs(coordinateElevationArray[currentYNeighbor][currentXNeighbor] - baseHeight));
-
-					if(!closedSet.contains(xyNeighbor) 
-							&& !neighborSet.contains(xyNeighbor) 
-							&& !finalCurrentColor.equals("205,0,101") 
-							&& !finalCurrentColor.equals("0,0,255") 
-							&& currentHeight < 1
-							) {
-						mudEdgeQueue.add(xyNeighbor);
-						neighborSet.add(xyNeighbor);
-						testColor.add(currentX);
-						testColor.add(currentY);
-						terrainColorArray[currentXNeighbor][currentYNeighbor] = new Color(139, 69, 19);
-
-					}
-				}
-				closedSet.add(currentCoordinate);
-				requiredNeighborCoordinates.clear();
-
-			}
-			iterateCoordinates.clear();
-
+		if(weather.equals("spring")) {
+			terrainSpeed[TerrainClass.MUD] = 6;
 		}
-
+		return terrainSpeed;
 	}
 
 	/**
-	 * Display snow in winter season
+	 * Speed table indexed by the terrain class of the pixel being left
 	 * 
+	 * @param 		weather			Current Weather
+	 * 
+	 * @param 		terrainSpeed	Default speed of every terrain class
+	 * 
+	 * @return						Speed rows indexed by terrain class
 	 */
 	
-	public void getWinterBFS() {
-		Queue<String> mudEdgeQueue = new LinkedList<String>();
-		String currentCoordinate = "";
-		int currentX = 0;
-		int currentY = 0;
-		int currentXNeighbor = 0;
-		int currentYNeighbor = 0;
-		Set<String> closedSet = new HashSet<String>();
-		Set<String> neighborSet = new HashSet<String>();
-		List<String> iterateCoordinates = new ArrayList<String>();
-		List<Integer> testColor = new ArrayList<Integer>();
-
-		for( String keys : waterEdgeParent.keySet() ) {
-			mudEdgeQueue.add(keys);
+	static double[][] getSpeedTable(String weather, double[] terrainSpeed) {
+		double[][] speedTable = new double[TerrainClass.COUNT][];
+		for(int terrain = 0; terrain < TerrainClass.COUNT; terrain++) {
+			speedTable[terrain] = terrainSpeed;
 		}
-
-		for(int parentIndex = 0; parentIndex < 7; parentIndex++ ) {
-			while(mudEdgeQueue.size() > 0) {
-				iterateCoordinates.add(mudEdgeQueue.poll());
-			}
-			for(int levelIndex = 0; levelIndex < iterateCoordinates.size(); levelIndex++) {
-				currentCoordinate = iterateCoordinates.get(levelIndex);
-				String[] currentXY = currentCoordinate.split(",");
-				currentX = Integer.parseInt(currentXY[0]);
-				currentY = Integer.parseInt(currentXY[1]);
-
-				testColor.add(currentX);
-				testColor.add(currentY);
-
-				ArrayList<Integer> requiredNeighborCoordinates = getNeighborCoordinates(currentX, currentY);
-
-				for(int index = 0; index < requiredNeighborCoordinates.size(); index+=2) {
-					//System.out.println(i++);
-					currentXNeighbor = requiredNeighborCoordinates.get(index);
-					currentYNeighbor = requiredNeighborCoordinates.get(index + 1);
-
-					String xNeighbor = Integer.toString(currentXNeighbor);
-					String yNeighbor = Integer.toString(currentYNeighbor);
-					String xyNeighbor = xNeighbor + "," + yNeighbor;
-
-					int neighborColor = terrainColorArray[currentXNeighbor][currentYNeighbor].getRGB();
-					int redCurrent = (neighborColor >> 16) & 0xff;
-					int greenCurrent = (neighborColor >> 8) & 0xff;
-					int blueCurrent = (neighborColor) & 0xff;
-					String finalCurrentColor = Integer.valueOf(redCurrent) + "," + Integer.valueOf(greenCurrent) + "," + Integer.valueOf(blueCurrent);
-
-					if(!closedSet.contains(xyNeighbor) && !neighborSet.contains(xyNeighbor) 
-							&& !mudEdgeQueue.contains(xyNeighbor) 
-							&& !finalCurrentColor.equals("205,0,101") 
-							&& finalCurrentColor.equals("0,0,255")
-							&& !finalCurrentColor.equals("0,0,0")
-							) {
-						mudEdgeQueue.add(xyNeighbor);
-						neighborSet.add(xyNeighbor);
-						testColor.add(currentX);
-						testColor.add(currentY);
-						terrainColorArray[currentXNeighbor][currentYNeighbor] = new Color(135, 206, 250);
-					}
-				}
-				closedSet.add(currentCoordinate);
-				requiredNeighborCoordinates.clear();
-
-			}
-			iterateCoordinates.clear();
-
+		if(weather.equals("fall")) {
+			double[] fallSpeed = new double[TerrainClass.COUNT];
+			fallSpeed[TerrainClass.OPEN_LAND] = openLand - 2;
+			fallSpeed[TerrainClass.ROUGH_MEADOW] = roughMeadow - 1;
+			fallSpeed[TerrainClass.EASY_MOVEMENT_FOREST] = easyMovementForest - 8;
+			fallSpeed[TerrainClass.SLOW_RUN_FOREST] = slowRunForest - 2;
+			fallSpeed[TerrainClass.WALK_FOREST] = walkForest - 4;
+			fallSpeed[TerrainClass.PAVED_ROAD] = pavelRoad - 1;
+			fallSpeed[TerrainClass.FOOT_PATH] = footPath - 4;
+			speedTable[TerrainClass.EASY_MOVEMENT_FOREST] = fallSpeed;
 		}
-
+		return speedTable;
 	}
-	
+
 	/**
-	 * Get the Total Path Length
+	 * Time to step between two neighboring pixels
+	 * 
+	 * @param 		gDistance			Straight line distance between the pixels
 	 * 
+	 * @param 		index				Direction of the Neighbor with respect to current coordinate
+	 * 
+	 * @param 		currentSpeed		Speed on the current pixel
+	 * 
+	 * @param 		neighborSpeed		Speed on the neighbor pixel
+	 * 
+	 * @return							Time of the step
 	 */
 	
-	public void getPathLength() {
-		int x1 = 0;
-		int y1 = 0;
-		int x2 = 0;
-		int y2 = 0;
-		double currentElevation = 0;
-		double destinationElevation = 0;
+	static double getStepTime(double gDistance, int index, double currentSpeed, double neighborSpeed) {
+		if(index == 4 || index == 6) {
+			return (gDistance / ((7.55/2) * currentSpeed)) + (gDistance / ((7.55/2) * neighborSpeed));
+		}
+		return (gDistance / ((hypDistance) * currentSpeed)) + (gDistance / ((hypDistance) * neighborSpeed));
+	}
 
-		parentCoordinates.add(destinationPathCoordinates.get(0));
-		parentCoordinates.add(destinationPathCoordinates.get(1));
+	/**
+	 * Calculate time to travel between two coordinates according to the terrain of pixels
+	 * 
+	 * @param 		currentX			X Coordinate of the current
+	 * 
+	 * @param 		currentY			Y Coordinate of the current
+	 * 
+	 * @param 		xNeighborValue		X Coordinate of the Neighbor
+	 * 
+	 * @param 		yNeighborValue		Y Coordinate of the Neighbor
+	 * 
+	 * @param 		index				Direction of the Neighbor with respect to current coordinate
+	 * 
+	 * @param 		gValue				Travel time from the start, indexed by node id
+	 * 
+	 * @return							Time from current coordinate to destination coordinate
+	 */
+	
+	public double getColorTime(int currentX, int currentY, int xNeighborValue, int yNeighborValue, int index, double[] gValue) {
+		
+		int neighborNode = yNeighborValue * mapWidth + xNeighborValue;
+		double previousGValue = gValue[currentY * mapWidth + currentX];
+		double time = previousGValue + getEdgeTime(currentX, currentY, xNeighborValue, yNeighborValue, index);
+		
+		if(time < gValue[neighborNode]) {	
+			gValue[neighborNode] = time;
+		}
+		else {
+			time = gValue[neighborNode];
+		}
+
+		return time;
+	}
+
+	/**
+	 * Time to step from a pixel to a neighbor with the speeds of the season,
+	 * from the step time table when there is one
+	 * 
+	 * @param 		currentX			X Coordinate of the current
+	 * 
+	 * @param 		currentY			Y Coordinate of the current
+	 * 
+	 * @param 		xNeighborValue		X Coordinate of the Neighbor
+	 * 
+	 * @param 		yNeighborValue		Y Coordinate of the Neighbor
+	 * 
+	 * @param 		index				Direction of the Neighbor with respect to current coordinate
+	 * 
+	 * @return							Time of the step
+	 */
+	
+	public double getEdgeTime(int currentX, int currentY, int xNeighborValue, int yNeighborValue, int index) {
+		EdgeTable edgeTable = this.edgeTable;
+		if(edgeTable != null) {
+			int direction = xNeighborValue != currentX ? (xNeighborValue > currentX ? 0 : 1) : (yNeighborValue > currentY ? 2 : 3);
+			if((direction >= 2) == (index == 4 || index == 6)) {
+				return edgeTable.getTime(currentY * mapWidth + currentX, direction);
+			}
+		}
+		return computeEdgeTime(currentX, currentY, xNeighborValue, yNeighborValue, index);
+	}
+
+	/**
+	 * Time to step from a pixel to its neighbor in one of the four directions
+	 * of neighborOffsetX. Every search scores its steps with this, so a route
+	 * takes the same time whichever search found it, and the lower bounds and
+	 * landmark tables hold for all of them
+	 * 
+	 * @param 		currentX			X Coordinate of the current
+	 * 
+	 * @param 		currentY			Y Coordinate of the current
+	 * 
+	 * @param 		direction			Index of the neighbor in neighborOffsetX
+	 * 
+	 * @return							Time of the step
+	 */
+	
+	public double getNeighborTime(int currentX, int currentY, int direction) {
+		return getEdgeTime(currentX, currentY, currentX + neighborOffsetX[direction], currentY + neighborOffsetY[direction], 2 * direction);
+	}
+
+	/**
+	 * Time to step from a pixel to a neighbor, computed from the elevation
+	 * and the speeds of the season
+	 * 
+	 * @param 		currentX			X Coordinate of the current
+	 * 
+	 * @param 		currentY			Y Coordinate of the current
+	 * 
+	 * @param 		xNeighborValue		X Coordinate of the Neighbor
+	 * 
+	 * @param 		yNeighborValue		Y Coordinate of the Neighbor
+	 * 
+	 * @param 		index				Direction of the Neighbor with respect to current coordinate
+	 * 
+	 * @return							Time of the step
+	 */
+	
+	public double computeEdgeTime(int currentX, int currentY, int xNeighborValue, int yNeighborValue, int index) {
+		int currentNode = currentY * mapWidth + currentX;
+		int neighborNode = yNeighborValue * mapWidth + xNeighborValue;
+
+		double[] speed = speedTable[terrainClass[currentNode]];
+		double currentSpeed = speed[terrainClass[currentNode]];
+		double neighborSpeed = speed[terrainClass[neighborNode]];
+
+		double nextElevation = coordinateElevationArray[yNeighborValue][xNeighborValue];
+		double currentElevation = coordinateElevationArray[currentY][currentX];
+
+		double gDistance = getStraightDistance(currentX, currentY, xNeighborValue, yNeighborValue, currentElevation, nextElevation);
+		return getStepTime(gDistance, index, currentSpeed, neighborSpeed);
+	}
+
+	/**
+	 * Lower bound on the time between two pixels. A path has to make every
+	 * column and row step between them, and the bound takes each step at the
+	 * fastest speed of the season on flat ground. With landmarks the larger
+	 * of this and the landmark bound is used
+	 * 
+	 * @param 		fromNode		Node id of the first pixel
+	 * 
+	 * @param 		toNode			Node id of the second pixel
+	 * 
+	 * @return						Time no path between the pixels can beat
+	 */
+	
+	public double getLowerBoundTime(int fromNode, int toNode) {
+		int columnSteps = Math.abs(fromNode % mapWidth - toNode % mapWidth);
+		int rowSteps = Math.abs(fromNode / mapWidth - toNode / mapWidth);
+		double lowerBound = columnSteps * columnStepTime + rowSteps * rowStepTime;
+		if(landmarkTable != null) {
+			lowerBound = Math.max(lowerBound, landmarkTable.getLowerBound(fromNode, toNode));
+		}
+		return lowerBound;
+	}
+
+	/**
+	 * Walk the parent pointers back to the start and store the path. The walk
+	 * is done twice, once to size the buffer and once to fill it, so the cost
+	 * follows the length of the path
+	 * 
+	 * @param 		parentNode					Parent node id of every visited node, -1 for none
+	 * 
+	 * @param 		destinationNode				Node id of the destination
+	 * 
+	 * @param 		node						Node id the destination was reached from
+	 * 
+	 * @param 		width						Width of the map
+	 * 
+	 * @return									Path coordinates as x, y pairs from the destination back towards the start
+	 */
+	
+	public int[] getPath(int[] parentNode, int destinationNode, int node, int width) {
+		int pathLength = 2;
+		for(int walkNode = node; parentNode[walkNode] != -1; walkNode = parentNode[walkNode]) {
+			pathLength++;
+		}
+		int[] legCoordinates = new int[2 * pathLength];
+		legCoordinates[0] = destinationNode % width;
+		legCoordinates[1] = destinationNode / width;
+		legCoordinates[2] = node % width;
+		legCoordinates[3] = node / width;
+		int index = 4;
+		for(int walkNode = node; parentNode[walkNode] != -1; walkNode = parentNode[walkNode]) {
+			legCoordinates[index++] = walkNode % width;
+			legCoordinates[index++] = walkNode / width;
+		}
+		return legCoordinates;
+	}
+
+	/**
+	 * Path coordinates of a leg from the pixels it runs through, for searches
+	 * that find the path from the start onwards instead of from parent pointers
+	 * 
+	 * @param 		startNode					Node id of the start
+	 * 
+	 * @param 		destinationNode				Node id of the destination
+	 * 
+	 * @param 		pathNodes					Node ids between the start and the destination in walking order
+	 * 
+	 * @param 		pathLength					Number of node ids used in pathNodes
+	 * 
+	 * @param 		width						Width of the map
+	 * 
+	 * @return									Path coordinates in the order of getPath
+	 */
+	
+	static int[] getPath(int startNode, int destinationNode, int[] pathNodes, int pathLength, int width) {
+		int lastNode = pathLength == 0 ? startNode : pathNodes[pathLength - 1];
+		int[] legCoordinates = new int[2 * pathLength + 4];
+		legCoordinates[0] = destinationNode % width;
+		legCoordinates[1] = destinationNode / width;
+		legCoordinates[2] = lastNode % width;
+		legCoordinates[3] = lastNode / width;
+		int index = 4;
+		for(int pathIndex = pathLength - 1; pathIndex >= 0; pathIndex--) {
+			legCoordinates[index++] = pathNodes[pathIndex] % width;
+			legCoordinates[index++] = pathNodes[pathIndex] / width;
+		}
+		return legCoordinates;
+	}
+
+	/**
+	 * Calculate the distance between start and end coordinates according to the weather.
+	 * Without landmarks every leg takes the time the original search of the
+	 * program found. Open pixels with the same f value may be taken in
+	 * another order than there, so only the time is kept: a leg can take
+	 * another route of the same time.
+	 * With landmark tables the search runs until the destination is taken from
+	 * the open nodes and reopens a pixel reached faster after it was closed, as
+	 * the float tables can be off by a rounding step, so the path it returns is
+	 * the fastest one
+	 * 
+	 * @param 		x1				X Coordinate of Start
+	 * 
+	 * @param 		y1				Y Coordinate of Start
+	 * 
+	 * @param 		x2				X Coordinate of Destination
+	 * 
+	 * @param 		y2				Y Coordinate of Destination
+	 * 
+	 * @param 		weather			Current Weather
+	 * 
+	 * @return						Path coordinates of the leg as x, y pairs, from the destination back towards 
+	 * 								the start, empty if the destination cannot be reached
+	 */
+	
+	public int[] aStarSearch(int x1, int y1, int x2, int y2, String weather) {
+		return aStarSearch(x1, y1, x2, y2, weather, null);
+	}
+
+	/**
+	 * A Star search of a leg that also adds its counters to the metrics of the leg
+	 * 
+	 * @param 		legMetrics		Counters of the leg, null if they are not recorded
+	 * 
+	 * @return						Path coordinates of the leg as in aStarSearch
+	 */
+	
+	int[] aStarSearch(int x1, int y1, int x2, int y2, String weather, SearchMetrics.Leg legMetrics) {
+
+		int width = mapWidth;
+		int height = mapHeight;
+		int nodeCount = width * height;
+
+		double[] gValue = new double[nodeCount];
+		int[] parentNode = new int[nodeCount];
+		BitSet closeNodes = new BitSet(nodeCount);
+		IndexedMinHeap openNodes = new IndexedMinHeap(nodeCount);
+		Arrays.fill(gValue, Double.POSITIVE_INFINITY);
+		Arrays.fill(parentNode, -1);
+
+		int currentNode = y1 * width + x1;
+		int destinationNode = y2 * width + x2;
+		gValue[currentNode] = 0.0;
+
+		double nextElevation = coordinateElevationArray[0][0];
+		double destinationElevation = coordinateElevationArray[y2][x2];
+		long expanded = 0;
+
+		while(currentNode != destinationNode) {
+			expanded++;
+
+			int currentX = currentNode % width;
+			int currentY = currentNode / width;
+			for(int direction = 0; direction < 4; direction++) {
+				int xNeighborValue = currentX + neighborOffsetX[direction];
+				int yNeighborValue = currentY + neighborOffsetY[direction];
+				if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height) {
+					continue;
+				}
+				int neighborNode = yNeighborValue * width + xNeighborValue;
+				if(landmarkTable != null && closeNodes.get(neighborNode)
+						&& gValue[currentNode] + getNeighborTime(currentX, currentY, direction) < gValue[neighborNode]) {
+					closeNodes.clear(neighborNode);
+				}
+
+				if((terrainSpeed[terrainClass[neighborNode]] > 0 || neighborNode == destinationNode) && !closeNodes.get(neighborNode)) {
+					double gDistance = getColorTime(currentX, currentY, xNeighborValue, yNeighborValue, 2 * direction, gValue);
+					double heuristicDistance = landmarkTable != null ? getLowerBoundTime(neighborNode, destinationNode)
+							: getStraightDistance(xNeighborValue, yNeighborValue, x2, y2, nextElevation, destinationElevation) / openLand;
+
+					double newFValue = gDistance + heuristicDistance;
+
+					if(!openNodes.contains(neighborNode)) {
+						openNodes.add(neighborNode, newFValue);
+						parentNode[neighborNode] = currentNode;
+					}
+					else if(newFValue < openNodes.key(neighborNode)) {
+						openNodes.decreaseKey(neighborNode, newFValue);
+						parentNode[neighborNode] = currentNode;
+					}
+				}
+				if(neighborNode == destinationNode && landmarkTable == null) {
+					expandedNodes.add(expanded);
+					if(legMetrics != null) {
+						legMetrics.addSearch(expanded, openNodes);
+					}
+					return getPath(parentNode, neighborNode, currentNode, width);
+				}
+			}
+
+			closeNodes.set(currentNode);
+			if(openNodes.isEmpty()) {
+				break;
+			}
+			currentNode = openNodes.poll();
+		}
+
+		expandedNodes.add(expanded);
+		if(legMetrics != null) {
+			legMetrics.addSearch(expanded, openNodes);
+		}
+		if(currentNode == destinationNode && parentNode[destinationNode] != -1) {
+			return getPath(parentNode, destinationNode, parentNode[destinationNode], width);
+		}
+		return new int[0];
+	}
+
+	/**
+	 * Search a leg from both controls at once. The path has the least time
+	 * getLegTime can give a leg of the season, which the heuristic of
+	 * aStarSearch does not promise
+	 * 
+	 * @param 		x1				X Coordinate of Start
+	 * 
+	 * @param 		y1				Y Coordinate of Start
+	 * 
+	 * @param 		x2				X Coordinate of Destination
+	 * 
+	 * @param 		y2				Y Coordinate of Destination
+	 * 
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the 
+	 * 								destination cannot be reached
+	 */
+	
+	public int[] bidirectionalSearch(int x1, int y1, int x2, int y2) {
+		return bidirectionalSearch(x1, y1, x2, y2, null);
+	}
+
+	int[] bidirectionalSearch(int x1, int y1, int x2, int y2, SearchMetrics.Leg legMetrics) {
+		BidirectionalSearch search = new BidirectionalSearch(this);
+		int[] legCoordinates = search.search(x1, y1, x2, y2);
+		expandedNodes.add(search.expandedNodes);
+		if(legMetrics != null && search.forwardOpen != null) {
+			legMetrics.addSearch(search.expandedNodes, search.forwardOpen);
+			legMetrics.addHeap(search.backwardOpen);
+		}
+		return legCoordinates;
+	}
+
+	/**
+	 * Search a leg on the cluster graph of the season and then inside the
+	 * clusters of the path it finds. Steps are scored like in aStarSearch,
+	 * and getLegTime of the leg is at least the time aStarSearch finds with
+	 * landmarks and at most the time over the cluster entrances. Both times
+	 * of the search go to the metrics of the leg
+	 * 
+	 * @param 		x1				X Coordinate of Start
+	 * 
+	 * @param 		y1				Y Coordinate of Start
+	 * 
+	 * @param 		x2				X Coordinate of Destination
+	 * 
+	 * @param 		y2				Y Coordinate of Destination
+	 * 
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the 
+	 * 								destination cannot be reached
+	 */
+	
+	public int[] hierarchicalSearch(int x1, int y1, int x2, int y2) {
+		return hierarchicalSearch(x1, y1, x2, y2, null);
+	}
+
+	int[] hierarchicalSearch(int x1, int y1, int x2, int y2, SearchMetrics.Leg legMetrics) {
+		HierarchicalSearch search = new HierarchicalSearch(getClusterGraph());
+		search.legMetrics = legMetrics;
+		int[] legCoordinates = search.search(x1, y1, x2, y2);
+		expandedNodes.add(search.expandedNodes);
+		if(legMetrics != null) {
+			legMetrics.expandedNodes += search.expandedNodes;
+			legMetrics.pathTime = search.pathTime;
+			legMetrics.entrancePathTime = search.entrancePathTime;
+		}
+		return legCoordinates;
+	}
+
+	/**
+	 * Search a leg from the coarsest level of the search pyramid down, every
+	 * level only in a corridor around the route of the level above. The
+	 * corridors are widened until the destination is reached, so the leg is
+	 * only empty if the destination cannot be reached at all. The leg has no
+	 * bound on its time; aStarSearch with landmarks is the exact search
+	 * 
+	 * @param 		x1				X Coordinate of Start
+	 * 
+	 * @param 		y1				Y Coordinate of Start
+	 * 
+	 * @param 		x2				X Coordinate of Destination
+	 * 
+	 * @param 		y2				Y Coordinate of Destination
+	 * 
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the 
+	 * 								destination cannot be reached
+	 */
+	
+	public int[] pyramidSearch(int x1, int y1, int x2, int y2) {
+		return pyramidSearch(x1, y1, x2, y2, null);
+	}
+
+	int[] pyramidSearch(int x1, int y1, int x2, int y2, SearchMetrics.Leg legMetrics) {
+		PyramidSearch search = new PyramidSearch(getSearchPyramid());
+		search.legMetrics = legMetrics;
+		int[] legCoordinates = search.search(x1, y1, x2, y2);
+		expandedNodes.add(search.expandedNodes);
+		if(legMetrics != null) {
+			legMetrics.expandedNodes += search.expandedNodes;
+			legMetrics.widenings += search.widenings;
+		}
+		return legCoordinates;
+	}
+
+	/**
+	 * Route of a leg on the 2x level of the search pyramid, for a quick look
+	 * at a course. It is drawn through the centers of the cells and may cut
+	 * through pixels that cannot be entered
+	 * 
+	 * @param 		x1				X Coordinate of Start
+	 * 
+	 * @param 		y1				Y Coordinate of Start
+	 * 
+	 * @param 		x2				X Coordinate of Destination
+	 * 
+	 * @param 		y2				Y Coordinate of Destination
+	 * 
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the 
+	 * 								destination cannot be reached
+	 */
+	
+	public int[] previewSearch(int x1, int y1, int x2, int y2) {
+		return previewSearch(x1, y1, x2, y2, null);
+	}
+
+	int[] previewSearch(int x1, int y1, int x2, int y2, SearchMetrics.Leg legMetrics) {
+		PyramidSearch search = new PyramidSearch(getSearchPyramid());
+		search.legMetrics = legMetrics;
+		int[] legCoordinates = search.preview(x1, y1, x2, y2);
+		expandedNodes.add(search.expandedNodes);
+		if(legMetrics != null) {
+			legMetrics.expandedNodes += search.expandedNodes;
+			legMetrics.widenings += search.widenings;
+		}
+		return legCoordinates;
+	}
+
+	/**
+	 * Search pyramid of the map and its season, built the first time a leg needs it
+	 * 
+	 * @return						Search pyramid shared by every leg
+	 */
+	
+	public synchronized SearchPyramid getSearchPyramid() {
+		if(searchPyramid == null) {
+			searchPyramid = SearchPyramid.build(this, pyramidLevels);
+		}
+		return searchPyramid;
+	}
+
+	/**
+	 * Build everything the search mode and the leg cache would otherwise
+	 * build the first time a leg needs it, and refuse terrain changes from
+	 * then on. A frozen map is only read, so it can be handed to any number
+	 * of threads at once
+	 */
+	
+	public synchronized void freeze() {
+		if(searchMode.equals("hierarchical")) {
+			getClusterGraph();
+		}
+		if(searchMode.equals("pyramid") || searchMode.equals("preview")) {
+			getSearchPyramid();
+		}
+		if(legCache != null) {
+			getContentHash();
+		}
+		frozen = true;
+	}
+
+	/**
+	 * Cluster graph of the map and its season, built the first time a leg needs it
+	 * 
+	 * @return						Cluster graph shared by every leg
+	 */
+	
+	public synchronized ClusterGraph getClusterGraph() {
+		if(clusterGraph == null) {
+			clusterGraph = ClusterGraph.build(this, clusterSize, parallelism);
+		}
+		return clusterGraph;
+	}
+
+	/**
+	 * Get water Edges
+	 * 
+	 */
+	
+	public void getWaterEdges() {
+		waterEdges = WaterEdges.find(terrainClass, mapWidth, mapHeight, parallelism);
+	}
 
+	/**
+	 * Find the Mud in Spring Season
+	 * 
+	 * @return						Mud pixels of the season
+	 */
+	
+	public SeasonOverlay getSpringBFS(){
+		SeasonOverlay mudOverlay = getSeasonRule("spring");
+		mudOverlay.spread(waterEdges.nodes(), terrainClass, coordinateElevationArray, mapWidth, mapHeight, parallelism);
+		return mudOverlay;
+	}
 
-		for(int index = 0; index < parentCoordinates.size() - 3; index+=2) {
-			x1 = parentCoordinates.get(index);
-			y1 = parentCoordinates.get(index + 1);
-			x2 = parentCoordinates.get(index + 2);
-			y2 = parentCoordinates.get(index + 3);
+	/**
+	 * Find the ice in winter season
+	 * 
+	 * @return						Ice pixels of the season
+	 */
+	
+	public SeasonOverlay getWinterBFS() {
+		SeasonOverlay iceOverlay = getSeasonRule("winter");
+		iceOverlay.spread(waterEdges.nodes(), terrainClass, coordinateElevationArray, mapWidth, mapHeight, parallelism);
+		return iceOverlay;
+	}
+
+	/**
+	 * Empty overlay of a season with its radius and elevation rule
+	 * 
+	 * @param 		weather			Current Weather
+	 * 
+	 * @return						Mud for spring, ice for winter, null for the other seasons
+	 */
+	
+	static SeasonOverlay getSeasonRule(String weather) {
+		if(weather.equals("spring")) {
+			return SeasonOverlay.mud(mudRadius, mudElevationStep);
+		}
+		if(weather.equals("winter")) {
+			return SeasonOverlay.ice(iceRadius);
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the Total Path Length
+	 * 
+	 */
+	
+	public void getPathLength() {
+		parentCoordinates.add(destinationPathCoordinates.get(0));
+		parentCoordinates.add(destinationPathCoordinates.get(1));
+
+		totalPathLength += getPathLength(parentCoordinates);
+	}
+
+	/**
+	 * Length of a list of path coordinates
+	 * 
+	 * @param 		pathCoordinates		Path Coordinates
+	 * 
+	 * @return							Sum of the straight line distances between consecutive coordinates
+	 */
+	
+	public double getPathLength(List<Integer> pathCoordinates) {
+		int x1 = 0;
+		int y1 = 0;
+		int x2 = 0;
+		int y2 = 0;
+		double currentElevation = 0;
+		double destinationElevation = 0;
+		double pathLength = 0;
+
+		for(int index = 0; index < pathCoordinates.size() - 3; index+=2) {
+			x1 = pathCoordinates.get(index);
+			y1 = pathCoordinates.get(index + 1);
+			x2 = pathCoordinates.get(index + 2);
+			y2 = pathCoordinates.get(index + 3);
 			currentElevation = coordinateElevationArray[y1][x1];
 			destinationElevation = coordinateElevationArray[y2][x2];
-			totalPathLength += calculateStraightDistance(x1, y1, x2, y2, currentElevation, destinationElevation);
+			pathLength += getStraightDistance(x1, y1, x2, y2, currentElevation, destinationElevation);
 		}
+		return pathLength;
+	}
+
+	/**
+	 * Time of a leg over the step times of the season
+	 * 
+	 * @param 		legCoordinates		Path coordinates of the leg in the order of aStarSearch
+	 * 
+	 * @param 		x1					X Coordinate of Start
+	 * 
+	 * @param 		y1					Y Coordinate of Start
+	 * 
+	 * @return							Time of the leg, 0 for an empty leg
+	 */
+	
+	public double getLegTime(int[] legCoordinates, int x1, int y1) {
+		double legTime = 0;
+		int currentX = x1;
+		int currentY = y1;
+		for(int index = legCoordinates.length - 2; index >= 0; index -= 2) {
+			int xNeighborValue = legCoordinates[index];
+			int yNeighborValue = legCoordinates[index + 1];
+			if(xNeighborValue == currentX && yNeighborValue == currentY) {
+				continue;
+			}
+			int direction = xNeighborValue > currentX ? 0 : xNeighborValue < currentX ? 1 : yNeighborValue > currentY ? 2 : 3;
+			legTime += getNeighborTime(currentX, currentY, direction);
+			currentX = xNeighborValue;
+			currentY = yNeighborValue;
+		}
+		return legTime;
+	}
+
+	/**
+	 * Hash of the terrain, speeds and elevation of the map, found the first
+	 * time a leg is looked up in the leg cache
+	 * 
+	 * @return						SHA-256 in hex
+	 */
+	
+	public synchronized String getContentHash() {
+		if(contentHash == null) {
+			contentHash = LegCache.getContentHash(this);
+		}
+		return contentHash;
+	}
+
+	/**
+	 * Render the map with a path and its controls without changing the terrain.
+	 * The raster of the map is copied at once, and only the season overlay,
+	 * the path and the control markers are drawn on top of it
+	 * 
+	 * @param 		pathCoordinates		Path Coordinates
+	 * 
+	 * @param 		controls			Control coordinates of the course
+	 * 
+	 * @return							Rendered image
+	 */
+	
+	public BufferedImage renderRoute(List<Integer> pathCoordinates, List<Integer> controls) {
+		TerrainRaster routeRaster = terrainRaster.copy();
+		if(seasonOverlay != null) {
+			int overlayColor = TerrainClass.color(seasonOverlay.terrain);
+			BitSet overlayNodes = seasonOverlay.overlayNodes;
+			for(int node = overlayNodes.nextSetBit(0); node >= 0; node = overlayNodes.nextSetBit(node + 1)) {
+				routeRaster.setRGB(node, overlayColor);
+			}
+		}
+		routeRaster.setRGB(controls.get(0), controls.get(1), 0xFF0000);
+		for(int index = 0; index < pathCoordinates.size() - 1; index += 2) {
+			routeRaster.setRGB(pathCoordinates.get(index), pathCoordinates.get(index + 1), 0xFF0000);
+		}
+		for(int index = 0; index < controls.size() - 1; index += 2) {
+			for(int offsetY = -1; offsetY <= 1; offsetY++) {
+				for(int offsetX = -1; offsetX <= 1; offsetX++) {
+					int xCoordinate = controls.get(index) + offsetX;
+					int yCoordinate = controls.get(index + 1) + offsetY;
+					if((offsetX != 0 || offsetY != 0) && 0 <= xCoordinate && xCoordinate < mapWidth && 0 <= yCoordinate && yCoordinate < mapHeight) {
+						routeRaster.setRGB(xCoordinate, yCoordinate, 0x4B0082);
+					}
+				}
+			}
+		}
+		return routeRaster.toImage();
+	}
+
+	/**
+	 * Check whether a season is supported
+	 * 
+	 * @param 		weather			Season name
+	 * 
+	 * @return						True for summer, fall, winter and spring
+	 */
+	
+	static boolean isSeason(String weather) {
+		return weather.equals("summer") || weather.equals("fall") || weather.equals("spring") || weather.equals("winter");
+	}
+
+	/**
+	 * Set the speeds of the season and use its mud or ice on top of the terrain
+	 * 
+	 * @param 		weather			Current Weather
+	 */
+	
+	public void applySeason(String weather) {
+		this.weather = weather;
+		addDefaultSpeed(weather);
+		SeasonOverlay overlay = getSeasonOverlay(weather);
+		if(overlay != null) {
+			useOverlay(overlay);
+		}
+		if(useEdgeTable) {
+			edgeTable = EdgeTable.forMap(this, weather);
+		}
+		if(landmarkCount > 0) {
+			landmarkTable = LandmarkTable.forMap(this, weather, landmarkCount);
+		}
+	}
+
+	/**
+	 * Change the terrain class of some pixels, for closures or a changed mud
+	 * or ice extent. The terrain may be shared with the map the season was
+	 * built from, so it is copied on the first change. The cluster graph,
+	 * search pyramid, landmark tables, step time table and content hash no
+	 * longer fit the terrain and are dropped; DStarLite repairs its legs from
+	 * the changed pixels. A frozen map is searched by other threads and is
+	 * never changed
+	 * 
+	 * @param 		nodes			Node ids of the changed pixels
+	 * 
+	 * @param 		terrain			New terrain class of the pixels
+	 */
+	
+	public synchronized void changeTerrain(int[] nodes, byte terrain) {
+		if(frozen) {
+			throw new IllegalStateException("The map is shared by other searches, change a season map of its own");
+		}
+		if(!ownTerrain) {
+			terrainClass = terrainClass.clone();
+			ownTerrain = true;
+		}
+		for(int node : nodes) {
+			terrainClass[node] = terrain;
+		}
+		clusterGraph = null;
+		searchPyramid = null;
+		landmarkTable = null;
+		edgeTable = null;
+		contentHash = null;
+	}
+
+	/**
+	 * Mud or ice of a season, found from the water edges of the map. The
+	 * water edges are only searched for the first time they are needed
+	 * 
+	 * @param 		weather			Current Weather
+	 * 
+	 * @return						Overlay of the season, null if the season changes no terrain
+	 */
+	
+	public synchronized SeasonOverlay getSeasonOverlay(String weather) {
+		if(!weather.equals("spring") && !weather.equals("winter")) {
+			return null;
+		}
+		SearchMetrics.Phase phase = SearchMetrics.beginPhase("overlay", weather);
+		if(waterEdges == null) {
+			getWaterEdges();
+		}
+		SeasonOverlay overlay = weather.equals("spring") ? getSpringBFS() : getWinterBFS();
+		SearchMetrics.endPhase(phase);
+		return overlay;
+	}
+
+	/**
+	 * Map of a season that shares the terrain and elevation of this map. This
+	 * map is not changed, so any number of seasons can be built from it
+	 * 
+	 * @param 		weather			Current Weather
+	 * 
+	 * @return						Map of the season
+	 */
+	
+	public Path forSeason(String weather) {
+		Path seasonMap = new Path();
+		seasonMap.mapPath = mapPath;
+		seasonMap.mapWidth = mapWidth;
+		seasonMap.mapHeight = mapHeight;
+		seasonMap.coordinateElevationArray = coordinateElevationArray;
+		seasonMap.baseElevation = baseElevation;
+		seasonMap.terrainRaster = terrainRaster;
+		seasonMap.terrainClass = terrainClass;
+		seasonMap.destinationPathCoordinates = destinationPathCoordinates;
+		seasonMap.parallelism = parallelism;
+		seasonMap.searchMode = searchMode;
+		seasonMap.weather = weather;
+		seasonMap.addDefaultSpeed(weather);
+		SeasonOverlay overlay = getSeasonOverlay(weather);
+		if(overlay != null) {
+			seasonMap.useOverlay(overlay);
+		}
+		if(useEdgeTable) {
+			seasonMap.edgeTable = EdgeTable.forMap(seasonMap, weather);
+		}
+		if(landmarkCount > 0) {
+			seasonMap.landmarkTable = LandmarkTable.forMap(seasonMap, weather, landmarkCount);
+		}
+		return seasonMap;
+	}
+
+	/**
+	 * Solve the course for every season on the loaded map. The seasons are
+	 * solved concurrently and share the threads of the leg searches
+	 * 
+	 * @param 		outputFileName		Output image, the season is added to its name
+	 * 
+	 * @return							Maps of summer, fall, winter and spring with their paths
+	 * 
+	 * @throws 		IOException			To handle if an IO exception occurs
+	 */
+	
+	public List<Path> calculateAllSeasons(String outputFileName) throws IOException {
+		List<Callable<Path>> seasonTasks = new ArrayList<Callable<Path>>();
+		int seasonParallelism = Math.max(1, parallelism / seasons.length);
+		ExecutorService imagePool = imageThreads > 0 ? Executors.newFixedThreadPool(imageThreads) : null;
+		List<Future<Void>> imageWrites = new ArrayList<Future<Void>>();
+		for(String weather : seasons) {
+			seasonTasks.add(() -> {
+				Path seasonMap = forSeason(weather);
+				seasonMap.parallelism = seasonParallelism;
+				seasonMap.calculatePath(weather);
+				String seasonFileName = getSeasonFileName(outputFileName, weather);
+				if(imagePool == null) {
+					seasonMap.displayImage(seasonFileName);
+				}else {
+					Future<Void> imageWrite = imagePool.submit(() -> {
+						seasonMap.displayImage(seasonFileName);
+						return null;
+					});
+					synchronized(imageWrites) {
+						imageWrites.add(imageWrite);
+					}
+				}
+				seasonMap.getPathLength();
+				return seasonMap;
+			});
+		}
+		try {
+			List<Path> seasonMaps = invokeAll(Math.max(1, Math.min(parallelism, seasons.length)), seasonTasks, "solving the seasons");
+			getAll(imageWrites, "writing the season images");
+			return seasonMaps;
+		}catch(UncheckedIOException exception) {
+			throw exception.getCause();
+		}finally {
+			if(imagePool != null) {
+				imagePool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Output name of a season, the season is put in front of the extension
+	 * 
+	 * @param 		outputFileName		Output image
+	 * 
+	 * @param 		weather				Current Weather
+	 * 
+	 * @return							Output image of the season
+	 */
+	
+	static String getSeasonFileName(String outputFileName, String weather) {
+		int extension = outputFileName.lastIndexOf('.');
+		if(extension <= outputFileName.lastIndexOf(File.separatorChar)) {
+			return outputFileName + "-" + weather;
+		}
+		return outputFileName.substring(0, extension) + "-" + weather + outputFileName.substring(extension);
 	}
 
 	public static void main(String[] args) throws IOException {
 		if(args.length != 5) {
-			System.out.println("Please add 5 arguments");
+			System.out.println("Please add 5 arguments; the options are listed in README.md");
 			System.exit(0);
 		}
+		if(new File(args[0]).isDirectory()) {
+			TiledSearch.main(args);
+			return;
+		}
+		boolean viewer = Boolean.getBoolean("path.viewer");
+		if(!viewer) {
+			System.setProperty("java.awt.headless", "true");
+		}
 		Path shortestPath = new Path();
-		shortestPath.setVisible(true);
-		Scanner scanner = new Scanner(new FileInputStream(args[1]));
-		shortestPath.fileLoad(scanner);
-		if(args[3].equals("summer") || args[3].equals("fall") || args[3].equals("spring") || args[3].equals("winter")) {
+		if(args[3].equals("all")) {
+			shortestPath.readMap(args[0]);
+			shortestPath.fileLoad(args[1]);
+			Scanner scanner = new Scanner(new FileInputStream(args[2]));
+			shortestPath.readDestinationPath(scanner);
+			List<Path> seasonMaps = shortestPath.calculateAllSeasons(args[4]);
+			for(int index = 0; index < seasons.length; index++) {
+				System.out.println(seasons[index] + " Total Path Length: " + Math.round(seasonMaps.get(index).totalPathLength) + "m");
+				if(Boolean.getBoolean("path.searchStats")) {
+					System.out.println(seasons[index] + " Nodes Expanded: " + seasonMaps.get(index).expandedNodes.sum());
+				}
+			}
+			if(Boolean.getBoolean("path.searchStats")) {
+				System.out.println("Raster Kernels: " + RasterKernels.kernels.getName());
+				if(legCache != null) {
+					System.out.println("Leg Cache: " + legCache.getStats());
+				}
+			}
+		}else if(isSeason(args[3])) {
 			String weather = args[3];
 			String outputFileName = args[4];
 			String mapPath = args[0];
 			shortestPath.readMap(mapPath);
-			scanner = new Scanner(new FileInputStream(args[2]));
+			shortestPath.fileLoad(args[1]);
+			Scanner scanner = new Scanner(new FileInputStream(args[2]));
 			shortestPath.readDestinationPath(scanner);
-			shortestPath.addDefaultSpeed(weather);
 			shortestPath.getElevationPerPixel();
-			if(weather.equals("spring")){
-				shortestPath.getWaterEdges();
-				shortestPath.getSpringBFS();
-			}
-			if(weather.equals("winter")){
-				shortestPath.getWaterEdges();
-				shortestPath.getWinterBFS();
-			}
+			shortestPath.applySeason(weather);
 			shortestPath.calculatePath(weather);
 			shortestPath.displayImage(outputFileName);
 			shortestPath.getPathLength();
 			System.out.println("Total Path Length: " + Math.round(shortestPath.totalPathLength) + "m");
+			if(Boolean.getBoolean("path.searchStats")) {
+				System.out.println("Nodes Expanded: " + shortestPath.expandedNodes.sum());
+				System.out.println("Raster Kernels: " + RasterKernels.kernels.getName());
+				if(legCache != null) {
+					System.out.println("Leg Cache: " + legCache.getStats());
+				}
+			}
+			if(viewer) {
+				new RouteViewer(shortestPath.displayImage).setVisible(true);
+			}
 		}else {
 			System.out.println("Enter Correct Season");
 		}
-
+		SearchMetrics.writeReport();
 
 	}
 
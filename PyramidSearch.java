@@ -0,0 +1,421 @@
+/**
+ * Coarse-to-fine search of one leg over a search pyramid. The leg is
+ * searched on the whole top level first, and then on every level below
+ * only inside a corridor around the route of the level above, down to the
+ * pixels
+ *
+ * A corridor is the cells under the route above and a ring of their
+ * neighbors, taken in blocks of 8x8 cells. The cells of the corridor are
+ * numbered block by block, so the arrays of a search follow the size of
+ * the corridor and not the size of the map. When a level has no path
+ * inside its corridor, the ring is doubled until the corridor covers the
+ * whole level, so a leg that can be walked is always found
+ *
+ * The search of the pixels is exact inside the corridor, but the route of
+ * a coarse level can lead the corridor away from the fastest route, so
+ * there is no bound on how much slower than the fastest time a leg is.
+ * The number of times a corridor had to be widened goes to the metrics of
+ * the leg. Legs that have to be the fastest are searched with
+ * -Dpath.search=astar and -Dpath.landmarks=N, or with bidirectional
+ *
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class PyramidSearch {
+
+	static final int CORRIDOR_RING = 1;
+	static final int BLOCK_BITS = 3;
+	static final int BLOCK_MASK = (1 << BLOCK_BITS) - 1;
+
+	SearchPyramid pyramid;
+	Path map;
+	long expandedNodes = 0;
+	int widenings = 0;
+	SearchMetrics.Leg legMetrics;
+
+	int startNode;
+	int destinationNode;
+
+	/**
+	 * Cells of one level a search may enter, numbered block by block
+	 *
+	 */
+
+	static class Corridor {
+
+		int width;
+		int blocksX;
+		int[] blockSlot;
+		int[] slotBlock;
+		int slotCount = 0;
+		boolean wholeLevel;
+
+		/**
+		 * Creates a corridor of the blocks that are marked
+		 *
+		 * @param 		width			Width of the level in cells
+		 *
+		 * @param 		blocksX			Number of blocks across the level
+		 *
+		 * @param 		inCorridor		True for the blocks of the corridor
+		 *
+		 * @param 		wholeLevel		True if every block is in the corridor
+		 */
+
+		Corridor(int width, int blocksX, boolean[] inCorridor, boolean wholeLevel) {
+			this.width = width;
+			this.blocksX = blocksX;
+			this.wholeLevel = wholeLevel;
+			blockSlot = new int[inCorridor.length];
+			for(int block = 0; block < inCorridor.length; block++) {
+				blockSlot[block] = inCorridor[block] ? slotCount++ : -1;
+			}
+			slotBlock = new int[slotCount];
+			for(int block = 0; block < inCorridor.length; block++) {
+				if(blockSlot[block] != -1) {
+					slotBlock[blockSlot[block]] = block;
+				}
+			}
+		}
+
+		int size() {
+			return slotCount << (2 * BLOCK_BITS);
+		}
+
+		/**
+		 * Index of a cell in the arrays of a search
+		 *
+		 * @return						Index of the cell, -1 if it is not in the corridor
+		 */
+
+		int getIndex(int xCoordinate, int yCoordinate) {
+			int slot = blockSlot[(yCoordinate >> BLOCK_BITS) * blocksX + (xCoordinate >> BLOCK_BITS)];
+			if(slot == -1) {
+				return -1;
+			}
+			return (slot << (2 * BLOCK_BITS)) + ((yCoordinate & BLOCK_MASK) << BLOCK_BITS) + (xCoordinate & BLOCK_MASK);
+		}
+
+		/**
+		 * Cell id of an index of the arrays of a search
+		 */
+
+		int getCell(int index) {
+			int block = slotBlock[index >>> (2 * BLOCK_BITS)];
+			int xCoordinate = (block % blocksX << BLOCK_BITS) + (index & BLOCK_MASK);
+			int yCoordinate = (block / blocksX << BLOCK_BITS) + ((index >>> BLOCK_BITS) & BLOCK_MASK);
+			return yCoordinate * width + xCoordinate;
+		}
+
+	}
+
+	/**
+	 * Creates a search on the pyramid of a map
+	 *
+	 * @param 		pyramid			Search pyramid of the map and its season
+	 */
+
+	public PyramidSearch(SearchPyramid pyramid) {
+		this.pyramid = pyramid;
+		map = pyramid.map;
+	}
+
+	/**
+	 * Find the path of a leg
+	 *
+	 * @param 		x1				X Coordinate of Start
+	 *
+	 * @param 		y1				Y Coordinate of Start
+	 *
+	 * @param 		x2				X Coordinate of Destination
+	 *
+	 * @param 		y2				Y Coordinate of Destination
+	 *
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the
+	 * 								destination cannot be reached
+	 */
+
+	public int[] search(int x1, int y1, int x2, int y2) {
+		startNode = y1 * map.mapWidth + x1;
+		destinationNode = y2 * map.mapWidth + x2;
+		if(startNode == destinationNode) {
+			return new int[0];
+		}
+		int[] route = findRoute(0);
+		if(route == null) {
+			return new int[0];
+		}
+		return Path.getPath(startNode, destinationNode, Arrays.copyOfRange(route, 1, route.length - 1), route.length - 2, map.mapWidth);
+	}
+
+	/**
+	 * Route of a leg on level 1 only, drawn through the centers of its
+	 * cells. It is found in a fraction of the time of search, and may cut
+	 * through pixels the runner cannot enter
+	 *
+	 * @param 		x1				X Coordinate of Start
+	 *
+	 * @param 		y1				Y Coordinate of Start
+	 *
+	 * @param 		x2				X Coordinate of Destination
+	 *
+	 * @param 		y2				Y Coordinate of Destination
+	 *
+	 * @return						Path coordinates of the leg in the order of aStarSearch, empty if the
+	 * 								destination cannot be reached
+	 */
+
+	public int[] preview(int x1, int y1, int x2, int y2) {
+		startNode = y1 * map.mapWidth + x1;
+		destinationNode = y2 * map.mapWidth + x2;
+		if(startNode == destinationNode) {
+			return new int[0];
+		}
+		int[] route = findRoute(1);
+		if(route == null) {
+			return new int[0];
+		}
+		return traceRoute(1, route);
+	}
+
+	/**
+	 * Search the levels from the top down to a level. There is no route on
+	 * a lower level when the level above has none, as a cell is only
+	 * impassable when all of its pixels are
+	 *
+	 * @param 		lowestLevel		Last level to search, 0 for the pixels
+	 *
+	 * @return						Cells of the route on that level from the start to the destination,
+	 * 								null if there is none
+	 */
+
+	int[] findRoute(int lowestLevel) {
+		int[] route = searchLevel(pyramid.levelCount, getCorridor(pyramid.levelCount, null, 0));
+		for(int level = pyramid.levelCount - 1; route != null && level >= lowestLevel; level--) {
+			int[] coarseRoute = route;
+			for(int ring = CORRIDOR_RING; ; ring *= 2) {
+				Corridor corridor = getCorridor(level, coarseRoute, ring);
+				route = searchLevel(level, corridor);
+				if(route != null || corridor.wholeLevel) {
+					break;
+				}
+				widenings++;
+			}
+		}
+		return route;
+	}
+
+	/**
+	 * Blocks of a level under the route of the level above and a ring of its neighbors
+	 *
+	 * @param 		level			Level of the corridor, 0 for the pixels
+	 *
+	 * @param 		coarseRoute		Cells of the route on the level above, null for the whole level
+	 *
+	 * @param 		ring			Number of neighbors around every cell of the route
+	 *
+	 * @return						Corridor of the level
+	 */
+
+	Corridor getCorridor(int level, int[] coarseRoute, int ring) {
+		int width = pyramid.levelWidth[level];
+		int height = pyramid.levelHeight[level];
+		int blocksX = (width + BLOCK_MASK) >> BLOCK_BITS;
+		int blocksY = (height + BLOCK_MASK) >> BLOCK_BITS;
+		boolean[] inCorridor = new boolean[blocksX * blocksY];
+		if(coarseRoute == null || ring >= Math.max(pyramid.levelWidth[level + 1], pyramid.levelHeight[level + 1])) {
+			Arrays.fill(inCorridor, true);
+			return new Corridor(width, blocksX, inCorridor, true);
+		}
+		int coarseWidth = pyramid.levelWidth[level + 1];
+		for(int cell : coarseRoute) {
+			int cellX = cell % coarseWidth;
+			int cellY = cell / coarseWidth;
+			int fromBlockX = Math.max(0, 2 * (cellX - ring)) >> BLOCK_BITS;
+			int toBlockX = (Math.min(width, 2 * (cellX + ring + 1)) - 1) >> BLOCK_BITS;
+			int fromBlockY = Math.max(0, 2 * (cellY - ring)) >> BLOCK_BITS;
+			int toBlockY = (Math.min(height, 2 * (cellY + ring + 1)) - 1) >> BLOCK_BITS;
+			for(int blockY = fromBlockY; blockY <= toBlockY; blockY++) {
+				Arrays.fill(inCorridor, blockY * blocksX + fromBlockX, blockY * blocksX + toBlockX + 1, true);
+			}
+		}
+		return new Corridor(width, blocksX, inCorridor, false);
+	}
+
+	/**
+	 * A Star over the cells of a level inside a corridor. Level 0 is
+	 * searched with the step times and lower bound of the map, the other
+	 * levels with those of the pyramid. The lower bound of the map rounds
+	 * with the float landmark tables, so on level 0 a pixel reached faster
+	 * after it was closed is then opened again, as in aStarSearch
+	 *
+	 * @param 		level			Level to search, 0 for the pixels
+	 *
+	 * @param 		corridor		Cells the search may enter
+	 *
+	 * @return						Cells of the route from the start to the destination, null if there is none
+	 */
+
+	int[] searchLevel(int level, Corridor corridor) {
+		int width = pyramid.levelWidth[level];
+		int height = pyramid.levelHeight[level];
+		int startCell = pyramid.getCell(level, startNode);
+		int destinationCell = pyramid.getCell(level, destinationNode);
+		int start = corridor.getIndex(startCell % width, startCell / width);
+		int destination = corridor.getIndex(destinationCell % width, destinationCell / width);
+		if(start == -1 || destination == -1) {
+			return null;
+		}
+
+		boolean reopen = level == 0 && map.landmarkTable != null;
+		int corridorSize = corridor.size();
+		double[] gValue = new double[corridorSize];
+		int[] parentIndex = new int[corridorSize];
+		BitSet closeCells = new BitSet(corridorSize);
+		IndexedMinHeap openCells = new IndexedMinHeap(corridorSize);
+		Arrays.fill(gValue, Double.POSITIVE_INFINITY);
+		Arrays.fill(parentIndex, -1);
+		gValue[start] = 0.0;
+		openCells.add(start, getLowerBoundTime(level, startCell, destinationCell));
+
+		while(!openCells.isEmpty()) {
+			int current = openCells.poll();
+			if(current == destination) {
+				break;
+			}
+			closeCells.set(current);
+			expandedNodes++;
+			int currentCell = corridor.getCell(current);
+			int currentX = currentCell % width;
+			int currentY = currentCell / width;
+			double currentSpeed = level == 0 ? 0 : getCellSpeed(level, currentCell, startCell, destinationCell);
+			for(int direction = 0; direction < 4; direction++) {
+				int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+				int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+				if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height) {
+					continue;
+				}
+				int neighbor = corridor.getIndex(xNeighborValue, yNeighborValue);
+				if(neighbor == -1 || closeCells.get(neighbor) && !reopen) {
+					continue;
+				}
+				int neighborCell = yNeighborValue * width + xNeighborValue;
+				double stepTime;
+				if(level == 0) {
+					if(!canStep(currentCell, neighborCell)) {
+						continue;
+					}
+					stepTime = map.getNeighborTime(currentX, currentY, direction);
+				}else {
+					double neighborSpeed = getCellSpeed(level, neighborCell, startCell, destinationCell);
+					if(neighborSpeed == 0) {
+						continue;
+					}
+					stepTime = pyramid.getStepTime(level, currentCell, neighborCell, direction, currentSpeed, neighborSpeed);
+				}
+				double time = gValue[current] + stepTime;
+				if(time < gValue[neighbor]) {
+					closeCells.clear(neighbor);
+					gValue[neighbor] = time;
+					parentIndex[neighbor] = current;
+					double fValue = time + getLowerBoundTime(level, neighborCell, destinationCell);
+					if(openCells.contains(neighbor)) {
+						openCells.decreaseKey(neighbor, fValue);
+					}else {
+						openCells.add(neighbor, fValue);
+					}
+				}
+			}
+		}
+		if(legMetrics != null) {
+			legMetrics.addHeap(openCells);
+		}
+
+		if(gValue[destination] == Double.POSITIVE_INFINITY) {
+			return null;
+		}
+		int routeLength = 1;
+		for(int index = destination; parentIndex[index] != -1; index = parentIndex[index]) {
+			routeLength++;
+		}
+		int[] route = new int[routeLength];
+		int routeIndex = routeLength - 1;
+		for(int index = destination; index != -1; index = parentIndex[index]) {
+			route[routeIndex--] = corridor.getCell(index);
+		}
+		return route;
+	}
+
+	/**
+	 * Check whether a pixel step is allowed, the start may be left and the
+	 * destination entered whatever their terrain
+	 */
+
+	boolean canStep(int currentNode, int neighborNode) {
+		return (currentNode == startNode || map.terrainSpeed[map.terrainClass[currentNode]] > 0)
+				&& (neighborNode == destinationNode || map.terrainSpeed[map.terrainClass[neighborNode]] > 0);
+	}
+
+	double getLowerBoundTime(int level, int cell, int destinationCell) {
+		return level == 0 ? map.getLowerBoundTime(cell, destinationCell) : pyramid.getLowerBoundTime(level, cell, destinationCell);
+	}
+
+	/**
+	 * Speed of a cell. The cells of the start and the destination can be
+	 * entered even if none of their pixels can, like the pixels themselves
+	 */
+
+	double getCellSpeed(int level, int cell, int startCell, int destinationCell) {
+		double speed = pyramid.cellSpeed[level][cell];
+		if(speed == 0 && (cell == startCell || cell == destinationCell)) {
+			return pyramid.fastestSpeed;
+		}
+		return speed;
+	}
+
+	/**
+	 * Pixel path from the start through the centers of the cells of a route
+	 * to the destination, walking the columns first and then the rows
+	 *
+	 * @param 		level			Level of the route
+	 *
+	 * @param 		route			Cells of the route from the start to the destination
+	 *
+	 * @return						Path coordinates in the order of aStarSearch
+	 */
+
+	int[] traceRoute(int level, int[] route) {
+		int width = map.mapWidth;
+		int scale = pyramid.getScale(level);
+		int[] pathNodes = new int[Math.max(16, 2 * scale * route.length)];
+		int pathLength = 0;
+		int currentX = startNode % width;
+		int currentY = startNode / width;
+		for(int index = 0; index <= route.length; index++) {
+			int targetX;
+			int targetY;
+			if(index < route.length) {
+				targetX = Math.min(width - 1, (route[index] % pyramid.levelWidth[level]) * scale + scale / 2);
+				targetY = Math.min(map.mapHeight - 1, (route[index] / pyramid.levelWidth[level]) * scale + scale / 2);
+			}else {
+				targetX = destinationNode % width;
+				targetY = destinationNode / width;
+			}
+			while(currentX != targetX || currentY != targetY) {
+				if(currentX != targetX) {
+					currentX += currentX < targetX ? 1 : -1;
+				}else {
+					currentY += currentY < targetY ? 1 : -1;
+				}
+				if(pathLength == pathNodes.length) {
+					pathNodes = Arrays.copyOf(pathNodes, 2 * pathLength);
+				}
+				pathNodes[pathLength++] = currentY * width + currentX;
+			}
+		}
+		return Path.getPath(startNode, destinationNode, pathNodes, pathLength - 1, width);
+	}
+
+}
@@ -0,0 +1,177 @@
+/**
+ * Loops that run once over every pixel of the map: classifying the pixel
+ * colors, the water mask, the base elevation and the level steps the
+ * spring mud may take. They work on primitive arrays only, so a subclass
+ * can run them on SIMD lanes and fall back to these loops for the pixels
+ * left over at the end of a row
+ *
+ * When the JVM is started with --add-modules jdk.incubator.vector and the
+ * class in vector/ is compiled, the Vector API kernels are used; with
+ * -Dpath.vector=false, or without the module, the scalar loops below are.
+ * Both give exactly the same results
+ *
+ */
+
+public class RasterKernels {
+
+	static RasterKernels kernels = load();
+
+	/**
+	 * Vector API kernels if they can be used, scalar kernels otherwise. When
+	 * the module is added but the kernels cannot be loaded, the reason is
+	 * printed, so a run is not silently scalar
+	 *
+	 * @return						Kernels for this JVM
+	 */
+
+	static RasterKernels load() {
+		if(!Boolean.parseBoolean(System.getProperty("path.vector", "true"))
+				|| ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+			return new RasterKernels();
+		}
+		try {
+			return (RasterKernels) Class.forName("RasterVectorKernels").getDeclaredConstructor().newInstance();
+		}catch(ReflectiveOperationException | LinkageError exception) {
+			System.err.println("Using the scalar raster kernels, the vector kernels could not be loaded: "
+					+ (exception.getCause() == null ? exception : exception.getCause()));
+			return new RasterKernels();
+		}
+	}
+
+	/**
+	 * Name of the kernels, printed with the search statistics
+	 *
+	 * @return						"scalar" or the vector shape in use
+	 */
+
+	public String getName() {
+		return "scalar";
+	}
+
+	/**
+	 * Classify a range of pixel colors with TerrainClass.classify
+	 *
+	 * @param 		pixels				Pixel colors, alpha is ignored
+	 *
+	 * @param 		terrainClass		Terrain classes, filled at the same indexes
+	 *
+	 * @param 		from				First index, inclusive
+	 *
+	 * @param 		to					Last index, exclusive
+	 */
+
+	public void classify(int[] pixels, byte[] terrainClass, int from, int to) {
+		for(int node = from; node < to; node++) {
+			terrainClass[node] = TerrainClass.classify(pixels[node]);
+		}
+	}
+
+	/**
+	 * Set the bits of the water pixels of one row
+	 *
+	 * @param 		terrainClass		Terrain class raster, row by row
+	 *
+	 * @param 		rowNode				Node id of the first pixel of the row
+	 *
+	 * @param 		width				Width of the row
+	 *
+	 * @param 		waterMask			Bitset the row is added to
+	 *
+	 * @param 		rowWord				Word of the bitset the row starts on
+	 */
+
+	public void maskWater(byte[] terrainClass, int rowNode, int width, long[] waterMask, int rowWord) {
+		for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+			if(terrainClass[rowNode + xCoordinate] == TerrainClass.WATER) {
+				waterMask[rowWord + (xCoordinate >>> 6)] |= 1L << xCoordinate;
+			}
+		}
+	}
+
+	/**
+	 * Lower the base elevation with the first values of a row. A base
+	 * elevation of 0 counts as not set yet, as it always has for the
+	 * elevation files, so the next value replaces it
+	 *
+	 * @param 		row					Elevation of the row
+	 *
+	 * @param 		count				Number of values to take from the row
+	 *
+	 * @param 		baseElevation		Base elevation of the rows before
+	 *
+	 * @return							Base elevation including this row
+	 */
+
+	public double baseElevation(double[] row, int count, double baseElevation) {
+		for(int xCoordinate = 0; xCoordinate < count; xCoordinate++) {
+			if(baseElevation == 0 || row[xCoordinate] < baseElevation) {
+				baseElevation = row[xCoordinate];
+			}
+		}
+		return baseElevation;
+	}
+
+	/**
+	 * Mark the level steps leaving the pixels of one row to the right and
+	 * downwards. A step is level if the floor of its elevation change is
+	 * below the elevation step. The change has the same size in both
+	 * directions, so the steps to the left and upwards are the bits of the
+	 * neighbor
+	 *
+	 * @param 		row					Elevation of the row
+	 *
+	 * @param 		nextRow				Elevation of the row below, null for the last row
+	 *
+	 * @param 		width				Width of the rows
+	 *
+	 * @param 		elevationStep		Largest elevation change, exclusive, after rounding down
+	 *
+	 * @param 		rowNode				Node id of the first pixel of the row
+	 *
+	 * @param 		levelRight			Bitset by node id of the level steps to the right
+	 *
+	 * @param 		levelDown			Bitset by node id of the level steps downwards
+	 */
+
+	public void levelSteps(double[] row, double[] nextRow, int width, double elevationStep, int rowNode, long[] levelRight, long[] levelDown) {
+		for(int xCoordinate = 0; xCoordinate < width - 1; xCoordinate++) {
+			if(Math.floor(Math.abs(row[xCoordinate + 1] - row[xCoordinate])) < elevationStep) {
+				setBit(levelRight, rowNode + xCoordinate);
+			}
+		}
+		if(nextRow == null) {
+			return;
+		}
+		for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+			if(Math.floor(Math.abs(nextRow[xCoordinate] - row[xCoordinate])) < elevationStep) {
+				setBit(levelDown, rowNode + xCoordinate);
+			}
+		}
+	}
+
+	static void setBit(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * Or up to 64 bits into a bitset starting at any index
+	 *
+	 * @param 		bits			Bitset
+	 *
+	 * @param 		index			Index of the lowest bit
+	 *
+	 * @param 		value			Bits to set
+	 *
+	 * @param 		count			Number of bits in the value
+	 */
+
+	static void setBits(long[] bits, int index, long value, int count) {
+		int word = index >>> 6;
+		int shift = index & 63;
+		bits[word] |= value << shift;
+		if(shift + count > 64) {
+			bits[word + 1] |= value >>> (64 - shift);
+		}
+	}
+
+}
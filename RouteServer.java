@@ -0,0 +1,533 @@
+/**
+ * Long-running route service. The map and the elevation file are loaded
+ * once and the terrain of every season is kept in memory, so a batch of
+ * courses is answered without reading and classifying the map again
+ *
+ * The maps of all seasons are built when the service starts, together with
+ * the step time and landmark tables, cluster graph or search pyramid their
+ * searches use, and are frozen, so they are only read after that and are a
+ * snapshot every request can search at once. Their node counters add up the
+ * legs of every request.
+ * Everything a request finds, its legs, path and image, stays with the
+ * request. Requests run on a pool of -Droute.threads=N threads (default the
+ * number of cores) and the legs of one request share the remaining cores.
+ * At most -Droute.queue=N more requests (default four per thread) wait for a
+ * thread. A connection that sends faster than it is answered is not read
+ * until a request finishes. Requests of one connection are answered in order
+ *
+ * Every request is one line:
+ * 	<season> x1 y1 x2 y2 ... [output.png]
+ * The image is only written when the last token ends in .png and the
+ * service was started with -Droute.outputDir=dir, and its name is resolved
+ * in that directory. Absolute names and names that lead out of it are refused.
+ * and is answered with one line:
+ * 	OK <path length in m> <point count> x y x y ...
+ * 	ERROR <message>
+ * The points run from the start to the last control. Requests are read
+ * from standard input, or from local socket connections when a port is
+ * given; the number of connections served at once is set with
+ * -Droute.connections=N
+ *
+ * With the leg cache of Path on, a course with a control moved only solves
+ * the legs that changed. The request line stats is answered with
+ * 	STATS hits=.. diskHits=.. misses=.. evictions=.. diskEvictions=.. size=../..
+ *
+ * With -Dpath.metrics=file the request line metrics writes the report of
+ * the legs so far, which keeps the last -Dpath.metricsLegs=N of them, and
+ * is answered with
+ * 	METRICS <report file>
+ *
+ * For runners off the course the request
+ * 	next <season> x y <control x> <control y>
+ * is answered with
+ * 	OK <path length in m> <time in s> <point count> x y x y ...
+ * from the time field of the control, which is computed on its first
+ * request and then reused. The last -Droute.fields=N fields (default 16)
+ * are kept in memory, and with -Droute.fieldDir=dir they are also kept in
+ * files there for the next start of the service
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import javax.imageio.ImageIO;
+
+public class RouteServer {
+
+	static final Future<String> END_OF_REQUESTS = CompletableFuture.completedFuture(null);
+
+	final Map<String, Path> seasonMaps;
+	int requestThreads = Integer.getInteger("route.threads", Runtime.getRuntime().availableProcessors());
+	ExecutorService requestPool = Executors.newFixedThreadPool(requestThreads);
+	Semaphore requestSlots = new Semaphore(requestThreads + Integer.getInteger("route.queue", 4 * requestThreads));
+	int fieldCount = Integer.getInteger("route.fields", 16);
+	File fieldDirectory = System.getProperty("route.fieldDir") == null ? null : new File(System.getProperty("route.fieldDir"));
+	File outputDirectory = System.getProperty("route.outputDir") == null ? null : new File(System.getProperty("route.outputDir"));
+	Map<String, CostField> costFields = new LinkedHashMap<String, CostField>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CostField> eldest) {
+			return size() > fieldCount;
+		}
+	};
+
+	/**
+	 * Load the map and its elevation and build the map of every season
+	 *
+	 * @param 		mapPath				Map image
+	 *
+	 * @param 		elevationPath		Text or binary elevation file
+	 *
+	 * @throws 		IOException			To handle if an IO exception occurs
+	 */
+
+	public RouteServer(String mapPath, String elevationPath) throws IOException {
+		Path baseMap = new Path();
+		baseMap.readMap(mapPath);
+		baseMap.fileLoad(elevationPath);
+		Map<String, Path> seasonMaps = new HashMap<String, Path>();
+		for(String weather : Path.seasons) {
+			Path seasonMap = baseMap.forSeason(weather);
+			seasonMap.parallelism = Math.max(1, baseMap.parallelism / requestThreads);
+			seasonMap.freeze();
+			seasonMaps.put(weather, seasonMap);
+		}
+		this.seasonMaps = Collections.unmodifiableMap(seasonMaps);
+	}
+
+	/**
+	 * Map of a season from the snapshot built at the start
+	 *
+	 * @param 		weather			Current Weather
+	 *
+	 * @return						Map of the season
+	 */
+
+	Path getSeasonMap(String weather) {
+		return seasonMaps.get(weather);
+	}
+
+	/**
+	 * Time field of a control, computed the first time it is asked for. The
+	 * field is computed outside the lock, so two requests for the same new
+	 * field may both compute it
+	 *
+	 * @param 		weather			Current Weather
+	 *
+	 * @param 		xCoordinate		X Coordinate of the control
+	 *
+	 * @param 		yCoordinate		Y Coordinate of the control
+	 *
+	 * @return						Field of the control
+	 */
+
+	CostField getCostField(String weather, int xCoordinate, int yCoordinate) {
+		String key = weather + " " + xCoordinate + " " + yCoordinate;
+		CostField costField;
+		synchronized(costFields) {
+			costField = costFields.get(key);
+		}
+		if(costField == null) {
+			costField = CostField.forControl(getSeasonMap(weather), weather, xCoordinate, yCoordinate, fieldDirectory);
+			synchronized(costFields) {
+				costFields.put(key, costField);
+			}
+		}
+		return costField;
+	}
+
+	/**
+	 * Answer a request for the fastest route from a pixel to a control
+	 *
+	 * @param 		tokens			next, season, pixel and control coordinates
+	 *
+	 * @return						Response line
+	 */
+
+	public String next(String[] tokens) {
+		if(tokens.length != 6 || !Path.isSeason(tokens[1])) {
+			return "ERROR Expected next <season> x y <control x> <control y>";
+		}
+		Path seasonMap = getSeasonMap(tokens[1]);
+		int[] coordinates = new int[4];
+		for(int index = 0; index < 4; index++) {
+			try {
+				coordinates[index] = Integer.parseInt(tokens[index + 2]);
+			}catch(NumberFormatException exception) {
+				return "ERROR Not a coordinate: " + tokens[index + 2];
+			}
+			int size = index % 2 == 0 ? seasonMap.mapWidth : seasonMap.mapHeight;
+			if(coordinates[index] < 0 || coordinates[index] >= size) {
+				return "ERROR Outside the map: " + tokens[index + 2];
+			}
+		}
+
+		CostField costField = getCostField(tokens[1], coordinates[2], coordinates[3]);
+		int[] legCoordinates = costField.walk(seasonMap, coordinates[0], coordinates[1]);
+		if(legCoordinates.length == 0 && (coordinates[0] != coordinates[2] || coordinates[1] != coordinates[3])) {
+			return "ERROR The control cannot be reached from " + coordinates[0] + " " + coordinates[1];
+		}
+		List<Integer> controls = new ArrayList<Integer>();
+		for(int coordinate : coordinates) {
+			controls.add(coordinate);
+		}
+		List<int[]> legs = new ArrayList<int[]>();
+		legs.add(legCoordinates);
+		List<Integer> coursePath = getCoursePath(legs, controls);
+		StringBuilder response = new StringBuilder("OK ");
+		response.append(Math.round(seasonMap.getPathLength(coursePath))).append(' ');
+		response.append(String.format(Locale.ROOT, "%.1f", costField.getTime(seasonMap, coordinates[0], coordinates[1]))).append(' ');
+		response.append(coursePath.size() / 2);
+		for(int index = 0; index < coursePath.size(); index++) {
+			response.append(' ').append(coursePath.get(index));
+		}
+		return response.toString();
+	}
+
+	/**
+	 * Answer one request line
+	 *
+	 * @param 		request			Season, control coordinates and an optional output image
+	 *
+	 * @return						Response line
+	 */
+
+	public String route(String request) {
+		String[] tokens = request.trim().split("\\s+");
+		if(tokens[0].equals("next")) {
+			return next(tokens);
+		}
+		if(tokens.length < 5 || !Path.isSeason(tokens[0])) {
+			return "ERROR Expected <season> x1 y1 x2 y2 ... [output.png]";
+		}
+		String outputFileName = tokens[tokens.length - 1].toLowerCase(Locale.ROOT).endsWith(".png") ? tokens[tokens.length - 1] : null;
+		int coordinateCount = outputFileName == null ? tokens.length - 1 : tokens.length - 2;
+		if(coordinateCount % 2 == 1) {
+			return "ERROR Expected x y pairs, got " + coordinateCount + " coordinates";
+		}
+		if(coordinateCount < 4) {
+			return "ERROR A course needs at least two controls";
+		}
+		File outputFile = null;
+		if(outputFileName != null) {
+			if(outputDirectory == null) {
+				return "ERROR Images are off, start with -Droute.outputDir=dir";
+			}
+			outputFile = getOutputFile(outputFileName);
+			if(outputFile == null) {
+				return "ERROR Image outside the output directory: " + outputFileName;
+			}
+		}
+
+		Path seasonMap = getSeasonMap(tokens[0]);
+		List<Integer> controls = new ArrayList<Integer>();
+		for(int index = 1; index <= coordinateCount; index += 2) {
+			int xCoordinate;
+			int yCoordinate;
+			try {
+				xCoordinate = Integer.parseInt(tokens[index]);
+				yCoordinate = Integer.parseInt(tokens[index + 1]);
+			}catch(NumberFormatException exception) {
+				return "ERROR Not a coordinate: " + tokens[index] + " " + tokens[index + 1];
+			}
+			if(xCoordinate < 0 || xCoordinate >= seasonMap.mapWidth || yCoordinate < 0 || yCoordinate >= seasonMap.mapHeight) {
+				return "ERROR Control outside the map: " + xCoordinate + " " + yCoordinate;
+			}
+			controls.add(xCoordinate);
+			controls.add(yCoordinate);
+		}
+
+		List<int[]> legs = seasonMap.solveLegs(controls, tokens[0]);
+		List<Integer> pathCoordinates = new ArrayList<Integer>();
+		for(int[] legCoordinates : legs) {
+			for(int coordinate : legCoordinates) {
+				pathCoordinates.add(coordinate);
+			}
+		}
+		pathCoordinates.add(controls.get(0));
+		pathCoordinates.add(controls.get(1));
+		double pathLength = seasonMap.getPathLength(pathCoordinates);
+
+		if(outputFile != null) {
+			try {
+				ImageIO.write(seasonMap.renderRoute(pathCoordinates, controls), "png", outputFile);
+			}catch(IOException exception) {
+				return "ERROR Could not write " + outputFileName + ": " + exception.getMessage();
+			}
+		}
+
+		List<Integer> coursePath = getCoursePath(legs, controls);
+		StringBuilder response = new StringBuilder("OK ");
+		response.append(Math.round(pathLength)).append(' ').append(coursePath.size() / 2);
+		for(int index = 0; index < coursePath.size(); index++) {
+			response.append(' ').append(coursePath.get(index));
+		}
+		return response.toString();
+	}
+
+	/**
+	 * Image file of a request in the output directory
+	 *
+	 * @param 		outputFileName	Name of the image in the request
+	 *
+	 * @return						Image file, null if the name is absolute or leads out of the output directory
+	 */
+
+	File getOutputFile(String outputFileName) {
+		if(new File(outputFileName).isAbsolute()) {
+			return null;
+		}
+		try {
+			File directory = outputDirectory.getCanonicalFile();
+			File outputFile = new File(directory, outputFileName).getCanonicalFile();
+			return !outputFile.equals(directory) && outputFile.toPath().startsWith(directory.toPath()) ? outputFile : null;
+		}catch(IOException exception) {
+			return null;
+		}
+	}
+
+	/**
+	 * Path coordinates from the start to the last control. Every leg is
+	 * stored from its destination back to its start, so the legs are reversed
+	 *
+	 * @param 		legs			Path coordinates of every leg in course order
+	 *
+	 * @param 		controls		Control coordinates of the course
+	 *
+	 * @return						Path coordinates in course order
+	 */
+
+	static List<Integer> getCoursePath(List<int[]> legs, List<Integer> controls) {
+		List<Integer> coursePath = new ArrayList<Integer>();
+		coursePath.add(controls.get(0));
+		coursePath.add(controls.get(1));
+		for(int[] legCoordinates : legs) {
+			for(int index = legCoordinates.length - 2; index >= 0; index -= 2) {
+				int xCoordinate = legCoordinates[index];
+				int yCoordinate = legCoordinates[index + 1];
+				int last = coursePath.size() - 2;
+				if(coursePath.get(last) != xCoordinate || coursePath.get(last + 1) != yCoordinate) {
+					coursePath.add(xCoordinate);
+					coursePath.add(yCoordinate);
+				}
+			}
+		}
+		return coursePath;
+	}
+
+	/**
+	 * Counters of the leg cache
+	 *
+	 * @return						Response line
+	 */
+
+	String getStats() {
+		if(Path.legCache == null) {
+			return "ERROR The leg cache is off, start with -Dpath.legCache=N";
+		}
+		return "STATS " + Path.legCache.getStats();
+	}
+
+	/**
+	 * Write the metrics report of the legs answered so far
+	 *
+	 * @return						Response line
+	 */
+
+	String writeMetrics() {
+		if(SearchMetrics.report == null) {
+			return "ERROR No metrics are kept, start with -Dpath.metrics=file.json";
+		}
+		try {
+			SearchMetrics.writeReport();
+		}catch(IOException exception) {
+			return "ERROR Could not write " + SearchMetrics.report.file + ": " + exception.getMessage();
+		}
+		return "METRICS " + SearchMetrics.report.file;
+	}
+
+	/**
+	 * Answer one request line on the calling thread
+	 *
+	 * @param 		request			Request line
+	 *
+	 * @return						Response line
+	 */
+
+	public String answer(String request) {
+		try {
+			if(request.trim().equals("stats")) {
+				return getStats();
+			}
+			return request.trim().equals("metrics") ? writeMetrics() : route(request);
+		}catch(RuntimeException exception) {
+			return "ERROR " + exception;
+		}
+	}
+
+	/**
+	 * Answer a request line on the request pool. While as many requests as the
+	 * pool and its queue hold are open, the call waits for one to finish
+	 *
+	 * @param 		request			Request line
+	 *
+	 * @return						Response line once the request is answered
+	 */
+
+	public Future<String> submit(String request) {
+		try {
+			requestSlots.acquire();
+		}catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a request slot", exception);
+		}
+		try {
+			return requestPool.submit(() -> {
+				try {
+					return answer(request);
+				}finally {
+					requestSlots.release();
+				}
+			});
+		}catch(RejectedExecutionException exception) {
+			requestSlots.release();
+			throw exception;
+		}
+	}
+
+	/**
+	 * Answer every request line of a reader until it ends or sends quit. The
+	 * requests are answered concurrently and their responses are written in
+	 * the order of the requests by a thread of the connection
+	 *
+	 * @param 		reader			Request lines
+	 *
+	 * @param 		writer			Response lines
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	void serve(BufferedReader reader, PrintWriter writer) throws IOException {
+		BlockingQueue<Future<String>> responses = new LinkedBlockingQueue<Future<String>>();
+		Thread responseWriter = new Thread(() -> writeResponses(responses, writer), "route-responses");
+		responseWriter.start();
+		try {
+			String request;
+			while((request = reader.readLine()) != null) {
+				if(request.trim().isEmpty()) {
+					continue;
+				}
+				if(request.trim().equals("quit")) {
+					break;
+				}
+				responses.add(submit(request));
+			}
+		}finally {
+			responses.add(END_OF_REQUESTS);
+			try {
+				responseWriter.join();
+			}catch(InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Write the responses of a connection as they are answered, in request order
+	 *
+	 * @param 		responses		Responses of the requests, ended by END_OF_REQUESTS
+	 *
+	 * @param 		writer			Response lines
+	 */
+
+	void writeResponses(BlockingQueue<Future<String>> responses, PrintWriter writer) {
+		try {
+			for(Future<String> response = responses.take(); response != END_OF_REQUESTS; response = responses.take()) {
+				try {
+					writer.println(response.get());
+				}catch(ExecutionException exception) {
+					writer.println("ERROR " + exception.getCause());
+				}
+				writer.flush();
+			}
+		}catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Accept connections on the loopback interface and serve each on its own thread
+	 *
+	 * @param 		port			Local port
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	void listen(int port) throws IOException {
+		ExecutorService connections = Executors.newFixedThreadPool(Integer.getInteger("route.connections", 4));
+		try(ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			System.out.println("Listening on " + serverSocket.getLocalSocketAddress());
+			while(true) {
+				Socket socket = serverSocket.accept();
+				connections.execute(() -> {
+					try(Socket connection = socket;
+							BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+							PrintWriter writer = new PrintWriter(connection.getOutputStream())) {
+						serve(reader, writer);
+					}catch(IOException exception) {
+						System.err.println("Connection failed: " + exception.getMessage());
+					}
+				});
+			}
+		}finally {
+			connections.shutdown();
+			requestPool.shutdown();
+		}
+	}
+
+	/**
+	 * Start the route service
+	 *
+	 * @param 		args		Map image, elevation file, optional port
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2 && args.length != 3) {
+			System.out.println("Usage: java RouteServer <map.png> <elevation> [port]");
+			System.exit(0);
+		}
+		System.setProperty("java.awt.headless", "true");
+		RouteServer routeServer = new RouteServer(args[0], args[1]);
+		if(args.length == 3) {
+			routeServer.listen(Integer.parseInt(args[2]));
+		}else {
+			routeServer.serve(new BufferedReader(new InputStreamReader(System.in)), new PrintWriter(System.out));
+			routeServer.requestPool.shutdown();
+			SearchMetrics.writeReport();
+		}
+	}
+
+}
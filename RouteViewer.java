@@ -0,0 +1,38 @@
+/**
+ * Window that shows a rendered route. It is only created when a viewer
+ * is requested, so computing routes never needs a display
+ *
+ */
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import javax.swing.JFrame;
+
+public class RouteViewer extends JFrame {
+
+	BufferedImage displayImage;
+
+	/**
+	 * Creates a window the size of the image
+	 *
+	 * @param 		displayImage		Rendered route
+	 */
+
+	public RouteViewer(BufferedImage displayImage) {
+		this.displayImage = displayImage;
+		setBounds(100, 100, displayImage.getWidth(), displayImage.getHeight());
+		setResizable(false);
+		setDefaultCloseOperation(EXIT_ON_CLOSE);
+	}
+
+	/**
+	 * Displays the output image
+	 *
+	 * @param		g			Display the image
+	 */
+
+	public void paint(Graphics g) {
+		g.drawImage(displayImage, 0, 0, this);
+	}
+
+}
@@ -0,0 +1,394 @@
+/**
+ * Counters and timings of the searches. Every leg and every phase of a
+ * run (reading the map, loading the elevation, the season overlays, the
+ * search and writing the image) is a JFR event, so a recording started
+ * with -XX:StartFlightRecording shows where the time goes. With
+ * -Dpath.metrics=report.json or report.csv the same numbers are also
+ * written to a report when the run ends. The report keeps the last
+ * -Dpath.metricsLegs=N legs (default 100000) and counts the legs it
+ * dropped, so a long-running route service does not grow without bound
+ *
+ * When no recording is running and no report is asked for, a leg or a
+ * phase costs one check and the searches only count into their heaps
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+public class SearchMetrics {
+
+	static SearchMetrics report = fromProperties();
+
+	File file;
+	int maxLegs = Integer.getInteger("path.metricsLegs", 100000);
+	ArrayDeque<Leg> legs = new ArrayDeque<Leg>();
+	long droppedLegs = 0;
+	List<Phase> phases = new ArrayList<Phase>();
+
+	/**
+	 * JFR event of one leg search
+	 *
+	 */
+
+	@Name("orienteering.LegSearch")
+	@Label("Leg Search")
+	@Category("Orienteering")
+	@Description("Search of one leg with its node and heap counters")
+	static class LegSearchEvent extends Event {
+
+		@Label("Season")
+		String season;
+
+		@Label("Search")
+		String search;
+
+		@Label("Start X")
+		int x1;
+
+		@Label("Start Y")
+		int y1;
+
+		@Label("Destination X")
+		int x2;
+
+		@Label("Destination Y")
+		int y2;
+
+		@Label("Cached")
+		boolean cached;
+
+		@Label("Nodes Expanded")
+		long expandedNodes;
+
+		@Label("Nodes Pushed")
+		long pushedNodes;
+
+		@Label("Decrease Keys")
+		long decreaseKeys;
+
+		@Label("Peak Open Nodes")
+		int peakOpenNodes;
+
+		@Label("Path Points")
+		int pathPoints;
+
+		@Label("Path Time")
+		@Description("Time of the path the search found, NaN if it does not keep it")
+		double pathTime;
+
+		@Label("Entrance Path Time")
+		@Description("Time of the path over the cluster entrances of the hierarchical search, NaN for the other searches")
+		double entrancePathTime;
+
+		@Label("Corridor Widenings")
+		@Description("Times the pyramid search widened a corridor that had no path")
+		int widenings;
+
+	}
+
+	/**
+	 * JFR event of one phase of a run
+	 *
+	 */
+
+	@Name("orienteering.Phase")
+	@Label("Phase")
+	@Category("Orienteering")
+	@Description("Loading, overlay, search or image phase of a run")
+	static class PhaseEvent extends Event {
+
+		@Label("Phase")
+		String phase;
+
+		@Label("Season")
+		String season;
+
+	}
+
+	/**
+	 * Counters of one leg, filled in by the search
+	 *
+	 */
+
+	static class Leg {
+
+		LegSearchEvent event = new LegSearchEvent();
+		String season;
+		String search;
+		int x1;
+		int y1;
+		int x2;
+		int y2;
+		boolean cached;
+		long expandedNodes;
+		long pushedNodes;
+		long decreaseKeys;
+		int peakOpenNodes;
+		int pathPoints;
+		double pathTime = Double.NaN;
+		double entrancePathTime = Double.NaN;
+		int widenings;
+		long startTime;
+		long duration;
+
+		/**
+		 * Add the counters of a search
+		 *
+		 * @param 		expanded		Nodes the search expanded
+		 *
+		 * @param 		heap			Open nodes of the search
+		 */
+
+		void addSearch(long expanded, IndexedMinHeap heap) {
+			expandedNodes += expanded;
+			addHeap(heap);
+		}
+
+		void addHeap(IndexedMinHeap heap) {
+			pushedNodes += heap.pushCount;
+			decreaseKeys += heap.decreaseKeyCount;
+			peakOpenNodes = Math.max(peakOpenNodes, heap.peakSize);
+		}
+
+	}
+
+	/**
+	 * Time of one phase
+	 *
+	 */
+
+	static class Phase {
+
+		PhaseEvent event = new PhaseEvent();
+		String phase;
+		String season;
+		long startTime;
+		long duration;
+
+	}
+
+	SearchMetrics(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Report set with -Dpath.metrics
+	 *
+	 * @return						Report, null if none is asked for
+	 */
+
+	static SearchMetrics fromProperties() {
+		String file = System.getProperty("path.metrics");
+		return file == null ? null : new SearchMetrics(new File(file));
+	}
+
+	static boolean isEnabled(Class<? extends Event> eventClass) {
+		return report != null || EventType.getEventType(eventClass).isEnabled();
+	}
+
+	/**
+	 * Start the counters of a leg
+	 *
+	 * @return						Counters to pass to the search, null if nothing is recorded
+	 */
+
+	static Leg beginLeg(String weather, String search, int x1, int y1, int x2, int y2) {
+		if(!isEnabled(LegSearchEvent.class)) {
+			return null;
+		}
+		Leg leg = new Leg();
+		leg.season = weather;
+		leg.search = search;
+		leg.x1 = x1;
+		leg.y1 = y1;
+		leg.x2 = x2;
+		leg.y2 = y2;
+		leg.startTime = System.nanoTime();
+		leg.event.begin();
+		return leg;
+	}
+
+	/**
+	 * Record a leg started with beginLeg
+	 *
+	 * @param 		leg				Counters of the leg, may be null
+	 *
+	 * @param 		legCoordinates	Path coordinates the search returned
+	 */
+
+	static void endLeg(Leg leg, int[] legCoordinates) {
+		if(leg == null) {
+			return;
+		}
+		leg.duration = System.nanoTime() - leg.startTime;
+		leg.pathPoints = legCoordinates.length / 2;
+		LegSearchEvent event = leg.event;
+		event.end();
+		if(event.shouldCommit()) {
+			event.season = leg.season;
+			event.search = leg.search;
+			event.x1 = leg.x1;
+			event.y1 = leg.y1;
+			event.x2 = leg.x2;
+			event.y2 = leg.y2;
+			event.cached = leg.cached;
+			event.expandedNodes = leg.expandedNodes;
+			event.pushedNodes = leg.pushedNodes;
+			event.decreaseKeys = leg.decreaseKeys;
+			event.peakOpenNodes = leg.peakOpenNodes;
+			event.pathPoints = leg.pathPoints;
+			event.pathTime = leg.pathTime;
+			event.entrancePathTime = leg.entrancePathTime;
+			event.widenings = leg.widenings;
+			event.commit();
+		}
+		if(report != null) {
+			synchronized(report) {
+				report.legs.add(leg);
+				if(report.legs.size() > report.maxLegs) {
+					report.legs.removeFirst();
+					report.droppedLegs++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Start timing a phase
+	 *
+	 * @param 		name			Name of the phase
+	 *
+	 * @param 		weather			Season of the phase, null if it has none
+	 *
+	 * @return						Phase to end, null if nothing is recorded
+	 */
+
+	static Phase beginPhase(String name, String weather) {
+		if(!isEnabled(PhaseEvent.class)) {
+			return null;
+		}
+		Phase phase = new Phase();
+		phase.phase = name;
+		phase.season = weather;
+		phase.startTime = System.nanoTime();
+		phase.event.begin();
+		return phase;
+	}
+
+	static void endPhase(Phase phase) {
+		if(phase == null) {
+			return;
+		}
+		phase.duration = System.nanoTime() - phase.startTime;
+		PhaseEvent event = phase.event;
+		event.end();
+		if(event.shouldCommit()) {
+			event.phase = phase.phase;
+			event.season = phase.season;
+			event.commit();
+		}
+		if(report != null) {
+			synchronized(report) {
+				report.phases.add(phase);
+			}
+		}
+	}
+
+	/**
+	 * Write the report if one was asked for, as CSV when the file name ends
+	 * with .csv and as JSON otherwise
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	static void writeReport() throws IOException {
+		if(report == null) {
+			return;
+		}
+		synchronized(report) {
+			try(PrintWriter writer = new PrintWriter(report.file, "UTF-8")) {
+				if(report.file.getName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+					report.writeCsv(writer);
+				}else {
+					report.writeJson(writer);
+				}
+			}
+		}
+	}
+
+	void writeCsv(PrintWriter writer) {
+		writer.println("type,name,season,search,x1,y1,x2,y2,cached,expandedNodes,pushedNodes,decreaseKeys,peakOpenNodes,pathPoints,pathTime,entrancePathTime,widenings,millis");
+		for(Phase phase : phases) {
+			writer.println("phase," + phase.phase + "," + text(phase.season) + ",,,,,,,,,,,,,,," + millis(phase.duration));
+		}
+		if(droppedLegs > 0) {
+			writer.println("dropped," + droppedLegs + ",,,,,,,,,,,,,,,,");
+		}
+		for(Leg leg : legs) {
+			writer.println("leg,," + leg.season + "," + leg.search + "," + leg.x1 + "," + leg.y1 + "," + leg.x2 + "," + leg.y2 + "," + leg.cached
+					+ "," + leg.expandedNodes + "," + leg.pushedNodes + "," + leg.decreaseKeys + "," + leg.peakOpenNodes + "," + leg.pathPoints
+					+ "," + csvTime(leg.pathTime) + "," + csvTime(leg.entrancePathTime) + "," + leg.widenings + "," + millis(leg.duration));
+		}
+	}
+
+	void writeJson(PrintWriter writer) {
+		writer.println("{");
+		writer.println("  \"phases\": [");
+		for(int index = 0; index < phases.size(); index++) {
+			Phase phase = phases.get(index);
+			writer.print("    {\"name\": \"" + phase.phase + "\", \"season\": " + (phase.season == null ? "null" : "\"" + phase.season + "\"")
+					+ ", \"millis\": " + millis(phase.duration) + "}");
+			writer.println(index < phases.size() - 1 ? "," : "");
+		}
+		writer.println("  ],");
+		writer.println("  \"droppedLegs\": " + droppedLegs + ",");
+		writer.println("  \"legs\": [");
+		for(Iterator<Leg> iterator = legs.iterator(); iterator.hasNext(); ) {
+			Leg leg = iterator.next();
+			writer.print("    {\"season\": \"" + leg.season + "\", \"search\": \"" + leg.search + "\", \"x1\": " + leg.x1 + ", \"y1\": " + leg.y1
+					+ ", \"x2\": " + leg.x2 + ", \"y2\": " + leg.y2 + ", \"cached\": " + leg.cached + ", \"expandedNodes\": " + leg.expandedNodes
+					+ ", \"pushedNodes\": " + leg.pushedNodes + ", \"decreaseKeys\": " + leg.decreaseKeys + ", \"peakOpenNodes\": " + leg.peakOpenNodes
+					+ ", \"pathPoints\": " + leg.pathPoints + ", \"pathTime\": " + jsonTime(leg.pathTime)
+					+ ", \"entrancePathTime\": " + jsonTime(leg.entrancePathTime) + ", \"widenings\": " + leg.widenings
+					+ ", \"millis\": " + millis(leg.duration) + "}");
+			writer.println(iterator.hasNext() ? "," : "");
+		}
+		writer.println("  ]");
+		writer.println("}");
+	}
+
+	static String text(String value) {
+		return value == null ? "" : value;
+	}
+
+	/**
+	 * Time of a path in the report, empty or null when the search did not
+	 * keep it or found no path
+	 */
+
+	static String csvTime(double time) {
+		return Double.isNaN(time) || Double.isInfinite(time) ? "" : Double.toString(time);
+	}
+
+	static String jsonTime(double time) {
+		return Double.isNaN(time) || Double.isInfinite(time) ? "null" : Double.toString(time);
+	}
+
+	static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Resolution pyramid of a season map for coarse-to-fine search. Level 1
+ * joins 2x2 pixels into a cell, and every further level joins 2x2 cells
+ * of the level below, so level 3 cells cover 8x8 pixels
+ *
+ * A cell keeps the fastest speed of any of its pixels and the lowest and
+ * highest elevation in it. A step between two cells takes the fastest
+ * speeds and the smallest climb the two cells allow, so it is never
+ * slower than the pixels under it, and a cell is only impassable when
+ * all of its pixels are. Any pixel path therefore has a path of cells
+ * under it
+ *
+ * The pyramid is built once per map and season and only read afterwards,
+ * so any number of legs can be searched on it at once
+ *
+ */
+
+import java.util.Arrays;
+
+public class SearchPyramid {
+
+	Path map;
+	int levelCount;
+	int[] levelWidth;
+	int[] levelHeight;
+	double[][] cellSpeed;
+	double[][] lowestElevation;
+	double[][] highestElevation;
+	double fastestSpeed;
+
+	/**
+	 * Creates an empty pyramid, build has to be called before it is searched
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @param 		levelCount		Number of coarse levels above the pixels
+	 */
+
+	public SearchPyramid(Path map, int levelCount) {
+		if(levelCount < 1) {
+			throw new IllegalArgumentException("A search pyramid needs at least one level: " + levelCount);
+		}
+		this.map = map;
+		this.levelCount = levelCount;
+		levelWidth = new int[levelCount + 1];
+		levelHeight = new int[levelCount + 1];
+		cellSpeed = new double[levelCount + 1][];
+		lowestElevation = new double[levelCount + 1][];
+		highestElevation = new double[levelCount + 1][];
+		levelWidth[0] = map.mapWidth;
+		levelHeight[0] = map.mapHeight;
+		for(int level = 1; level <= levelCount; level++) {
+			levelWidth[level] = (levelWidth[level - 1] + 1) / 2;
+			levelHeight[level] = (levelHeight[level - 1] + 1) / 2;
+		}
+	}
+
+	/**
+	 * Build the pyramid of a map
+	 *
+	 * @param 		map				Map with the terrain and speeds of its season
+	 *
+	 * @param 		levelCount		Number of coarse levels above the pixels
+	 *
+	 * @return						Pyramid of the map
+	 */
+
+	public static SearchPyramid build(Path map, int levelCount) {
+		SearchPyramid searchPyramid = new SearchPyramid(map, levelCount);
+		searchPyramid.buildPixelLevel();
+		for(int level = 2; level <= levelCount; level++) {
+			searchPyramid.buildLevel(level);
+		}
+		return searchPyramid;
+	}
+
+	/**
+	 * Join the pixels into the cells of level 1. A pixel counts with the
+	 * fastest speed any row of the speed table gives its terrain class
+	 */
+
+	void buildPixelLevel() {
+		double[] classSpeed = new double[TerrainClass.COUNT];
+		for(double[] speed : map.speedTable) {
+			for(int terrain = 0; terrain < TerrainClass.COUNT; terrain++) {
+				classSpeed[terrain] = Math.max(classSpeed[terrain], speed[terrain]);
+				fastestSpeed = Math.max(fastestSpeed, speed[terrain]);
+			}
+		}
+		allocateLevel(1);
+		int width = map.mapWidth;
+		int cellWidth = levelWidth[1];
+		for(int yCoordinate = 0; yCoordinate < map.mapHeight; yCoordinate++) {
+			double[] elevationRow = map.coordinateElevationArray[yCoordinate];
+			for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+				int cell = (yCoordinate >> 1) * cellWidth + (xCoordinate >> 1);
+				double speed = classSpeed[map.terrainClass[yCoordinate * width + xCoordinate]];
+				addToCell(1, cell, speed, elevationRow[xCoordinate], elevationRow[xCoordinate]);
+			}
+		}
+	}
+
+	void buildLevel(int level) {
+		allocateLevel(level);
+		int cellWidth = levelWidth[level];
+		int lowerWidth = levelWidth[level - 1];
+		for(int lowerY = 0; lowerY < levelHeight[level - 1]; lowerY++) {
+			for(int lowerX = 0; lowerX < lowerWidth; lowerX++) {
+				int lowerCell = lowerY * lowerWidth + lowerX;
+				addToCell(level, (lowerY >> 1) * cellWidth + (lowerX >> 1), cellSpeed[level - 1][lowerCell],
+						lowestElevation[level - 1][lowerCell], highestElevation[level - 1][lowerCell]);
+			}
+		}
+	}
+
+	void allocateLevel(int level) {
+		int cellCount = levelWidth[level] * levelHeight[level];
+		cellSpeed[level] = new double[cellCount];
+		lowestElevation[level] = new double[cellCount];
+		highestElevation[level] = new double[cellCount];
+		Arrays.fill(lowestElevation[level], Double.POSITIVE_INFINITY);
+		Arrays.fill(highestElevation[level], Double.NEGATIVE_INFINITY);
+	}
+
+	void addToCell(int level, int cell, double speed, double lowest, double highest) {
+		cellSpeed[level][cell] = Math.max(cellSpeed[level][cell], speed);
+		lowestElevation[level][cell] = Math.min(lowestElevation[level][cell], lowest);
+		highestElevation[level][cell] = Math.max(highestElevation[level][cell], highest);
+	}
+
+	/**
+	 * Number of pixels across a cell of a level
+	 *
+	 * @param 		level			Level, 0 for the pixels
+	 *
+	 * @return						Width and height of a cell in pixels
+	 */
+
+	public int getScale(int level) {
+		return 1 << level;
+	}
+
+	/**
+	 * Cell of a level that covers a pixel
+	 *
+	 * @param 		level			Level, 0 for the pixels
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @return						Cell id of the level, y * level width + x
+	 */
+
+	public int getCell(int level, int node) {
+		int xCoordinate = node % map.mapWidth;
+		int yCoordinate = node / map.mapWidth;
+		return (yCoordinate >> level) * levelWidth[level] + (xCoordinate >> level);
+	}
+
+	/**
+	 * Time to step between the centers of two neighboring cells with the
+	 * fastest speeds of the cells and the smallest climb between them
+	 *
+	 * @param 		level			Level of the cells, at least 1
+	 *
+	 * @param 		cell			Cell the step leaves
+	 *
+	 * @param 		neighborCell	Cell the step enters
+	 *
+	 * @param 		direction		Direction of the step as in Path.neighborOffsetX
+	 *
+	 * @param 		currentSpeed	Speed to use for the cell the step leaves
+	 *
+	 * @param 		neighborSpeed	Speed to use for the cell the step enters
+	 *
+	 * @return						Step time, infinite if one of the speeds is 0
+	 */
+
+	public double getStepTime(int level, int cell, int neighborCell, int direction, double currentSpeed, double neighborSpeed) {
+		double climb = Math.max(0, Math.max(lowestElevation[level][neighborCell] - highestElevation[level][cell],
+				lowestElevation[level][cell] - highestElevation[level][neighborCell]));
+		int scale = getScale(level);
+		double gDistance = Path.getStraightDistance(0, 0, scale * Path.neighborOffsetX[direction], scale * Path.neighborOffsetY[direction], climb, 0);
+		return Path.getStepTime(gDistance, direction < 2 ? 0 : 4, currentSpeed, neighborSpeed);
+	}
+
+	/**
+	 * Lower bound on the time between two cells, every column and row step
+	 * of pixels between them taken at the fastest speed on flat ground
+	 *
+	 * @param 		level			Level of the cells
+	 *
+	 * @param 		cell			First cell
+	 *
+	 * @param 		otherCell		Second cell
+	 *
+	 * @return						Time no path of cells between them can beat
+	 */
+
+	public double getLowerBoundTime(int level, int cell, int otherCell) {
+		int width = levelWidth[level];
+		int columnSteps = Math.abs(cell % width - otherCell % width);
+		int rowSteps = Math.abs(cell / width - otherCell / width);
+		int scale = getScale(level);
+		return scale * (columnSteps * map.columnStepTime + rowSteps * map.rowStepTime);
+	}
+
+}
@@ -0,0 +1,322 @@
+/**
+ * Pixels a season changes on the base map. Spring turns pixels into mud
+ * and winter turns them into ice, so an overlay is one terrain class and
+ * the set of node ids it covers. The base map is never changed
+ *
+ * The overlay is found by a breadth first search from the water edges
+ * that stops after a given number of steps. A step may only enter the
+ * terrain classes of the season and may only climb or drop less than the
+ * elevation step. Which steps are level enough is marked for the whole
+ * map in one pass of RasterKernels before the search starts. The search
+ * runs level by level over primitive arrays, so it is linear in the
+ * number of pixels it reaches; large levels are split across threads
+ *
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+public class SeasonOverlay {
+
+	static final int PARALLEL_FRONTIER = 4096;
+	static final VarHandle visitedWords = MethodHandles.arrayElementVarHandle(long[].class);
+
+	byte terrain;
+	int radius;
+	int spreadMask;
+	double elevationStep;
+	boolean includeSources;
+	BitSet overlayNodes = new BitSet();
+
+	/**
+	 * Creates an empty overlay
+	 *
+	 * @param 		terrain				Terrain class of the changed pixels
+	 *
+	 * @param 		radius				Number of steps the season spreads from the water edges, at most 255
+	 *
+	 * @param 		spreadMask			Bit mask of the terrain classes the season spreads into
+	 *
+	 * @param 		elevationStep		A step is allowed while the floor of its elevation change is below this
+	 *
+	 * @param 		includeSources		True if the water edges themselves are changed
+	 */
+
+	public SeasonOverlay(byte terrain, int radius, int spreadMask, double elevationStep, boolean includeSources) {
+		if(radius < 0 || radius > 255) {
+			throw new IllegalArgumentException("Radius has to be between 0 and 255: " + radius);
+		}
+		this.terrain = terrain;
+		this.radius = radius;
+		this.spreadMask = spreadMask;
+		this.elevationStep = elevationStep;
+		this.includeSources = includeSources;
+	}
+
+	/**
+	 * Mud of spring. It covers the water edges and spreads over land that
+	 * stays level with the pixel it spreads from
+	 *
+	 * @param 		radius				Number of steps from the water edges
+	 *
+	 * @param 		elevationStep		Largest elevation change, exclusive, after rounding down
+	 *
+	 * @return							Empty mud overlay
+	 */
+
+	static SeasonOverlay mud(int radius, double elevationStep) {
+		int spreadMask = ~((1 << TerrainClass.OUT_OF_BOUNDS) | (1 << TerrainClass.WATER));
+		return new SeasonOverlay(TerrainClass.MUD, radius, spreadMask, elevationStep, true);
+	}
+
+	/**
+	 * Ice of winter. It spreads from the water edges into the water
+	 *
+	 * @param 		radius				Number of steps from the water edges
+	 *
+	 * @return							Empty ice overlay
+	 */
+
+	static SeasonOverlay ice(int radius) {
+		return new SeasonOverlay(TerrainClass.ICE, radius, 1 << TerrainClass.WATER, Double.POSITIVE_INFINITY, false);
+	}
+
+	/**
+	 * Add a pixel to the overlay
+	 *
+	 * @param 		node			Node id of the pixel
+	 */
+
+	public void add(int node) {
+		overlayNodes.set(node);
+	}
+
+	/**
+	 * Check whether the overlay covers a pixel
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @return						True if the season changes the pixel
+	 */
+
+	public boolean contains(int node) {
+		return overlayNodes.get(node);
+	}
+
+	/**
+	 * Terrain classes of the base map with the overlay applied
+	 *
+	 * @param 		baseTerrain		Terrain class raster of the base map
+	 *
+	 * @return						New terrain class raster
+	 */
+
+	public byte[] apply(byte[] baseTerrain) {
+		byte[] seasonTerrain = baseTerrain.clone();
+		for(int node = overlayNodes.nextSetBit(0); node >= 0; node = overlayNodes.nextSetBit(node + 1)) {
+			seasonTerrain[node] = terrain;
+		}
+		return seasonTerrain;
+	}
+
+	/**
+	 * Spread the season from its sources and add every pixel it reaches to the overlay
+	 *
+	 * @param 		sources				Node ids of the water edges
+	 *
+	 * @param 		terrainClass		Terrain class raster, row by row
+	 *
+	 * @param 		elevation			Elevation of every pixel, indexed [y][x]
+	 *
+	 * @param 		width				Width of the raster
+	 *
+	 * @param 		height				Height of the raster
+	 *
+	 * @param 		parallelism			Number of threads for large levels, 1 to stay on the calling thread
+	 */
+
+	public void spread(int[] sources, byte[] terrainClass, double[][] elevation, int width, int height, int parallelism) {
+		int nodeCount = width * height;
+		long[] visited = new long[(nodeCount + 63) >>> 6];
+		byte[] depth = new byte[nodeCount];
+		long[] levelRight = new long[visited.length];
+		long[] levelDown = new long[visited.length];
+		for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+			RasterKernels.kernels.levelSteps(elevation[yCoordinate], yCoordinate < height - 1 ? elevation[yCoordinate + 1] : null, width,
+					elevationStep, yCoordinate * width, levelRight, levelDown);
+		}
+		IntQueue queue = new IntQueue(Math.max(16, sources.length));
+		for(int source : sources) {
+			if(claim(visited, source, false)) {
+				queue.add(source);
+			}
+		}
+
+		ForkJoinPool levelPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		try {
+			while(!queue.isEmpty()) {
+				int levelSize = queue.size();
+				if(levelPool == null || levelSize < PARALLEL_FRONTIER) {
+					for(int index = 0; index < levelSize; index++) {
+						expand(queue.poll(), visited, depth, terrainClass, levelRight, levelDown, width, height, queue, false);
+					}
+				}else {
+					spreadLevel(levelPool, parallelism, queue, levelSize, visited, depth, terrainClass, levelRight, levelDown, width, height);
+				}
+			}
+		}finally {
+			if(levelPool != null) {
+				levelPool.shutdown();
+			}
+		}
+
+		BitSet reached = BitSet.valueOf(visited);
+		if(!includeSources) {
+			for(int source : sources) {
+				reached.clear(source);
+			}
+		}
+		overlayNodes.or(reached);
+	}
+
+	/**
+	 * Expand one level on several threads. Every thread claims the pixels it
+	 * reaches with a compare-and-set, so each pixel enters the next level once
+	 */
+
+	void spreadLevel(ForkJoinPool levelPool, int parallelism, IntQueue queue, int levelSize, long[] visited, byte[] depth,
+			byte[] terrainClass, long[] levelRight, long[] levelDown, int width, int height) {
+		int[] level = new int[levelSize];
+		for(int index = 0; index < levelSize; index++) {
+			level[index] = queue.poll();
+		}
+		int chunkSize = Math.max(PARALLEL_FRONTIER / 4, (levelSize + parallelism - 1) / parallelism);
+		List<Callable<IntQueue>> chunks = new ArrayList<Callable<IntQueue>>();
+		for(int start = 0; start < levelSize; start += chunkSize) {
+			int from = start;
+			int to = Math.min(levelSize, start + chunkSize);
+			chunks.add(() -> {
+				IntQueue reached = new IntQueue(16);
+				for(int index = from; index < to; index++) {
+					expand(level[index], visited, depth, terrainClass, levelRight, levelDown, width, height, reached, true);
+				}
+				return reached;
+			});
+		}
+		for(IntQueue reached : Path.invokeAll(levelPool, chunks, "spreading the season")) {
+			while(!reached.isEmpty()) {
+				queue.add(reached.poll());
+			}
+		}
+	}
+
+	/**
+	 * Spread from one pixel to its four neighbors. A step and the step back
+	 * are level together, so both are marked on the pixel with the lower
+	 * node id
+	 */
+
+	void expand(int node, long[] visited, byte[] depth, byte[] terrainClass, long[] levelRight, long[] levelDown, int width, int height,
+			IntQueue reached, boolean concurrent) {
+		int nodeDepth = depth[node] & 0xFF;
+		if(nodeDepth == radius) {
+			return;
+		}
+		int currentX = node % width;
+		int currentY = node / width;
+		for(int direction = 0; direction < 4; direction++) {
+			int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+			int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+			if(xNeighborValue < 0 || xNeighborValue >= width || yNeighborValue < 0 || yNeighborValue >= height) {
+				continue;
+			}
+			int neighborNode = yNeighborValue * width + xNeighborValue;
+			int stepNode = Math.min(node, neighborNode);
+			long[] levelSteps = direction < 2 ? levelRight : levelDown;
+			if(((spreadMask >>> terrainClass[neighborNode]) & 1) != 0
+					&& (levelSteps[stepNode >>> 6] & (1L << stepNode)) != 0
+					&& claim(visited, neighborNode, concurrent)) {
+				depth[neighborNode] = (byte) (nodeDepth + 1);
+				reached.add(neighborNode);
+			}
+		}
+	}
+
+	/**
+	 * Mark a pixel as visited
+	 *
+	 * @return						True if the pixel was not visited before
+	 */
+
+	static boolean claim(long[] visited, int node, boolean concurrent) {
+		int word = node >>> 6;
+		long bit = 1L << node;
+		if(!concurrent) {
+			if((visited[word] & bit) != 0) {
+				return false;
+			}
+			visited[word] |= bit;
+			return true;
+		}
+		long current = (long) visitedWords.getVolatile(visited, word);
+		while((current & bit) == 0) {
+			long witness = (long) visitedWords.compareAndExchange(visited, word, current, current | bit);
+			if(witness == current) {
+				return true;
+			}
+			current = witness;
+		}
+		return false;
+	}
+
+	/**
+	 * Growable ring buffer of node ids
+	 *
+	 */
+
+	static class IntQueue {
+
+		int[] elements;
+		int head = 0;
+		int size = 0;
+
+		IntQueue(int capacity) {
+			elements = new int[Integer.highestOneBit(capacity - 1) << 1];
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		void add(int node) {
+			if(size == elements.length) {
+				int[] grown = new int[elements.length * 2];
+				int firstPart = elements.length - head;
+				System.arraycopy(elements, head, grown, 0, firstPart);
+				System.arraycopy(elements, 0, grown, firstPart, head);
+				elements = grown;
+				head = 0;
+			}
+			elements[(head + size) & (elements.length - 1)] = node;
+			size++;
+		}
+
+		int poll() {
+			int node = elements[head];
+			head = (head + 1) & (elements.length - 1);
+			size--;
+			return node;
+		}
+
+	}
+
+}
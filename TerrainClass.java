@@ -0,0 +1,60 @@
+/**
+ * Terrain classes of the orienteering map. Every map color is
+ * classified once into one of these classes so the search works
+ * on a compact byte raster instead of the pixel colors
+ *
+ */
+
+public class TerrainClass {
+
+	static final byte OPEN_LAND = 0;
+	static final byte ROUGH_MEADOW = 1;
+	static final byte EASY_MOVEMENT_FOREST = 2;
+	static final byte SLOW_RUN_FOREST = 3;
+	static final byte WALK_FOREST = 4;
+	static final byte IMPASSIBLE_VEGETATION = 5;
+	static final byte WATER = 6;
+	static final byte PAVED_ROAD = 7;
+	static final byte FOOT_PATH = 8;
+	static final byte OUT_OF_BOUNDS = 9;
+	static final byte ICE = 10;
+	static final byte MUD = 11;
+	static final byte UNKNOWN = 12;
+
+	static final int COUNT = 13;
+
+	static final int[] classColor = {
+			0xF89412, 0xFFC000, 0xFFFFFF, 0x02D03C, 0x028828, 0x054918, 0x0000FF,
+			0x473303, 0x000000, 0xCD0065, 0x87CEFA, 0x8B4513 };
+
+	/**
+	 * Classify a pixel color
+	 *
+	 * @param 		rgb			Pixel color, alpha is ignored
+	 *
+	 * @return					Terrain class of the color, UNKNOWN if it is not a map color
+	 */
+
+	static byte classify(int rgb) {
+		rgb &= 0xFFFFFF;
+		for(byte terrain = 0; terrain < UNKNOWN; terrain++) {
+			if(classColor[terrain] == rgb) {
+				return terrain;
+			}
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Map color of a terrain class
+	 *
+	 * @param 		terrain		Terrain class
+	 *
+	 * @return					Pixel color of the class
+	 */
+
+	static int color(byte terrain) {
+		return classColor[terrain];
+	}
+
+}
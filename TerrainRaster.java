@@ -0,0 +1,124 @@
+/**
+ * Colors of the map pixels packed as 0xRRGGBB in one int array, row by
+ * row, so the pixel of node id y * width + x is pixels[node]. A map image
+ * that is already decoded into an int raster is used as it is, any other
+ * image is read into the array once
+ *
+ */
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+public class TerrainRaster {
+
+	static final int[] RGB_MASKS = {0xFF0000, 0xFF00, 0xFF};
+
+	int width;
+	int height;
+	int[] pixels;
+
+	/**
+	 * Creates a raster of black pixels
+	 *
+	 * @param 		width			Width in pixels
+	 *
+	 * @param 		height			Height in pixels
+	 */
+
+	public TerrainRaster(int width, int height) {
+		this(width, height, new int[width * height]);
+	}
+
+	TerrainRaster(int width, int height, int[] pixels) {
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+
+	/**
+	 * Raster of a decoded image. The int array of an RGB image is shared
+	 * with the image, so the image should not be changed afterwards
+	 *
+	 * @param 		image			Decoded map image
+	 *
+	 * @return						Raster with the colors of the image
+	 */
+
+	public static TerrainRaster fromImage(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		WritableRaster raster = image.getRaster();
+		if(image.getType() == BufferedImage.TYPE_INT_RGB && raster.getDataBuffer() instanceof DataBufferInt
+				&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+				&& ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == width
+				&& raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+			DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+			if(dataBuffer.getNumBanks() == 1 && dataBuffer.getOffset() == 0 && dataBuffer.getSize() == width * height) {
+				return new TerrainRaster(width, height, dataBuffer.getData());
+			}
+		}
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		for(int node = 0; node < pixels.length; node++) {
+			pixels[node] &= 0xFFFFFF;
+		}
+		return new TerrainRaster(width, height, pixels);
+	}
+
+	/**
+	 * Color of a pixel
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @return						Color as 0xRRGGBB
+	 */
+
+	public int getRGB(int node) {
+		return pixels[node] & 0xFFFFFF;
+	}
+
+	public int getRGB(int xCoordinate, int yCoordinate) {
+		return getRGB(yCoordinate * width + xCoordinate);
+	}
+
+	/**
+	 * Change the color of a pixel
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @param 		rgb				Color as 0xRRGGBB
+	 */
+
+	public void setRGB(int node, int rgb) {
+		pixels[node] = rgb;
+	}
+
+	public void setRGB(int xCoordinate, int yCoordinate, int rgb) {
+		setRGB(yCoordinate * width + xCoordinate, rgb);
+	}
+
+	/**
+	 * Copy of the raster that can be drawn on
+	 *
+	 * @return						Raster with its own pixels
+	 */
+
+	public TerrainRaster copy() {
+		return new TerrainRaster(width, height, pixels.clone());
+	}
+
+	/**
+	 * RGB image on the pixels of the raster, without copying them
+	 *
+	 * @return						Image that changes with the raster
+	 */
+
+	public BufferedImage toImage() {
+		WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length), width, height, width, RGB_MASKS, null);
+		return new BufferedImage(new DirectColorModel(24, RGB_MASKS[0], RGB_MASKS[1], RGB_MASKS[2]), raster, false, null);
+	}
+
+}
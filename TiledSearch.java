@@ -0,0 +1,330 @@
+/**
+ * A Star search over tiled terrain. It follows the cost model of
+ * Path.aStarSearch, but node ids are tile-major and all search state is
+ * kept in per-tile pages allocated on first use, so memory grows with the
+ * explored area instead of the size of the map
+ *
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import javax.imageio.ImageIO;
+
+public class TiledSearch {
+
+	TiledTerrain terrain;
+	String weather;
+	double[] terrainSpeed;
+	double[][] speedTable;
+	int pageBits;
+	int pageMask;
+	long expandedNodes = 0;
+
+	/**
+	 * Creates a search over tiled terrain
+	 *
+	 * @param 		terrain			Tiled terrain
+	 *
+	 * @param 		weather			Current Weather
+	 */
+
+	public TiledSearch(TiledTerrain terrain, String weather) {
+		this.terrain = terrain;
+		this.weather = weather;
+		terrainSpeed = Path.getDefaultSpeed(weather);
+		speedTable = Path.getSpeedTable(weather, terrainSpeed);
+		pageBits = 2 * terrain.tileShift;
+		pageMask = (1 << pageBits) - 1;
+	}
+
+	int node(int xCoordinate, int yCoordinate) {
+		return (terrain.tileIndex(xCoordinate, yCoordinate) << pageBits) | terrain.localIndex(xCoordinate, yCoordinate);
+	}
+
+	int nodeX(int node) {
+		return (((node >>> pageBits) % terrain.tilesX) << terrain.tileShift) | (node & (terrain.tileSize - 1));
+	}
+
+	int nodeY(int node) {
+		return (((node >>> pageBits) / terrain.tilesX) << terrain.tileShift) | ((node & pageMask) >>> terrain.tileShift);
+	}
+
+	/**
+	 * Calculate the path between start and destination, see Path.aStarSearch
+	 *
+	 * @param 		x1				X Coordinate of Start
+	 *
+	 * @param 		y1				Y Coordinate of Start
+	 *
+	 * @param 		x2				X Coordinate of Destination
+	 *
+	 * @param 		y2				Y Coordinate of Destination
+	 *
+	 * @return						Path coordinates of the leg in the order of Path.aStarSearch, empty if the
+	 * 								destination cannot be reached
+	 */
+
+	public int[] aStarSearch(int x1, int y1, int x2, int y2) {
+		SearchMetrics.Leg legMetrics = SearchMetrics.beginLeg(weather, "tiled", x1, y1, x2, y2);
+		int[] legCoordinates = findLeg(x1, y1, x2, y2, legMetrics);
+		SearchMetrics.endLeg(legMetrics, legCoordinates);
+		return legCoordinates;
+	}
+
+	int[] findLeg(int x1, int y1, int x2, int y2, SearchMetrics.Leg legMetrics) {
+		int pageCount = terrain.tilesX * terrain.tilesY;
+		int pageSize = 1 << pageBits;
+		double[][] gPages = new double[pageCount][];
+		int[][] parentPages = new int[pageCount][];
+		long[][] closePages = new long[pageCount][];
+		PagedIndexedMinHeap openNodes = new PagedIndexedMinHeap(pageCount, pageBits);
+
+		int currentNode = node(x1, y1);
+		int destinationNode = node(x2, y2);
+		allocatePage(currentNode >>> pageBits, gPages, parentPages, closePages, pageSize);
+		gPages[currentNode >>> pageBits][currentNode & pageMask] = 0.0;
+
+		double nextElevation = terrain.elevation(0, 0);
+		double destinationElevation = terrain.elevation(x2, y2);
+		long expanded = 0;
+
+		while(currentNode != destinationNode) {
+			expanded++;
+
+			int currentX = nodeX(currentNode);
+			int currentY = nodeY(currentNode);
+			byte currentTerrain = terrain.terrainClass(currentX, currentY);
+			double currentElevation = terrain.elevation(currentX, currentY);
+			double previousGValue = gPages[currentNode >>> pageBits][currentNode & pageMask];
+			double[] speed = speedTable[currentTerrain];
+			for(int direction = 0; direction < 4; direction++) {
+				int xNeighborValue = currentX + Path.neighborOffsetX[direction];
+				int yNeighborValue = currentY + Path.neighborOffsetY[direction];
+				if(xNeighborValue < 0 || xNeighborValue >= terrain.width || yNeighborValue < 0 || yNeighborValue >= terrain.height) {
+					continue;
+				}
+				int neighborNode = node(xNeighborValue, yNeighborValue);
+				int neighborPage = neighborNode >>> pageBits;
+				int neighborIndex = neighborNode & pageMask;
+				byte neighborTerrain = terrain.terrainClass(xNeighborValue, yNeighborValue);
+
+				if(terrainSpeed[neighborTerrain] > 0) {
+					allocatePage(neighborPage, gPages, parentPages, closePages, pageSize);
+				}
+				if(terrainSpeed[neighborTerrain] > 0 && (closePages[neighborPage][neighborIndex >>> 6] & (1L << neighborIndex)) == 0) {
+					double nextNeighborElevation = terrain.elevation(xNeighborValue, yNeighborValue);
+					double gDistance = Path.getStraightDistance(currentX, currentY, xNeighborValue, yNeighborValue, currentElevation, nextNeighborElevation);
+					double time = previousGValue + Path.getStepTime(gDistance, 2 * direction, speed[currentTerrain], speed[neighborTerrain]);
+					double[] gPage = gPages[neighborPage];
+					if(time < gPage[neighborIndex]) {
+						gPage[neighborIndex] = time;
+					}
+					else {
+						time = gPage[neighborIndex];
+					}
+					double heuristicDistance = Path.getStraightDistance(xNeighborValue, yNeighborValue, x2, y2, nextElevation, destinationElevation) / Path.openLand;
+
+					double newFValue = time + heuristicDistance;
+
+					if(!openNodes.contains(neighborNode)) {
+						openNodes.add(neighborNode, newFValue);
+						parentPages[neighborPage][neighborIndex] = currentNode;
+					}
+					else if(newFValue < openNodes.key(neighborNode)) {
+						openNodes.decreaseKey(neighborNode, newFValue);
+						parentPages[neighborPage][neighborIndex] = currentNode;
+					}
+				}
+				if(neighborNode == destinationNode) {
+					addExpanded(expanded, openNodes, legMetrics);
+					return getPath(parentPages, currentNode, x1, y1, x2, y2);
+				}
+			}
+
+			int currentIndex = currentNode & pageMask;
+			closePages[currentNode >>> pageBits][currentIndex >>> 6] |= 1L << currentIndex;
+			if(openNodes.isEmpty()) {
+				break;
+			}
+			currentNode = openNodes.poll();
+		}
+
+		addExpanded(expanded, openNodes, legMetrics);
+		return new int[0];
+	}
+
+	void addExpanded(long expanded, IndexedMinHeap openNodes, SearchMetrics.Leg legMetrics) {
+		expandedNodes += expanded;
+		if(legMetrics != null) {
+			legMetrics.addSearch(expanded, openNodes);
+		}
+	}
+
+	/**
+	 * Path coordinates of a leg from the parents of the search, with the node
+	 * ids of the tiles turned into node ids of the whole map for Path.getPath
+	 *
+	 * @param 		parentPages		Parent node of every reached pixel, per tile
+	 *
+	 * @param 		lastNode		Node of the pixel the destination was reached from
+	 *
+	 * @return						Path coordinates of the leg in the order of Path.aStarSearch
+	 */
+
+	int[] getPath(int[][] parentPages, int lastNode, int x1, int y1, int x2, int y2) {
+		int pathLength = 0;
+		for(int node = lastNode; parentPages[node >>> pageBits][node & pageMask] != -1; node = parentPages[node >>> pageBits][node & pageMask]) {
+			pathLength++;
+		}
+		int[] pathNodes = new int[pathLength];
+		int index = pathLength;
+		for(int node = lastNode; parentPages[node >>> pageBits][node & pageMask] != -1; node = parentPages[node >>> pageBits][node & pageMask]) {
+			pathNodes[--index] = nodeY(node) * terrain.width + nodeX(node);
+		}
+		return Path.getPath(y1 * terrain.width + x1, y2 * terrain.width + x2, pathNodes, pathLength, terrain.width);
+	}
+
+	/**
+	 * Allocate the search state of a tile on first use
+	 */
+
+	static void allocatePage(int page, double[][] gPages, int[][] parentPages, long[][] closePages, int pageSize) {
+		if(gPages[page] == null) {
+			gPages[page] = new double[pageSize];
+			parentPages[page] = new int[pageSize];
+			closePages[page] = new long[(pageSize + 63) >>> 6];
+			Arrays.fill(gPages[page], Double.POSITIVE_INFINITY);
+			Arrays.fill(parentPages[page], -1);
+		}
+	}
+
+	/**
+	 * Total length of a path, see Path.getPathLength
+	 *
+	 * @param 		parentCoordinates				Path coordinates of every leg in course order
+	 *
+	 * @param 		destinationPathCoordinates		Control coordinates of the course
+	 *
+	 * @return										Path length in meters
+	 */
+
+	public double getPathLength(List<Integer> parentCoordinates, List<Integer> destinationPathCoordinates) {
+		double totalPathLength = 0;
+		List<Integer> pathCoordinates = new ArrayList<Integer>(parentCoordinates);
+		pathCoordinates.add(destinationPathCoordinates.get(0));
+		pathCoordinates.add(destinationPathCoordinates.get(1));
+		for(int index = 0; index < pathCoordinates.size() - 3; index+=2) {
+			int x1 = pathCoordinates.get(index);
+			int y1 = pathCoordinates.get(index + 1);
+			int x2 = pathCoordinates.get(index + 2);
+			int y2 = pathCoordinates.get(index + 3);
+			totalPathLength += Path.getStraightDistance(x1, y1, x2, y2, terrain.elevation(x1, y1), terrain.elevation(x2, y2));
+		}
+		return totalPathLength;
+	}
+
+	/**
+	 * Render the part of the map around the course with the path and the controls
+	 *
+	 * @param 		parentCoordinates				Path coordinates of every leg in course order
+	 *
+	 * @param 		destinationPathCoordinates		Control coordinates of the course
+	 *
+	 * @param 		outputFileName					File to save the image
+	 *
+	 * @throws 		IOException						To handle if an IO exception occurs
+	 */
+
+	public void displayImage(List<Integer> parentCoordinates, List<Integer> destinationPathCoordinates, String outputFileName) throws IOException {
+		List<Integer> drawnCoordinates = new ArrayList<Integer>(parentCoordinates);
+		drawnCoordinates.addAll(destinationPathCoordinates);
+		int minX = terrain.width;
+		int minY = terrain.height;
+		int maxX = 0;
+		int maxY = 0;
+		for(int index = 0; index < drawnCoordinates.size() - 1; index += 2) {
+			minX = Math.min(minX, drawnCoordinates.get(index));
+			maxX = Math.max(maxX, drawnCoordinates.get(index));
+			minY = Math.min(minY, drawnCoordinates.get(index + 1));
+			maxY = Math.max(maxY, drawnCoordinates.get(index + 1));
+		}
+		int margin = 8;
+		minX = Math.max(0, minX - margin);
+		minY = Math.max(0, minY - margin);
+		maxX = Math.min(terrain.width - 1, maxX + margin);
+		maxY = Math.min(terrain.height - 1, maxY + margin);
+
+		TerrainRaster displayRaster = new TerrainRaster(maxX - minX + 1, maxY - minY + 1);
+		for(int yCoordinate = minY; yCoordinate <= maxY; yCoordinate++) {
+			for(int xCoordinate = minX; xCoordinate <= maxX; xCoordinate++) {
+				byte terrainClass = terrain.terrainClass(xCoordinate, yCoordinate);
+				int color = terrainClass == TerrainClass.UNKNOWN ? 0xFFFFFF : TerrainClass.color(terrainClass);
+				displayRaster.setRGB(xCoordinate - minX, yCoordinate - minY, color);
+			}
+		}
+		displayRaster.setRGB(destinationPathCoordinates.get(0) - minX, destinationPathCoordinates.get(1) - minY, 0xFF0000);
+		for(int index = 0; index < parentCoordinates.size() - 1; index += 2) {
+			displayRaster.setRGB(parentCoordinates.get(index) - minX, parentCoordinates.get(index + 1) - minY, 0xFF0000);
+		}
+		for(int index = 0; index < destinationPathCoordinates.size() - 1; index += 2) {
+			for(int offsetY = -1; offsetY <= 1; offsetY++) {
+				for(int offsetX = -1; offsetX <= 1; offsetX++) {
+					int xCoordinate = destinationPathCoordinates.get(index) + offsetX;
+					int yCoordinate = destinationPathCoordinates.get(index + 1) + offsetY;
+					if((offsetX != 0 || offsetY != 0) && minX <= xCoordinate && xCoordinate <= maxX && minY <= yCoordinate && yCoordinate <= maxY) {
+						displayRaster.setRGB(xCoordinate - minX, yCoordinate - minY, 0x4B0082);
+					}
+				}
+			}
+		}
+		ImageIO.write(displayRaster.toImage(), "png", new File(outputFileName));
+	}
+
+	/**
+	 * Route a course over a tile directory. Takes the same arguments as Path,
+	 * with the tile directory in place of the map; the elevation argument is
+	 * ignored because the tiles carry the elevation
+	 *
+	 * @param 		args		Tile directory, elevation (ignored), course, season, output image
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public static void main(String[] args) throws IOException {
+		String weather = args[3];
+		if(!Path.isSeason(weather)) {
+			System.out.println("Enter Correct Season");
+			return;
+		}
+		TiledTerrain terrain = new TiledTerrain(new File(args[0]));
+		terrain.useSeason(weather);
+		List<Integer> destinationPathCoordinates = new ArrayList<Integer>();
+		try(Scanner scanner = new Scanner(new FileInputStream(args[2]))) {
+			while(scanner.hasNext()) {
+				destinationPathCoordinates.add(scanner.nextInt());
+			}
+		}
+		TiledSearch tiledSearch = new TiledSearch(terrain, weather);
+		List<Integer> parentCoordinates = new ArrayList<Integer>();
+		for(int index = 0; index < destinationPathCoordinates.size() - 3; index+=2) {
+			int[] legCoordinates = tiledSearch.aStarSearch(destinationPathCoordinates.get(index), destinationPathCoordinates.get(index + 1),
+					destinationPathCoordinates.get(index + 2), destinationPathCoordinates.get(index + 3));
+			for(int coordinate : legCoordinates) {
+				parentCoordinates.add(coordinate);
+			}
+		}
+		tiledSearch.displayImage(parentCoordinates, destinationPathCoordinates, args[4]);
+		System.out.println("Total Path Length: " + Math.round(tiledSearch.getPathLength(parentCoordinates, destinationPathCoordinates)) + "m");
+		System.out.println("Tiles loaded: " + terrain.loadedTiles + " of " + terrain.tilesX * terrain.tilesY);
+		if(Boolean.getBoolean("path.searchStats")) {
+			System.out.println("Nodes Expanded: " + tiledSearch.expandedNodes);
+		}
+		SearchMetrics.writeReport();
+	}
+
+}
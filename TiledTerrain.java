@@ -0,0 +1,342 @@
+/**
+ * Terrain split into fixed-size square tiles on disk. A tile holds the
+ * elevation and the terrain class of its pixels and is only read when a
+ * search first touches it, so large regions can be routed without
+ * loading the whole map
+ *
+ * Directory layout:
+ * 	tiles.bin				magic "AWTL", version, width, height, tile size (little-endian ints)
+ * 	tile_<tx>_<ty>.bin		tile size * tile size float64 elevations row by row,
+ * 							then tile size * tile size terrain class bytes.
+ * 							Tiles on the right and bottom border are padded with
+ * 							out of bounds pixels.
+ *
+ * The mud or ice of a season is found per tile on first use, from the tile
+ * and a halo around it that is one pixel wider than the season reaches
+ *
+ * Tiles are never evicted, so a run keeps every tile its searches touched
+ * in memory, about 9 bytes per pixel and one more with a season. Node ids
+ * of the padded tiles are ints, so a region can hold at most 2^31 pixels,
+ * about 46000 x 46000
+ *
+ */
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+public class TiledTerrain {
+
+	static final int MAGIC = 0x4C545741;
+	static final int VERSION = 1;
+
+	File directory;
+	int width;
+	int height;
+	int tileSize;
+	int tileShift;
+	int tilesX;
+	int tilesY;
+	double[][] tileElevation;
+	byte[][] tileClass;
+	byte[][] seasonClass;
+	String season;
+	int loadedTiles = 0;
+
+	/**
+	 * Open a tile directory written by convert
+	 *
+	 * @param 		directory		Tile directory
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public TiledTerrain(File directory) throws IOException {
+		this.directory = directory;
+		ByteBuffer header = readFile(new File(directory, "tiles.bin"));
+		if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			throw new IOException("Not a tile directory: " + directory);
+		}
+		width = header.getInt(8);
+		height = header.getInt(12);
+		tileSize = header.getInt(16);
+		tileShift = Integer.numberOfTrailingZeros(tileSize);
+		tilesX = (width + tileSize - 1) / tileSize;
+		tilesY = (height + tileSize - 1) / tileSize;
+		if(((long) tilesX * tilesY << 2 * tileShift) - 1 > Integer.MAX_VALUE) {
+			throw new IOException("Tiles of " + directory + " have more pixels than int node ids can address: " + width + "x" + height);
+		}
+		tileElevation = new double[tilesX * tilesY][];
+		tileClass = new byte[tilesX * tilesY][];
+	}
+
+	/**
+	 * Elevation of a pixel
+	 *
+	 * @param 		xCoordinate		X Coordinate of the pixel
+	 *
+	 * @param 		yCoordinate		Y Coordinate of the pixel
+	 *
+	 * @return						Elevation of the pixel
+	 */
+
+	public double elevation(int xCoordinate, int yCoordinate) {
+		int tile = tileIndex(xCoordinate, yCoordinate);
+		if(tileElevation[tile] == null) {
+			loadTile(tile);
+		}
+		return tileElevation[tile][localIndex(xCoordinate, yCoordinate)];
+	}
+
+	/**
+	 * Use the mud or ice of a season for the terrain classes
+	 *
+	 * @param 		weather			Current Weather
+	 */
+
+	public void useSeason(String weather) {
+		season = weather;
+		seasonClass = Path.getSeasonRule(weather) == null ? null : new byte[tilesX * tilesY][];
+	}
+
+	/**
+	 * Terrain class of a pixel in the current season
+	 *
+	 * @param 		xCoordinate		X Coordinate of the pixel
+	 *
+	 * @param 		yCoordinate		Y Coordinate of the pixel
+	 *
+	 * @return						Terrain class of the pixel
+	 */
+
+	public byte terrainClass(int xCoordinate, int yCoordinate) {
+		if(seasonClass == null) {
+			return baseClass(xCoordinate, yCoordinate);
+		}
+		int tile = tileIndex(xCoordinate, yCoordinate);
+		if(seasonClass[tile] == null) {
+			loadSeasonTile(tile);
+		}
+		return seasonClass[tile][localIndex(xCoordinate, yCoordinate)];
+	}
+
+	/**
+	 * Terrain class of a pixel on the map without a season
+	 *
+	 * @param 		xCoordinate		X Coordinate of the pixel
+	 *
+	 * @param 		yCoordinate		Y Coordinate of the pixel
+	 *
+	 * @return						Terrain class of the pixel
+	 */
+
+	public byte baseClass(int xCoordinate, int yCoordinate) {
+		int tile = tileIndex(xCoordinate, yCoordinate);
+		if(tileClass[tile] == null) {
+			loadTile(tile);
+		}
+		return tileClass[tile][localIndex(xCoordinate, yCoordinate)];
+	}
+
+	int tileIndex(int xCoordinate, int yCoordinate) {
+		return (yCoordinate >> tileShift) * tilesX + (xCoordinate >> tileShift);
+	}
+
+	int localIndex(int xCoordinate, int yCoordinate) {
+		return ((yCoordinate & (tileSize - 1)) << tileShift) | (xCoordinate & (tileSize - 1));
+	}
+
+	/**
+	 * Read a tile from disk
+	 *
+	 * @param 		tile			Tile index
+	 */
+
+	void loadTile(int tile) {
+		int tileArea = tileSize * tileSize;
+		try {
+			ByteBuffer buffer = readFile(tileFile(directory, tile % tilesX, tile / tilesX));
+			double[] elevation = new double[tileArea];
+			byte[] terrain = new byte[tileArea];
+			buffer.asDoubleBuffer().get(elevation);
+			buffer.position(tileArea * 8);
+			buffer.get(terrain);
+			tileElevation[tile] = elevation;
+			tileClass[tile] = terrain;
+			loadedTiles++;
+		}catch(IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+	}
+
+	/**
+	 * Spread the season over a tile and its halo and keep the terrain classes of the tile
+	 *
+	 * @param 		tile			Tile index
+	 */
+
+	void loadSeasonTile(int tile) {
+		SeasonOverlay overlay = Path.getSeasonRule(season);
+		int halo = overlay.radius + 1;
+		int tileX = (tile % tilesX) << tileShift;
+		int tileY = (tile / tilesX) << tileShift;
+		int minX = Math.max(0, tileX - halo);
+		int minY = Math.max(0, tileY - halo);
+		int maxX = Math.min(width, tileX + tileSize + halo);
+		int maxY = Math.min(height, tileY + tileSize + halo);
+		int windowWidth = maxX - minX;
+		int windowHeight = maxY - minY;
+
+		byte[] windowClass = new byte[windowWidth * windowHeight];
+		double[][] windowElevation = new double[windowHeight][windowWidth];
+		for(int yCoordinate = minY; yCoordinate < maxY; yCoordinate++) {
+			for(int xCoordinate = minX; xCoordinate < maxX; xCoordinate++) {
+				windowClass[(yCoordinate - minY) * windowWidth + xCoordinate - minX] = baseClass(xCoordinate, yCoordinate);
+				windowElevation[yCoordinate - minY][xCoordinate - minX] = elevation(xCoordinate, yCoordinate);
+			}
+		}
+		overlay.spread(WaterEdges.find(windowClass, windowWidth, windowHeight, 1).nodes(), windowClass, windowElevation,
+				windowWidth, windowHeight, 1);
+
+		byte[] terrain = tileClass[tile].clone();
+		for(int yCoordinate = tileY; yCoordinate < Math.min(height, tileY + tileSize); yCoordinate++) {
+			for(int xCoordinate = tileX; xCoordinate < Math.min(width, tileX + tileSize); xCoordinate++) {
+				if(overlay.contains((yCoordinate - minY) * windowWidth + xCoordinate - minX)) {
+					terrain[localIndex(xCoordinate, yCoordinate)] = overlay.terrain;
+				}
+			}
+		}
+		seasonClass[tile] = terrain;
+	}
+
+	static File tileFile(File directory, int tileX, int tileY) {
+		return new File(directory, "tile_" + tileX + "_" + tileY + ".bin");
+	}
+
+	static ByteBuffer readFile(File file) throws IOException {
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return buffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	/**
+	 * Split a map and its elevation file into tiles. Both are read one band
+	 * of tile rows at a time, so the full map is never held in memory
+	 *
+	 * @param 		mapFile				Map image
+	 *
+	 * @param 		elevationFile		Text or binary elevation file covering the map
+	 *
+	 * @param 		directory			Output tile directory
+	 *
+	 * @param 		tileSize			Tile size in pixels, a power of two
+	 *
+	 * @throws 		IOException			To handle if an IO exception occurs
+	 */
+
+	public static void convert(File mapFile, File elevationFile, File directory, int tileSize) throws IOException {
+		if(Integer.bitCount(tileSize) != 1) {
+			throw new IOException("Tile size has to be a power of two: " + tileSize);
+		}
+		directory.mkdirs();
+		try(ImageInputStream imageInput = ImageIO.createImageInputStream(mapFile);
+				ElevationFile.RowReader elevationRows = new ElevationFile.RowReader(elevationFile)) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+			if(!readers.hasNext()) {
+				throw new IOException("Unsupported map image: " + mapFile);
+			}
+			ImageReader reader = readers.next();
+			reader.setInput(imageInput);
+			int width = reader.getWidth(0);
+			int height = reader.getHeight(0);
+			if(elevationRows.gridWidth < width || elevationRows.gridHeight < height) {
+				throw new IOException("Elevation grid " + elevationRows.gridWidth + "x" + elevationRows.gridHeight
+						+ " does not cover the " + width + "x" + height + " map");
+			}
+
+			int tilesX = (width + tileSize - 1) / tileSize;
+			int tileArea = tileSize * tileSize;
+			double[] elevationRow = new double[width];
+			for(int bandY = 0; bandY < height; bandY += tileSize) {
+				int bandHeight = Math.min(tileSize, height - bandY);
+				ImageReadParam readParam = reader.getDefaultReadParam();
+				readParam.setSourceRegion(new Rectangle(0, bandY, width, bandHeight));
+				BufferedImage band = reader.read(0, readParam);
+				int[] bandPixels = band.getRGB(0, 0, width, bandHeight, null, 0, width);
+				byte[] bandClasses = new byte[bandPixels.length];
+				RasterKernels.kernels.classify(bandPixels, bandClasses, 0, bandPixels.length);
+
+				ByteBuffer[] tiles = new ByteBuffer[tilesX];
+				for(int tileX = 0; tileX < tilesX; tileX++) {
+					tiles[tileX] = ByteBuffer.allocate(tileArea * 9).order(ByteOrder.LITTLE_ENDIAN);
+					for(int index = 0; index < tileArea; index++) {
+						tiles[tileX].put(tileArea * 8 + index, TerrainClass.OUT_OF_BOUNDS);
+					}
+				}
+				for(int localY = 0; localY < bandHeight; localY++) {
+					elevationRows.next(elevationRow);
+					for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+						ByteBuffer tile = tiles[xCoordinate / tileSize];
+						int localIndex = localY * tileSize + (xCoordinate % tileSize);
+						tile.putDouble(localIndex * 8, elevationRow[xCoordinate]);
+						tile.put(tileArea * 8 + localIndex, bandClasses[localY * width + xCoordinate]);
+					}
+				}
+				for(int tileX = 0; tileX < tilesX; tileX++) {
+					writeFile(tileFile(directory, tileX, bandY / tileSize), tiles[tileX]);
+				}
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(tileSize);
+			writeFile(new File(directory, "tiles.bin"), header);
+			reader.dispose();
+		}
+	}
+
+	static void writeFile(File file, ByteBuffer buffer) throws IOException {
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			randomAccessFile.setLength(0);
+			buffer.rewind();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Split a map into tiles
+	 *
+	 * @param 		args		Map image, elevation file, output directory, optional tile size
+	 *
+	 * @throws 		IOException		To handle if an IO exception occurs
+	 */
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 3 && args.length != 4) {
+			System.out.println("Usage: java TiledTerrain <map.png> <elevation> <tile-directory> [tile size]");
+			System.exit(0);
+		}
+		int tileSize = args.length == 4 ? Integer.parseInt(args[3]) : 256;
+		convert(new File(args[0]), new File(args[1]), new File(args[2]), tileSize);
+		TiledTerrain terrain = new TiledTerrain(new File(args[2]));
+		System.out.println("Wrote " + terrain.tilesX * terrain.tilesY + " tiles of " + tileSize + "x" + tileSize
+				+ " for a " + terrain.width + "x" + terrain.height + " map to " + args[2]);
+	}
+
+}
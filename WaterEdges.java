@@ -0,0 +1,174 @@
+/**
+ * Water mask and shoreline of a terrain class raster as bitsets. Every
+ * row starts on a new 64 bit word, so rows are independent and a band of
+ * rows is processed with whole-word shifts, 64 pixels at a time. Bands
+ * of rows are split across threads
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+public class WaterEdges {
+
+	static final int BAND_ROWS = 64;
+
+	int width;
+	int height;
+	int wordsPerRow;
+	long[] waterMask;
+	long[] shoreline;
+
+	WaterEdges(int width, int height) {
+		this.width = width;
+		this.height = height;
+		wordsPerRow = (width + 63) >>> 6;
+		waterMask = new long[wordsPerRow * height];
+		shoreline = new long[wordsPerRow * height];
+	}
+
+	/**
+	 * Find the pixels that are not water but have water as one of their four neighbors
+	 *
+	 * @param 		terrainClass		Terrain class raster, row by row
+	 *
+	 * @param 		width				Width of the raster
+	 *
+	 * @param 		height				Height of the raster
+	 *
+	 * @param 		parallelism			Number of threads, 1 to stay on the calling thread
+	 *
+	 * @return							Water mask and shoreline of the raster
+	 */
+
+	public static WaterEdges find(byte[] terrainClass, int width, int height, int parallelism) {
+		WaterEdges waterEdges = new WaterEdges(width, height);
+		int bandRows = Math.max(BAND_ROWS, (height + parallelism - 1) / Math.max(1, parallelism));
+		if(parallelism <= 1 || height <= bandRows) {
+			waterEdges.maskRows(terrainClass, 0, height);
+			waterEdges.shoreRows(0, height);
+			return waterEdges;
+		}
+
+		ForkJoinPool bandPool = new ForkJoinPool(parallelism);
+		try {
+			List<Callable<Void>> maskBands = new ArrayList<Callable<Void>>();
+			List<Callable<Void>> shoreBands = new ArrayList<Callable<Void>>();
+			for(int firstRow = 0; firstRow < height; firstRow += bandRows) {
+				int from = firstRow;
+				int to = Math.min(height, firstRow + bandRows);
+				maskBands.add(() -> {
+					waterEdges.maskRows(terrainClass, from, to);
+					return null;
+				});
+				shoreBands.add(() -> {
+					waterEdges.shoreRows(from, to);
+					return null;
+				});
+			}
+			Path.invokeAll(bandPool, maskBands, "finding the water edges");
+			Path.invokeAll(bandPool, shoreBands, "finding the water edges");
+		}finally {
+			bandPool.shutdown();
+		}
+		return waterEdges;
+	}
+
+	/**
+	 * Set the water bits of a band of rows
+	 */
+
+	void maskRows(byte[] terrainClass, int fromRow, int toRow) {
+		for(int yCoordinate = fromRow; yCoordinate < toRow; yCoordinate++) {
+			RasterKernels.kernels.maskWater(terrainClass, yCoordinate * width, width, waterMask, yCoordinate * wordsPerRow);
+		}
+	}
+
+	/**
+	 * Set the shoreline bits of a band of rows from the water mask. A pixel
+	 * is on the shoreline if it is dry and the pixel left, right, above or
+	 * below it is water
+	 */
+
+	void shoreRows(int fromRow, int toRow) {
+		long lastWordMask = (width & 63) == 0 ? -1L : (1L << width) - 1;
+		for(int yCoordinate = fromRow; yCoordinate < toRow; yCoordinate++) {
+			int rowWord = yCoordinate * wordsPerRow;
+			for(int word = 0; word < wordsPerRow; word++) {
+				long water = waterMask[rowWord + word];
+				long previous = word > 0 ? waterMask[rowWord + word - 1] : 0;
+				long next = word < wordsPerRow - 1 ? waterMask[rowWord + word + 1] : 0;
+				long neighborWater = (water << 1) | (previous >>> 63) | (water >>> 1) | (next << 63);
+				if(yCoordinate > 0) {
+					neighborWater |= waterMask[rowWord - wordsPerRow + word];
+				}
+				if(yCoordinate < height - 1) {
+					neighborWater |= waterMask[rowWord + wordsPerRow + word];
+				}
+				long edges = ~water & neighborWater;
+				if(word == wordsPerRow - 1) {
+					edges &= lastWordMask;
+				}
+				shoreline[rowWord + word] = edges;
+			}
+		}
+	}
+
+	/**
+	 * Check whether a pixel is water
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @return						True if the pixel is water
+	 */
+
+	public boolean isWater(int node) {
+		return bit(waterMask, node);
+	}
+
+	/**
+	 * Check whether a pixel is on the shoreline
+	 *
+	 * @param 		node			Node id of the pixel
+	 *
+	 * @return						True if the pixel is a water edge
+	 */
+
+	public boolean isEdge(int node) {
+		return bit(shoreline, node);
+	}
+
+	boolean bit(long[] bits, int node) {
+		int yCoordinate = node / width;
+		int xCoordinate = node - yCoordinate * width;
+		return (bits[yCoordinate * wordsPerRow + (xCoordinate >>> 6)] & (1L << xCoordinate)) != 0;
+	}
+
+	/**
+	 * Node ids of the shoreline row by row
+	 *
+	 * @return						Node ids of the water edges
+	 */
+
+	public int[] nodes() {
+		int edgeCount = 0;
+		for(long word : shoreline) {
+			edgeCount += Long.bitCount(word);
+		}
+		int[] edgeNodes = new int[edgeCount];
+		int index = 0;
+		for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+			for(int word = 0; word < wordsPerRow; word++) {
+				long edges = shoreline[yCoordinate * wordsPerRow + word];
+				while(edges != 0) {
+					edgeNodes[index++] = yCoordinate * width + (word << 6) + Long.numberOfTrailingZeros(edges);
+					edges &= edges - 1;
+				}
+			}
+		}
+		return edgeNodes;
+	}
+
+}
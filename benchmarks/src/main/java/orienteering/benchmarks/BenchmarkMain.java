@@ -0,0 +1,33 @@
+package orienteering.benchmarks;
+
+/**
+ * Runs the benchmarks with the GC profiler, so every result also reports
+ * the allocation rate and the bytes allocated per operation. Takes the
+ * usual JMH command line options
+ *
+ * When the jar was built with the vector profile, the forked JVMs get the
+ * incubator module so the solver uses the Vector API raster kernels
+ *
+ */
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		ChainedOptionsBuilder builder = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class);
+		if(BenchmarkMain.class.getClassLoader().getResource("RasterVectorKernels.class") != null) {
+			builder.jvmArgsPrepend("--add-modules=jdk.incubator.vector");
+		}
+		Options options = builder.build();
+		new Runner(options).run();
+	}
+
+}
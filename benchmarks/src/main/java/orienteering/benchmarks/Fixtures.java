@@ -0,0 +1,261 @@
+package orienteering.benchmarks;
+
+/**
+ * Deterministic synthetic maps in the formats of the project: a PNG with
+ * the map colors, a text elevation file with a few more values per line
+ * than the map is wide, its binary form and a course file. The same size
+ * and seed always produce the same files, so runs can be compared
+ *
+ */
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+final class Fixtures {
+
+	static final int OPEN_LAND = 0xF89412;
+	static final int ROUGH_MEADOW = 0xFFC000;
+	static final int EASY_MOVEMENT_FOREST = 0xFFFFFF;
+	static final int SLOW_RUN_FOREST = 0x02D03C;
+	static final int WALK_FOREST = 0x028828;
+	static final int IMPASSIBLE_VEGETATION = 0x054918;
+	static final int WATER = 0x0000FF;
+	static final int PAVED_ROAD = 0x473303;
+	static final int FOOT_PATH = 0x000000;
+	static final int OUT_OF_BOUNDS = 0xCD0065;
+
+	static final long SEED = 20231017L;
+	static final int VERSION = 2;
+	static final int EXTRA_COLUMNS = 5;
+	static final int BORDER = 3;
+
+	final int width;
+	final int height;
+	final File mapFile;
+	final File textElevationFile;
+	final File binaryElevationFile;
+	final File courseFile;
+
+	/**
+	 * Sizes used by the benchmarks, the first one is the size of the sample maps
+	 *
+	 * @param 		size			"sample" for 395x500, "large" for 1600x1600
+	 *
+	 * @return						Width and height
+	 */
+
+	static int[] dimensions(String size) {
+		switch(size) {
+			case "sample":
+				return new int[] {395, 500};
+			case "large":
+				return new int[] {1600, 1600};
+			default:
+				throw new IllegalArgumentException("Unknown fixture size: " + size);
+		}
+	}
+
+	/**
+	 * Write the fixture files of a size, or reuse them if an earlier fork wrote them
+	 *
+	 * @param 		size			Fixture size
+	 *
+	 * @return						Fixture files
+	 */
+
+	static Fixtures create(String size) throws Throwable {
+		int[] dimensions = dimensions(size);
+		File directory = new File(System.getProperty("java.io.tmpdir"), "orienteering-fixtures-" + SEED + "-v" + VERSION + "-" + size);
+		Fixtures fixtures = new Fixtures(directory, dimensions[0], dimensions[1]);
+		if(!fixtures.courseFile.exists()) {
+			directory.mkdirs();
+			fixtures.write();
+		}
+		return fixtures;
+	}
+
+	Fixtures(File directory, int width, int height) {
+		this.width = width;
+		this.height = height;
+		mapFile = new File(directory, "terrain.png");
+		textElevationFile = new File(directory, "mpp.txt");
+		binaryElevationFile = new File(directory, "mpp.bin");
+		courseFile = new File(directory, "course.txt");
+	}
+
+	/**
+	 * Control coordinates of a benchmark leg
+	 *
+	 * @param 		leg				"short", "medium" or "cross" for a leg across the whole map
+	 *
+	 * @return						Start x, start y, destination x, destination y
+	 */
+
+	int[] leg(String leg) {
+		int startX = width / 4;
+		int startY = height / 4;
+		switch(leg) {
+			case "short":
+				return new int[] {startX, startY, startX + 30, startY - 20};
+			case "medium":
+				return new int[] {startX, startY, Math.min(width - BORDER - 4, startX + 200), Math.min(height - BORDER - 4, startY + 150)};
+			case "cross":
+				return new int[] {BORDER + 4, BORDER + 4, width - BORDER - 5, height - BORDER - 5};
+			default:
+				throw new IllegalArgumentException("Unknown leg: " + leg);
+		}
+	}
+
+	void write() throws Throwable {
+		Random random = new Random(SEED);
+		Noise terrainNoise = new Noise(random, 90);
+		Noise forestNoise = new Noise(random, 40);
+		Noise waterNoise = new Noise(random, 120);
+		Noise hills = new Noise(random, 250);
+
+		BufferedImage map = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+			for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+				map.setRGB(xCoordinate, yCoordinate, color(xCoordinate, yCoordinate, terrainNoise, forestNoise, waterNoise));
+			}
+		}
+		for(int road = 0; road < Math.max(2, width / 200); road++) {
+			drawTrail(map, random, PAVED_ROAD);
+			drawTrail(map, random, FOOT_PATH);
+		}
+		for(String leg : new String[] {"short", "medium", "cross"}) {
+			int[] controls = leg(leg);
+			clearControl(map, controls[0], controls[1]);
+			clearControl(map, controls[2], controls[3]);
+		}
+		ImageIO.write(map, "png", mapFile);
+
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(textElevationFile))) {
+			for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+				StringBuilder line = new StringBuilder();
+				for(int xCoordinate = 0; xCoordinate < width + EXTRA_COLUMNS; xCoordinate++) {
+					double elevation = 250 + 40 * hills.value(xCoordinate, yCoordinate) + 0.25 * Math.sin(xCoordinate * 0.7 + yCoordinate * 0.3);
+					line.append(String.format(Locale.ROOT, "   %.16e", elevation));
+				}
+				writer.write(line.toString());
+				writer.newLine();
+			}
+		}
+		PathHandles.convertElevation(textElevationFile.getPath(), binaryElevationFile.getPath(), width, height);
+
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(courseFile))) {
+			for(String leg : new String[] {"short", "medium", "cross"}) {
+				int[] controls = leg(leg);
+				writer.write(controls[0] + " " + controls[1]);
+				writer.newLine();
+				writer.write(controls[2] + " " + controls[3]);
+				writer.newLine();
+			}
+		}
+	}
+
+	int color(int xCoordinate, int yCoordinate, Noise terrainNoise, Noise forestNoise, Noise waterNoise) {
+		if(xCoordinate < BORDER || yCoordinate < BORDER || xCoordinate >= width - BORDER || yCoordinate >= height - BORDER) {
+			return OUT_OF_BOUNDS;
+		}
+		if(waterNoise.value(xCoordinate, yCoordinate) > 0.55) {
+			return WATER;
+		}
+		double terrain = terrainNoise.value(xCoordinate, yCoordinate);
+		if(terrain < -0.35) {
+			return OPEN_LAND;
+		}
+		if(terrain < -0.1) {
+			return ROUGH_MEADOW;
+		}
+		double forest = forestNoise.value(xCoordinate, yCoordinate);
+		if(forest > 0.6) {
+			return IMPASSIBLE_VEGETATION;
+		}
+		if(forest > 0.25) {
+			return WALK_FOREST;
+		}
+		if(forest > -0.2) {
+			return SLOW_RUN_FOREST;
+		}
+		return EASY_MOVEMENT_FOREST;
+	}
+
+	/**
+	 * Draw a trail between two random points of the border region
+	 */
+
+	void drawTrail(BufferedImage map, Random random, int color) {
+		double xCoordinate = BORDER + random.nextInt(width - 2 * BORDER);
+		double yCoordinate = BORDER;
+		double heading = Math.PI / 2 + (random.nextDouble() - 0.5);
+		while(xCoordinate >= BORDER && xCoordinate < width - BORDER && yCoordinate >= BORDER && yCoordinate < height - BORDER) {
+			map.setRGB((int) xCoordinate, (int) yCoordinate, color);
+			heading += (random.nextDouble() - 0.5) * 0.2;
+			xCoordinate += Math.cos(heading) * 0.7;
+			yCoordinate += Math.sin(heading) * 0.7;
+		}
+	}
+
+	/**
+	 * Put a control on open land so every leg has a reachable start and destination
+	 */
+
+	void clearControl(BufferedImage map, int xCoordinate, int yCoordinate) {
+		for(int offsetY = -2; offsetY <= 2; offsetY++) {
+			for(int offsetX = -2; offsetX <= 2; offsetX++) {
+				map.setRGB(xCoordinate + offsetX, yCoordinate + offsetY, OPEN_LAND);
+			}
+		}
+	}
+
+	/**
+	 * Smooth value noise in [-1, 1] from a seeded lattice
+	 *
+	 */
+
+	static final class Noise {
+
+		final double[] lattice = new double[256 * 256];
+		final double scale;
+
+		Noise(Random random, double scale) {
+			this.scale = scale;
+			for(int index = 0; index < lattice.length; index++) {
+				lattice[index] = random.nextDouble() * 2 - 1;
+			}
+		}
+
+		double value(int xCoordinate, int yCoordinate) {
+			double x = xCoordinate / scale;
+			double y = yCoordinate / scale;
+			int cellX = (int) Math.floor(x);
+			int cellY = (int) Math.floor(y);
+			double fractionX = smooth(x - cellX);
+			double fractionY = smooth(y - cellY);
+			double top = lerp(corner(cellX, cellY), corner(cellX + 1, cellY), fractionX);
+			double bottom = lerp(corner(cellX, cellY + 1), corner(cellX + 1, cellY + 1), fractionX);
+			return lerp(top, bottom, fractionY);
+		}
+
+		double corner(int cellX, int cellY) {
+			return lattice[((cellY & 255) << 8) | (cellX & 255)];
+		}
+
+		static double smooth(double fraction) {
+			return fraction * fraction * (3 - 2 * fraction);
+		}
+
+		static double lerp(double from, double to, double fraction) {
+			return from + (to - from) * fraction;
+		}
+
+	}
+
+}
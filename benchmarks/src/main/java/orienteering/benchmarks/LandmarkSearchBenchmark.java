@@ -0,0 +1,63 @@
+package orienteering.benchmarks;
+
+/**
+ * Route search guided by landmark tables. The fork runs with
+ * -Dpath.landmarks, so every season map loads its tables next to the fixture
+ * map, building them on the first trial. Compare with SearchBenchmark for the
+ * same size, season and leg
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dpath.landmarks=8")
+public class LandmarkSearchBenchmark {
+
+	@Param({"sample", "large"})
+	public String size;
+
+	@Param({"summer", "fall", "winter", "spring"})
+	public String season;
+
+	@Param({"short", "medium", "cross"})
+	public String leg;
+
+	Object seasonMap;
+	int[] controls;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		Fixtures fixtures = Fixtures.create(size);
+		Object path = PathHandles.load(fixtures.mapFile.getPath(), fixtures.binaryElevationFile.getPath());
+		seasonMap = PathHandles.forSeason(path, season);
+		controls = fixtures.leg(leg);
+	}
+
+	@Benchmark
+	public int[] aStarSearch() throws Throwable {
+		return (int[]) PathHandles.A_STAR_SEARCH.invokeExact(seasonMap, controls[0], controls[1], controls[2], controls[3], season);
+	}
+
+	@Benchmark
+	public int[] bidirectionalSearch() throws Throwable {
+		return (int[]) PathHandles.BIDIRECTIONAL_SEARCH.invokeExact(seasonMap, controls[0], controls[1], controls[2], controls[3]);
+	}
+
+}
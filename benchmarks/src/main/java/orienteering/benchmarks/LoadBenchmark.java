@@ -0,0 +1,62 @@
+package orienteering.benchmarks;
+
+/**
+ * Loading a map: decoding and classifying the map image, and reading the
+ * elevation from the text file or memory-mapping the binary file
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+	@Param({"sample", "large"})
+	public String size;
+
+	@Param({"text", "binary"})
+	public String elevationFormat;
+
+	Fixtures fixtures;
+	Object path;
+	String elevationPath;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		fixtures = Fixtures.create(size);
+		elevationPath = elevationFormat.equals("text") ? fixtures.textElevationFile.getPath() : fixtures.binaryElevationFile.getPath();
+		path = PathHandles.newPath();
+		PathHandles.READ_MAP.invokeExact(path, fixtures.mapFile.getPath());
+	}
+
+	@Benchmark
+	public Object readMap() throws Throwable {
+		Object loadedPath = PathHandles.newPath();
+		PathHandles.READ_MAP.invokeExact(loadedPath, fixtures.mapFile.getPath());
+		return loadedPath;
+	}
+
+	@Benchmark
+	public Object fileLoad() throws Throwable {
+		PathHandles.FILE_LOAD.invokeExact(path, elevationPath);
+		return path;
+	}
+
+}
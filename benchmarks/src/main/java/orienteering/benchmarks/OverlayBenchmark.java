@@ -0,0 +1,59 @@
+package orienteering.benchmarks;
+
+/**
+ * Season preprocessing: finding the water edges and spreading the spring
+ * mud and winter ice from them
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OverlayBenchmark {
+
+	@Param({"sample", "large"})
+	public String size;
+
+	Object path;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		Fixtures fixtures = Fixtures.create(size);
+		path = PathHandles.load(fixtures.mapFile.getPath(), fixtures.binaryElevationFile.getPath());
+		PathHandles.GET_WATER_EDGES.invokeExact(path);
+	}
+
+	@Benchmark
+	public Object getWaterEdges() throws Throwable {
+		PathHandles.GET_WATER_EDGES.invokeExact(path);
+		return path;
+	}
+
+	@Benchmark
+	public Object getSpringBFS() throws Throwable {
+		return (Object) PathHandles.GET_SPRING_BFS.invokeExact(path);
+	}
+
+	@Benchmark
+	public Object getWinterBFS() throws Throwable {
+		return (Object) PathHandles.GET_WINTER_BFS.invokeExact(path);
+	}
+
+}
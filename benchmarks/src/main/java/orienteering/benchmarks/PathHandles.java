@@ -0,0 +1,115 @@
+package orienteering.benchmarks;
+
+/**
+ * Method handles to the solver classes. The solver lives in the default
+ * package, which cannot be imported from a named package, and JMH only
+ * accepts benchmarks in a named package. The handles are resolved once
+ * and called with invokeExact, so the JIT inlines them like direct calls
+ *
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+final class PathHandles {
+
+	static final Class<?> PATH = solverClass("Path");
+	static final Class<?> ELEVATION_FILE = solverClass("ElevationFile");
+
+	static final MethodHandle NEW_PATH = constructor(PATH);
+	static final MethodHandle READ_MAP = method(PATH, "readMap", void.class, String.class);
+	static final MethodHandle FILE_LOAD = method(PATH, "fileLoad", void.class, String.class);
+	static final MethodHandle FOR_SEASON = method(PATH, "forSeason", PATH, String.class);
+	static final MethodHandle GET_WATER_EDGES = method(PATH, "getWaterEdges", void.class);
+	static final MethodHandle GET_SPRING_BFS = method(PATH, "getSpringBFS", solverClass("SeasonOverlay"));
+	static final MethodHandle GET_WINTER_BFS = method(PATH, "getWinterBFS", solverClass("SeasonOverlay"));
+	static final MethodHandle GET_COLOR_TIME = method(PATH, "getColorTime", double.class,
+			int.class, int.class, int.class, int.class, int.class, double[].class);
+	static final MethodHandle A_STAR_SEARCH = method(PATH, "aStarSearch", int[].class,
+			int.class, int.class, int.class, int.class, String.class);
+	static final MethodHandle BIDIRECTIONAL_SEARCH = method(PATH, "bidirectionalSearch", int[].class,
+			int.class, int.class, int.class, int.class);
+	static final MethodHandle HIERARCHICAL_SEARCH = method(PATH, "hierarchicalSearch", int[].class,
+			int.class, int.class, int.class, int.class);
+	static final MethodHandle GET_CLUSTER_GRAPH = method(PATH, "getClusterGraph", solverClass("ClusterGraph"));
+	static final MethodHandle PYRAMID_SEARCH = method(PATH, "pyramidSearch", int[].class,
+			int.class, int.class, int.class, int.class);
+	static final MethodHandle GET_SEARCH_PYRAMID = method(PATH, "getSearchPyramid", solverClass("SearchPyramid"));
+	static final MethodHandle ELEVATION_MAIN = staticMethod(ELEVATION_FILE, "main", void.class, String[].class);
+
+	private PathHandles() {
+	}
+
+	static Object newPath() throws Throwable {
+		return (Object) NEW_PATH.invokeExact();
+	}
+
+	/**
+	 * Read a map and its elevation into a new solver
+	 *
+	 * @param 		mapPath				Map image
+	 *
+	 * @param 		elevationPath		Text or binary elevation file
+	 *
+	 * @return							Loaded solver
+	 */
+
+	static Object load(String mapPath, String elevationPath) throws Throwable {
+		Object path = newPath();
+		READ_MAP.invokeExact(path, mapPath);
+		FILE_LOAD.invokeExact(path, elevationPath);
+		return path;
+	}
+
+	static Object forSeason(Object path, String weather) throws Throwable {
+		return (Object) FOR_SEASON.invokeExact(path, weather);
+	}
+
+	static void convertElevation(String textPath, String binaryPath, int width, int height) throws Throwable {
+		ELEVATION_MAIN.invokeExact(new String[] {textPath, binaryPath, Integer.toString(width), Integer.toString(height)});
+	}
+
+	static Class<?> solverClass(String name) {
+		try {
+			return Class.forName(name);
+		}catch(ClassNotFoundException exception) {
+			throw new IllegalStateException("Solver class " + name + " is not on the class path", exception);
+		}
+	}
+
+	static MethodHandle constructor(Class<?> owner) {
+		try {
+			return MethodHandles.publicLookup().findConstructor(owner, MethodType.methodType(void.class))
+					.asType(MethodType.methodType(Object.class));
+		}catch(ReflectiveOperationException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	/**
+	 * Instance method with the receiver and any solver return type widened to Object
+	 */
+
+	static MethodHandle method(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+		try {
+			MethodHandle handle = MethodHandles.publicLookup().findVirtual(owner, name, MethodType.methodType(returnType, parameterTypes));
+			MethodType erased = handle.type().changeParameterType(0, Object.class);
+			if(!returnType.isPrimitive() && !returnType.isArray()) {
+				erased = erased.changeReturnType(Object.class);
+			}
+			return handle.asType(erased);
+		}catch(ReflectiveOperationException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	static MethodHandle staticMethod(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+		try {
+			return MethodHandles.publicLookup().findStatic(owner, name, MethodType.methodType(returnType, parameterTypes));
+		}catch(ReflectiveOperationException exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+}
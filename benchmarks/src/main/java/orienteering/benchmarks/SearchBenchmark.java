@@ -0,0 +1,76 @@
+package orienteering.benchmarks;
+
+/**
+ * Route search for every season over a short, a medium and a cross-map leg,
+ * from the start only, from both controls at once, over the cluster graph
+ * and coarse-to-fine over the search pyramid of the season. The graph and
+ * the pyramid are built once in the setup like a resident map would keep
+ * them
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+	@Param({"sample", "large"})
+	public String size;
+
+	@Param({"summer", "fall", "winter", "spring"})
+	public String season;
+
+	@Param({"short", "medium", "cross"})
+	public String leg;
+
+	Object seasonMap;
+	int[] controls;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		Fixtures fixtures = Fixtures.create(size);
+		Object path = PathHandles.load(fixtures.mapFile.getPath(), fixtures.binaryElevationFile.getPath());
+		seasonMap = PathHandles.forSeason(path, season);
+		controls = fixtures.leg(leg);
+		Object clusterGraph = (Object) PathHandles.GET_CLUSTER_GRAPH.invokeExact(seasonMap);
+		Object searchPyramid = (Object) PathHandles.GET_SEARCH_PYRAMID.invokeExact(seasonMap);
+	}
+
+	@Benchmark
+	public int[] aStarSearch() throws Throwable {
+		return (int[]) PathHandles.A_STAR_SEARCH.invokeExact(seasonMap, controls[0], controls[1], controls[2], controls[3], season);
+	}
+
+	@Benchmark
+	public int[] bidirectionalSearch() throws Throwable {
+		return (int[]) PathHandles.BIDIRECTIONAL_SEARCH.invokeExact(seasonMap, controls[0], controls[1], controls[2], controls[3]);
+	}
+
+	@Benchmark
+	public int[] hierarchicalSearch() throws Throwable {
+		return (int[]) PathHandles.HIERARCHICAL_SEARCH.invokeExact(seasonMap, controls[0], controls[1], controls[2], controls[3]);
+	}
+
+	@Benchmark
+	public int[] pyramidSearch() throws Throwable {
+		return (int[]) PathHandles.PYRAMID_SEARCH.invokeExact(seasonMap, controls[0], controls[1], controls[2], controls[3]);
+	}
+
+}
@@ -0,0 +1,78 @@
+package orienteering.benchmarks;
+
+/**
+ * Step cost that the search evaluates for every neighbor it looks at,
+ * measured per call over a fixed set of random steps
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StepCostBenchmark {
+
+	static final int STEPS = 4096;
+
+	@Param({"sample"})
+	public String size;
+
+	@Param({"summer", "fall", "winter", "spring"})
+	public String season;
+
+	Object seasonMap;
+	int[] steps;
+	double[] gValue;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		Fixtures fixtures = Fixtures.create(size);
+		Object path = PathHandles.load(fixtures.mapFile.getPath(), fixtures.binaryElevationFile.getPath());
+		seasonMap = PathHandles.forSeason(path, season);
+
+		Random random = new Random(Fixtures.SEED);
+		steps = new int[STEPS * 5];
+		for(int step = 0; step < STEPS; step++) {
+			int xCoordinate = 1 + random.nextInt(fixtures.width - 2);
+			int yCoordinate = 1 + random.nextInt(fixtures.height - 2);
+			int direction = random.nextInt(4);
+			steps[step * 5] = xCoordinate;
+			steps[step * 5 + 1] = yCoordinate;
+			steps[step * 5 + 2] = xCoordinate + (direction == 0 ? 1 : direction == 1 ? -1 : 0);
+			steps[step * 5 + 3] = yCoordinate + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+			steps[step * 5 + 4] = 2 * direction;
+		}
+		gValue = new double[fixtures.width * fixtures.height];
+		Arrays.fill(gValue, 1000.0);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STEPS)
+	public void getColorTime(Blackhole blackhole) throws Throwable {
+		for(int step = 0; step < STEPS * 5; step += 5) {
+			blackhole.consume((double) PathHandles.GET_COLOR_TIME.invokeExact(seasonMap,
+					steps[step], steps[step + 1], steps[step + 2], steps[step + 3], steps[step + 4], gValue));
+		}
+	}
+
+}
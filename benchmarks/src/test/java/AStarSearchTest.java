@@ -0,0 +1,64 @@
+/**
+ * Leg times and path lengths of aStarSearch against the original search
+ * of the program on the same map, before its state moved to node-id arrays
+ * and the indexed heap. Ties between equal f values may break the other
+ * way now, so in general only the times are kept; on this map the routes
+ * are still the same, and the total length of the legs of every season,
+ * which getPathLength prints, is compared too. The map has the 395x500
+ * size the original search was fixed to
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AStarSearchTest {
+
+	static final double[][] BASELINE_TIMES = {
+			{18.613007224034327, 20.444144642051516, 33.444294239691004, 17.857877066891664, 22.24170624780261},
+			{18.613007224034327, 20.444144642051516, 33.444294239691004, 20.16977659226061, 23.858395136087626},
+			{18.613007224034327, 20.444144642051516, 33.59061032613483, 17.857877066891664, 22.24170624780261},
+			{21.25479823613463, 21.183940164774967, 47.518516158662244, 26.08230884373231, 25.699646736315046}};
+
+	static final double[] BASELINE_PATH_LENGTHS = {6503.553101982314, 6503.542697769408, 6503.56633555531, 7038.972733540329};
+
+	@TempDir
+	static File directory;
+
+	static Path map;
+
+	@BeforeAll
+	static void loadMap() throws IOException {
+		map = TestMaps.legMap(directory);
+	}
+
+	@Test
+	void legsMatchTheOriginalSearch() {
+		for(int season = 0; season < Path.seasons.length; season++) {
+			Path seasonMap = map.forSeason(Path.seasons[season]);
+			double pathLength = 0;
+			for(int leg = 0; leg < TestMaps.LEGS.length; leg++) {
+				int[] controls = TestMaps.LEGS[leg];
+				int[] legCoordinates = seasonMap.aStarSearch(controls[0], controls[1], controls[2], controls[3], Path.seasons[season]);
+				assertEquals(BASELINE_TIMES[season][leg], seasonMap.getLegTime(legCoordinates, controls[0], controls[1]), 1e-9,
+						Path.seasons[season] + " leg " + leg);
+				List<Integer> pathCoordinates = new ArrayList<Integer>();
+				for(int coordinate : legCoordinates) {
+					pathCoordinates.add(coordinate);
+				}
+				pathCoordinates.add(controls[0]);
+				pathCoordinates.add(controls[1]);
+				pathLength += seasonMap.getPathLength(pathCoordinates);
+			}
+			assertEquals(BASELINE_PATH_LENGTHS[season], pathLength, 1e-9, Path.seasons[season] + " path length");
+		}
+	}
+
+}
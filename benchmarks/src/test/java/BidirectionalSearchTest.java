@@ -0,0 +1,54 @@
+/**
+ * Bidirectional search against the exact fastest times of a map. The two
+ * searches score steps with the same function as getLegTime, so the time
+ * the search reports is the time of the route it returns, and that time is
+ * the one a full search from the start gives the destination. The map and
+ * legs are the ones of TestMaps.legMap
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BidirectionalSearchTest {
+
+	@TempDir
+	static File directory;
+
+	static Path map;
+
+	@BeforeAll
+	static void loadMap() throws IOException {
+		map = TestMaps.legMap(directory);
+	}
+
+	@Test
+	void legTimesAreTheFastestTimes() {
+		for(String season : Path.seasons) {
+			Path seasonMap = map.forSeason(season);
+			for(int[] controls : TestMaps.LEGS) {
+				int startNode = controls[1] * seasonMap.mapWidth + controls[0];
+				int destinationNode = controls[3] * seasonMap.mapWidth + controls[2];
+				double fastestTime = LandmarkTable.getTimes(seasonMap, startNode, false)[destinationNode];
+
+				BidirectionalSearch search = new BidirectionalSearch(seasonMap);
+				int[] legCoordinates = search.search(controls[0], controls[1], controls[2], controls[3]);
+				double legTime = seasonMap.getLegTime(legCoordinates, controls[0], controls[1]);
+				double aStarTime = seasonMap.getLegTime(seasonMap.aStarSearch(controls[0], controls[1], controls[2], controls[3], season),
+						controls[0], controls[1]);
+
+				String leg = season + " leg from " + controls[0] + "," + controls[1];
+				assertEquals(search.pathTime, legTime, 1e-9, leg);
+				assertEquals(fastestTime, legTime, 1e-4 * fastestTime, leg);
+				assertTrue(legTime <= aStarTime + 1e-9, leg + " slower than aStarSearch");
+			}
+		}
+	}
+
+}
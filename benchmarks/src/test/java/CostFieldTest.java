@@ -0,0 +1,56 @@
+/**
+ * Walks down a cost field whose float32 times have a plateau, two
+ * neighboring pixels of a route with the same rounded time, and a field
+ * written to its file and read back
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CostFieldTest {
+
+	@TempDir
+	File directory;
+
+	@Test
+	void walkCrossesPixelsWithTheSameTime() throws IOException {
+		TestMaps terrain = new TestMaps(20, 5);
+		for(double[] row : terrain.elevation) {
+			Arrays.fill(row, 100);
+		}
+		Path map = terrain.load(directory).forSeason("summer");
+		CostField costField = CostField.forControl(map, "summer", 18, 2, null);
+		int plateauNode = 2 * map.mapWidth + 10;
+		costField.time[plateauNode] = costField.time[plateauNode + 1];
+
+		int[] legCoordinates = costField.walk(map, 1, 2);
+		assertEquals(2 * 18, legCoordinates.length);
+		assertEquals(18, legCoordinates[0]);
+		assertEquals(2, legCoordinates[1]);
+		for(int index = 1; index < legCoordinates.length; index += 2) {
+			assertEquals(2, legCoordinates[index], "walk leaves the straight row");
+		}
+	}
+
+	@Test
+	void fieldFileIsReadBackWithoutTemporaryFiles() throws IOException {
+		TestMaps terrain = TestMaps.terrain(60, 40, 5L);
+		terrain.clearControl(30, 20);
+		Path map = terrain.load(directory).forSeason("winter");
+		File fieldDirectory = new File(directory, "fields");
+
+		CostField written = CostField.forControl(map, "winter", 30, 20, fieldDirectory);
+		CostField read = CostField.read(new File(fieldDirectory, "terrain.png.winter.30_20.field"));
+		assertArrayEquals(written.time, read.time);
+		assertEquals(written.contentHash, read.contentHash);
+		assertEquals(1, fieldDirectory.list().length);
+	}
+
+}
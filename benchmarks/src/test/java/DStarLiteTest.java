@@ -0,0 +1,114 @@
+/**
+ * Legs repaired by D* Lite after terrain changes against a full search of
+ * the changed map. The repaired time of a leg has to be the fastest time
+ * Dijkstra's algorithm finds from its start, for a closure on the route,
+ * the closure opened again and a change that cuts the destination off. A
+ * repair near the start only touches the part of the search the change
+ * reached, so it expands far fewer pixels than a new search of the leg
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DStarLiteTest {
+
+	static final int X1 = 20;
+	static final int Y1 = 20;
+	static final int X2 = 140;
+	static final int Y2 = 130;
+
+	@TempDir
+	File directory;
+
+	@Test
+	void repairedLegsMatchAFullSearch() throws IOException {
+		TestMaps terrain = TestMaps.terrain(160, 150, 7L);
+		terrain.clearControl(X1, Y1);
+		terrain.clearControl(X2, Y2);
+		Path map = terrain.load(directory).forSeason("summer");
+		CoursePlanner planner = new CoursePlanner(map, Arrays.asList(X1, Y1, X2, Y2));
+		DStarLite legSearch = planner.legSearches.get(0);
+		int[] legCoordinates = planner.solveLegs().get(0);
+		assertLegIsFastest(map, legSearch, legCoordinates);
+		double openTime = legSearch.pathTime;
+
+		int[] closure = getSquare(map, legCoordinates[legCoordinates.length - 40], legCoordinates[legCoordinates.length - 39], 2, false);
+		long expandedNodes = legSearch.expandedNodes;
+		legCoordinates = planner.changeTerrain(closure, TerrainClass.IMPASSIBLE_VEGETATION).get(0);
+		assertLegIsFastest(map, legSearch, legCoordinates);
+		assertTrue(legSearch.pathTime > openTime, "closure did not slow the leg");
+		assertRepairIsSmall(map, legSearch.expandedNodes - expandedNodes, "closure");
+		for(int index = 0; index < legCoordinates.length; index += 2) {
+			int node = legCoordinates[index + 1] * map.mapWidth + legCoordinates[index];
+			assertTrue(Arrays.stream(closure).noneMatch(closed -> closed == node), "route crosses the closure");
+		}
+
+		expandedNodes = legSearch.expandedNodes;
+		legCoordinates = planner.changeTerrain(closure, TerrainClass.OPEN_LAND).get(0);
+		assertLegIsFastest(map, legSearch, legCoordinates);
+		assertTrue(legSearch.pathTime <= openTime + 1e-9, "opened closure is slower than before");
+		assertRepairIsSmall(map, legSearch.expandedNodes - expandedNodes, "opened closure");
+
+		int[] ring = getSquare(map, X2, Y2, 3, true);
+		legCoordinates = planner.changeTerrain(ring, TerrainClass.WATER).get(0);
+		assertEquals(0, legCoordinates.length);
+		assertLegIsFastest(map, legSearch, legCoordinates);
+	}
+
+	/**
+	 * The leg and the time the search reports against Dijkstra's algorithm
+	 * run from the start on the map as it is now
+	 */
+
+	static void assertLegIsFastest(Path map, DStarLite legSearch, int[] legCoordinates) {
+		double fastestTime = LandmarkTable.getTimes(map, legSearch.startNode, false)[legSearch.destinationNode];
+		if(fastestTime == Double.POSITIVE_INFINITY) {
+			assertEquals(Double.POSITIVE_INFINITY, legSearch.pathTime);
+			return;
+		}
+		assertEquals(fastestTime, legSearch.pathTime, 1e-6 * fastestTime);
+		assertEquals(legSearch.pathTime, map.getLegTime(legCoordinates, X1, Y1), 1e-9);
+	}
+
+	/**
+	 * Repair of a leg against a new search of the same leg on the changed map
+	 */
+
+	static void assertRepairIsSmall(Path map, long repairedNodes, String change) {
+		DStarLite freshSearch = new DStarLite(map, X1, Y1, X2, Y2);
+		freshSearch.search();
+		assertTrue(repairedNodes > 0, change + " was not repaired");
+		assertTrue(4 * repairedNodes < freshSearch.expandedNodes,
+				change + " repaired " + repairedNodes + " pixels, a new search expands " + freshSearch.expandedNodes);
+	}
+
+	/**
+	 * Pixels of a square, all of it or only its border
+	 */
+
+	static int[] getSquare(Path map, int xCoordinate, int yCoordinate, int radius, boolean border) {
+		List<Integer> nodes = new ArrayList<Integer>();
+		for(int y = yCoordinate - radius; y <= yCoordinate + radius; y++) {
+			for(int x = xCoordinate - radius; x <= xCoordinate + radius; x++) {
+				if(!border || Math.max(Math.abs(x - xCoordinate), Math.abs(y - yCoordinate)) == radius) {
+					nodes.add(y * map.mapWidth + x);
+				}
+			}
+		}
+		int[] square = new int[nodes.size()];
+		for(int index = 0; index < square.length; index++) {
+			square[index] = nodes.get(index);
+		}
+		return square;
+	}
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Binary elevation files read back in bands of a few rows, so the rows
+ * cross the band boundaries the way they do in files above 2 GiB. Both
+ * storage widths give back the values of the text file, and a header with
+ * any other width is rejected
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Scanner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ElevationFileTest {
+
+	static final int WIDTH = 37;
+	static final int HEIGHT = 29;
+
+	@TempDir
+	File directory;
+
+	long bandBytes = ElevationFile.bandBytes;
+
+	@AfterEach
+	void restoreBands() {
+		ElevationFile.bandBytes = bandBytes;
+	}
+
+	@Test
+	void float64RowsCrossBands() throws IOException {
+		TestMaps terrain = TestMaps.terrain(WIDTH, HEIGHT, 3L);
+		assertReadInBands(terrain, 8);
+	}
+
+	@Test
+	void float32RowsCrossBands() throws IOException {
+		TestMaps terrain = new TestMaps(WIDTH, HEIGHT);
+		for(int yCoordinate = 0; yCoordinate < HEIGHT; yCoordinate++) {
+			for(int xCoordinate = 0; xCoordinate < WIDTH; xCoordinate++) {
+				terrain.elevation[yCoordinate][xCoordinate] = 200 + (xCoordinate * 3 + yCoordinate * 5) % 17 * 0.25;
+			}
+		}
+		assertReadInBands(terrain, 4);
+	}
+
+	@Test
+	void otherValueWidthsAreRejected() throws IOException {
+		File binaryFile = new File(directory, "mpp.bin");
+		int valueBytes = 2;
+		try(RandomAccessFile output = new RandomAccessFile(binaryFile, "rw")) {
+			ByteBuffer header = ByteBuffer.allocate(ElevationFile.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(ElevationFile.MAGIC).putInt(ElevationFile.VERSION).putInt(WIDTH).putInt(HEIGHT).putInt(valueBytes);
+			output.write(header.array());
+			output.setLength(ElevationFile.HEADER_SIZE + (long) WIDTH * HEIGHT * valueBytes);
+		}
+		IOException exception = assertThrows(IOException.class, () -> ElevationFile.readBinary(binaryFile));
+		assertEquals("Elevation values have to be 4 or 8 bytes, not 2: " + binaryFile, exception.getMessage());
+	}
+
+	/**
+	 * Convert the text elevation of a map and read it in bands of five rows
+	 * and a bit, which do not divide the height
+	 */
+
+	void assertReadInBands(TestMaps terrain, int valueBytes) throws IOException {
+		File textFile = new File(directory, "mpp.txt");
+		File binaryFile = new File(directory, "mpp.bin");
+		terrain.write(new File(directory, "terrain.png"), textFile);
+		ElevationFile text;
+		try(Scanner scanner = new Scanner(new FileInputStream(textFile))) {
+			text = ElevationFile.readText(scanner, WIDTH, HEIGHT);
+		}
+		text.writeBinary(binaryFile);
+		assertEquals(ElevationFile.HEADER_SIZE + (long) WIDTH * HEIGHT * valueBytes, binaryFile.length());
+
+		ElevationFile.bandBytes = 5L * WIDTH * valueBytes + 3;
+		ElevationFile binary = ElevationFile.readBinary(binaryFile);
+		assertEquals(text.baseElevation, binary.baseElevation);
+		double[] row = new double[WIDTH];
+		try(ElevationFile.RowReader rows = new ElevationFile.RowReader(binaryFile)) {
+			for(int yCoordinate = 0; yCoordinate < HEIGHT; yCoordinate++) {
+				assertArrayEquals(text.elevation[yCoordinate], binary.elevation[yCoordinate], "row " + yCoordinate);
+				rows.next(row);
+				assertArrayEquals(text.elevation[yCoordinate], row, "row " + yCoordinate + " of the row reader");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Hierarchical search against aStarSearch with landmarks, which finds the
+ * fastest route of the map. The hierarchical leg is scored like every
+ * other leg, so its time lies between that fastest time and the time of
+ * the path over the cluster entrances. Inside its corridor the leg has to
+ * be the fastest, so with landmarks it takes the time of a search of the
+ * same corridor guided only by the row and column bound. The map and legs
+ * are the ones of TestMaps.legMap
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HierarchicalSearchTest {
+
+	@TempDir
+	static File directory;
+
+	static Path map;
+
+	@BeforeAll
+	static void loadMap() throws IOException {
+		map = TestMaps.legMap(directory);
+	}
+
+	@Test
+	void legTimesLieBetweenTheFastestAndTheEntranceTimes() {
+		for(String season : Path.seasons) {
+			Path seasonMap = map.forSeason(season);
+			seasonMap.landmarkTable = LandmarkTable.forMap(seasonMap, season, 8);
+			ClusterGraph graph = seasonMap.getClusterGraph();
+			for(int[] controls : TestMaps.LEGS) {
+				HierarchicalSearch search = new HierarchicalSearch(graph);
+				int[] legCoordinates = search.search(controls[0], controls[1], controls[2], controls[3]);
+				double legTime = seasonMap.getLegTime(legCoordinates, controls[0], controls[1]);
+				double fastestTime = seasonMap.getLegTime(seasonMap.aStarSearch(controls[0], controls[1], controls[2], controls[3], season),
+						controls[0], controls[1]);
+
+				String leg = season + " leg from " + controls[0] + "," + controls[1];
+				assertEquals(search.pathTime, legTime, 1e-9, leg);
+				assertTrue(legTime <= search.entrancePathTime + 1e-9, leg + " " + legTime + " over the entrance path " + search.entrancePathTime);
+				assertTrue(legTime >= fastestTime - 1e-9, leg + " " + legTime + " faster than aStarSearch " + fastestTime);
+				assertEquals(getCorridorTime(search), search.pathTime, 1e-9, leg + " is not the fastest in its corridor");
+			}
+		}
+	}
+
+	/**
+	 * Time of the corridor of a search without the landmark tables. The row
+	 * and column bound never decreases by more than a step takes, so a pixel
+	 * is only closed once it was reached the fastest way
+	 */
+
+	static double getCorridorTime(HierarchicalSearch search) {
+		LandmarkTable landmarkTable = search.map.landmarkTable;
+		HierarchicalSearch boundSearch = new HierarchicalSearch(search.graph);
+		boundSearch.startNode = search.startNode;
+		boundSearch.destinationNode = search.destinationNode;
+		boolean[] corridor = boundSearch.findCorridor();
+		search.map.landmarkTable = null;
+		try {
+			boundSearch.searchCorridor(corridor);
+		}finally {
+			search.map.landmarkTable = landmarkTable;
+		}
+		return boundSearch.pathTime;
+	}
+
+}
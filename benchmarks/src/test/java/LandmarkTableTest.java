@@ -0,0 +1,126 @@
+/**
+ * A Star with and without landmarks on maps with a trail down the first
+ * or second column of pixels. Steps on the border columns are scored on
+ * their true axis like everywhere else, so the landmark and axis bounds
+ * never overestimate the time A Star gives a route, and a start on the
+ * border column does not make the column look faster than the trail.
+ * Plain A Star is guided by an inflated straight line heuristic, so it is
+ * only held to the landmark time where the route has no choice
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LandmarkTableTest {
+
+	@TempDir
+	File directory;
+
+	/**
+	 * Gently uneven map of open land with a trail down one column
+	 */
+
+	Path trailMap(int trailColumn) throws IOException {
+		TestMaps terrain = new TestMaps(16, 120);
+		terrain.fill(trailColumn, 0, 1, 120, TerrainClass.FOOT_PATH);
+		terrain.fill(6, 20, 10, 80, TerrainClass.WALK_FOREST);
+		for(int yCoordinate = 0; yCoordinate < 120; yCoordinate++) {
+			for(int xCoordinate = 0; xCoordinate < 16; xCoordinate++) {
+				terrain.elevation[yCoordinate][xCoordinate] = 100 + 0.1 * ((xCoordinate * 7 + yCoordinate * 3) % 5);
+			}
+		}
+		return terrain.load(directory).forSeason("summer");
+	}
+
+	@Test
+	void landmarkAndPlainSearchAgreeAlongTheBorderColumn() throws IOException {
+		Path map = trailMap(0);
+		int startNode = 5 * map.mapWidth;
+		int destinationNode = 110 * map.mapWidth;
+		double fastestTime = LandmarkTable.getTimes(map, startNode, false)[destinationNode];
+
+		int[] plainLeg = map.aStarSearch(0, 5, 0, 110, "summer");
+		double plainTime = map.getLegTime(plainLeg, 0, 5);
+		for(int index = 0; index < plainLeg.length; index += 2) {
+			assertEquals(0, plainLeg[index], "plain route leaves the first column");
+		}
+
+		map.landmarkTable = LandmarkTable.forMap(map, "summer", 4);
+		int[] landmarkLeg = map.aStarSearch(0, 5, 0, 110, "summer");
+		double landmarkTime = map.getLegTime(landmarkLeg, 0, 5);
+
+		assertEquals(plainTime, landmarkTime, 1e-9);
+		assertEquals(fastestTime, landmarkTime, 1e-4);
+		assertLowerBoundsHold(map, landmarkLeg, 0, 5);
+	}
+
+	@Test
+	void borderColumnIsNotCheaperThanTheTrailBesideIt() throws IOException {
+		Path map = trailMap(1);
+		int startNode = 5 * map.mapWidth;
+		int destinationNode = 110 * map.mapWidth + 1;
+		double fastestTime = LandmarkTable.getTimes(map, startNode, false)[destinationNode];
+
+		int[] plainLeg = map.aStarSearch(0, 5, 1, 110, "summer");
+		double plainTime = map.getLegTime(plainLeg, 0, 5);
+
+		map.landmarkTable = LandmarkTable.forMap(map, "summer", 4);
+		int[] landmarkLeg = map.aStarSearch(0, 5, 1, 110, "summer");
+		double landmarkTime = map.getLegTime(landmarkLeg, 0, 5);
+
+		assertEquals(fastestTime, landmarkTime, 1e-4);
+		assertTrue(landmarkTime <= plainTime + 1e-9, "landmark " + landmarkTime + " slower than plain " + plainTime);
+		assertLowerBoundsHold(map, landmarkLeg, 0, 5);
+	}
+
+	@Test
+	void tableWithFewerLandmarksThanAskedForIsReused() throws IOException {
+		TestMaps terrain = new TestMaps(12, 12);
+		terrain.fill(0, 0, 12, 12, TerrainClass.OUT_OF_BOUNDS);
+		terrain.fill(5, 5, 2, 2, TerrainClass.OPEN_LAND);
+		Path map = terrain.load(directory).forSeason("summer");
+		File file = new File(map.mapPath + ".summer.landmarks");
+
+		LandmarkTable built = LandmarkTable.forMap(map, "summer", 16);
+		assertTrue(built.landmarkNode.length < 16, "island has room for " + built.landmarkNode.length + " landmarks");
+		assertTrue(file.setLastModified(0));
+
+		LandmarkTable reused = LandmarkTable.forMap(map, "summer", 16);
+		assertEquals(0, file.lastModified(), "landmark file was rebuilt");
+		assertArrayEquals(built.landmarkNode, reused.landmarkNode);
+	}
+
+	/**
+	 * Every lower bound from a pixel of the leg to the destination is at most
+	 * the time of the rest of the leg
+	 */
+
+	static void assertLowerBoundsHold(Path map, int[] legCoordinates, int x1, int y1) {
+		int destinationNode = legCoordinates[1] * map.mapWidth + legCoordinates[0];
+		double remainingTime = map.getLegTime(legCoordinates, x1, y1);
+		int currentX = x1;
+		int currentY = y1;
+		for(int index = legCoordinates.length - 2; index >= 0; index -= 2) {
+			int node = currentY * map.mapWidth + currentX;
+			double lowerBound = map.getLowerBoundTime(node, destinationNode);
+			assertTrue(lowerBound <= remainingTime + 1e-9, "bound " + lowerBound + " over " + remainingTime + " at " + currentX + "," + currentY);
+			int nextX = legCoordinates[index];
+			int nextY = legCoordinates[index + 1];
+			if(nextX == currentX && nextY == currentY) {
+				continue;
+			}
+			int direction = nextX > currentX ? 0 : nextX < currentX ? 1 : nextY > currentY ? 2 : 3;
+			remainingTime -= map.getNeighborTime(currentX, currentY, direction);
+			currentX = nextX;
+			currentY = nextY;
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Counters of the leg cache, legs read back from their files by a new
+ * cache, a corrupt leg file taken as a miss and the limit on the number
+ * of leg files
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LegCacheTest {
+
+	static final int[][] LEGS = {{15, 15, 60, 40}, {60, 40, 25, 55}, {25, 55, 70, 15}, {70, 15, 15, 15}};
+
+	@TempDir
+	File directory;
+
+	Path map;
+	File cacheDirectory;
+
+	@BeforeEach
+	void loadMap() throws IOException {
+		TestMaps terrain = TestMaps.terrain(90, 70, 13L);
+		for(int[] leg : LEGS) {
+			terrain.clearControl(leg[0], leg[1]);
+		}
+		map = terrain.load(directory).forSeason("summer");
+		cacheDirectory = new File(directory, "legs");
+	}
+
+	@Test
+	void countersAndLegsReadBackFromDisk() {
+		LegCache legCache = new LegCache(1, cacheDirectory);
+		int[] firstLeg = getLeg(legCache, 0);
+		assertArrayEquals(firstLeg, getLeg(legCache, 0));
+		int[] secondLeg = getLeg(legCache, 1);
+		assertArrayEquals(firstLeg, getLeg(legCache, 0));
+		assertEquals("hits=1 diskHits=1 misses=2 evictions=2 diskEvictions=0 size=1/1", legCache.getStats());
+		assertEquals(2, cacheDirectory.list().length);
+
+		LegCache nextRun = new LegCache(4, cacheDirectory);
+		assertArrayEquals(secondLeg, getLeg(nextRun, 1));
+		assertArrayEquals(secondLeg, getLeg(nextRun, 1));
+		assertEquals(map.getLegTime(secondLeg, LEGS[1][0], LEGS[1][1]), nextRun.getTime(map, LEGS[1][0], LEGS[1][1], LEGS[1][2], LEGS[1][3], "summer"));
+		assertEquals("hits=1 diskHits=1 misses=0 evictions=0 diskEvictions=0 size=1/4", nextRun.getStats());
+	}
+
+	@Test
+	void corruptLegFileIsAMiss() throws IOException {
+		int[] leg = getLeg(new LegCache(0, cacheDirectory), 0);
+		File legFile = cacheDirectory.listFiles()[0];
+		try(DataOutputStream output = new DataOutputStream(new FileOutputStream(legFile))) {
+			output.writeInt(LegCache.MAGIC);
+			output.writeInt(LegCache.VERSION);
+			output.writeDouble(1.0);
+			output.writeInt(Integer.MAX_VALUE);
+		}
+
+		LegCache legCache = new LegCache(0, cacheDirectory);
+		assertArrayEquals(leg, getLeg(legCache, 0));
+		assertEquals("hits=0 diskHits=0 misses=1 evictions=0 diskEvictions=0 size=0/0", legCache.getStats());
+		assertArrayEquals(leg, getLeg(legCache, 0));
+		assertEquals(1, legCache.diskHits.sum());
+	}
+
+	@Test
+	void leastRecentlyUsedLegFilesAreDeleted() {
+		LegCache legCache = new LegCache(0, cacheDirectory);
+		legCache.diskCapacity = 3;
+		for(int leg = 0; leg < LEGS.length; leg++) {
+			getLeg(legCache, leg);
+			new File(cacheDirectory, LegCache.getKey(map, LEGS[leg][0], LEGS[leg][1], LEGS[leg][2], LEGS[leg][3], "summer") + ".leg")
+					.setLastModified(1000000000000L + 1000L * leg);
+		}
+		assertEquals(1, legCache.diskEvictions.sum());
+		assertEquals(3, cacheDirectory.list().length);
+		assertFalse(new File(cacheDirectory, LegCache.getKey(map, LEGS[0][0], LEGS[0][1], LEGS[0][2], LEGS[0][3], "summer") + ".leg").exists());
+	}
+
+	int[] getLeg(LegCache legCache, int leg) {
+		int[] controls = LEGS[leg];
+		return legCache.getLeg(map, controls[0], controls[1], controls[2], controls[3], "summer", null);
+	}
+
+}
@@ -0,0 +1,147 @@
+/**
+ * The Vector API kernels against the scalar loops on random rows. The
+ * rows have lengths that are not a whole number of vectors, and the
+ * elevation has NaN, both zeros, infinities and changes of exactly the
+ * elevation step, where rounding differences would show. Every result has
+ * to match bit for bit. The test is skipped unless the kernels in vector/
+ * are compiled and the module is added, as with mvn -P vector test. With
+ * both, kernels that fail to load fail the test
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RasterKernelsTest {
+
+	static final int ROUNDS = 200;
+
+	static final double[] SPECIAL_ELEVATIONS = {Double.NaN, 0.0, -0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1.0, 2.0, 250.0};
+
+	static final double[] ELEVATION_STEPS = {1, 1.5, 0.999, 2, 0};
+
+	RasterKernels scalar = new RasterKernels();
+	RasterKernels vector;
+	Random random = new Random(24L);
+
+	@BeforeEach
+	void loadVectorKernels() {
+		assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "jdk.incubator.vector is not added");
+		Class<?> vectorClass;
+		try {
+			vectorClass = Class.forName("RasterVectorKernels", false, RasterKernelsTest.class.getClassLoader());
+		}catch(ClassNotFoundException exception) {
+			assumeTrue(false, "RasterVectorKernels is not compiled");
+			return;
+		}
+		try {
+			vector = (RasterKernels) vectorClass.getDeclaredConstructor().newInstance();
+		}catch(ReflectiveOperationException | LinkageError exception) {
+			fail("RasterVectorKernels could not be loaded", exception);
+		}
+	}
+
+	@Test
+	void classifyMatches() {
+		for(int round = 0; round < ROUNDS; round++) {
+			int length = 1 + random.nextInt(300);
+			int[] pixels = new int[length];
+			for(int node = 0; node < length; node++) {
+				pixels[node] = random.nextBoolean() ? TerrainClass.color((byte) random.nextInt(10)) | random.nextInt(2) << 24 : random.nextInt();
+			}
+			int from = random.nextInt(length);
+			int to = from + random.nextInt(length - from + 1);
+			byte[] expected = new byte[length];
+			byte[] actual = new byte[length];
+			scalar.classify(pixels, expected, from, to);
+			vector.classify(pixels, actual, from, to);
+			assertArrayEquals(expected, actual, "round " + round);
+		}
+	}
+
+	@Test
+	void maskWaterMatches() {
+		for(int round = 0; round < ROUNDS; round++) {
+			int width = 1 + random.nextInt(200);
+			int height = 1 + random.nextInt(4);
+			int wordsPerRow = (width + 63) / 64;
+			byte[] terrainClass = new byte[width * height];
+			for(int node = 0; node < terrainClass.length; node++) {
+				terrainClass[node] = random.nextInt(3) == 0 ? TerrainClass.WATER : (byte) random.nextInt(10);
+			}
+			long[] expected = new long[wordsPerRow * height];
+			long[] actual = new long[wordsPerRow * height];
+			for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+				scalar.maskWater(terrainClass, yCoordinate * width, width, expected, yCoordinate * wordsPerRow);
+				vector.maskWater(terrainClass, yCoordinate * width, width, actual, yCoordinate * wordsPerRow);
+			}
+			assertArrayEquals(expected, actual, "round " + round);
+		}
+	}
+
+	@Test
+	void baseElevationMatches() {
+		for(int round = 0; round < ROUNDS; round++) {
+			double[] row = elevationRow(1 + random.nextInt(100));
+			int count = random.nextInt(row.length + 1);
+			double baseElevation = random.nextInt(4) == 0 ? 0.0 : elevation();
+			double expected = scalar.baseElevation(row, count, baseElevation);
+			double actual = vector.baseElevation(row, count, baseElevation);
+			assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual), "round " + round + ": " + expected + " and " + actual);
+		}
+	}
+
+	@Test
+	void levelStepsMatch() {
+		for(int round = 0; round < ROUNDS; round++) {
+			int width = 1 + random.nextInt(150);
+			int height = 1 + random.nextInt(4);
+			double elevationStep = ELEVATION_STEPS[random.nextInt(ELEVATION_STEPS.length)];
+			double[][] elevation = new double[height][];
+			for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+				elevation[yCoordinate] = elevationRow(width);
+			}
+			long[] expectedRight = new long[(width * height + 63) / 64 + 1];
+			long[] expectedDown = new long[expectedRight.length];
+			long[] actualRight = new long[expectedRight.length];
+			long[] actualDown = new long[expectedRight.length];
+			for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+				double[] nextRow = yCoordinate < height - 1 ? elevation[yCoordinate + 1] : null;
+				scalar.levelSteps(elevation[yCoordinate], nextRow, width, elevationStep, yCoordinate * width, expectedRight, expectedDown);
+				vector.levelSteps(elevation[yCoordinate], nextRow, width, elevationStep, yCoordinate * width, actualRight, actualDown);
+			}
+			assertArrayEquals(expectedRight, actualRight, "round " + round + " to the right");
+			assertArrayEquals(expectedDown, actualDown, "round " + round + " downwards");
+		}
+	}
+
+	/**
+	 * Row of smooth elevation with whole meter steps and special values
+	 */
+
+	double[] elevationRow(int width) {
+		double[] row = new double[width];
+		for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+			row[xCoordinate] = elevation();
+		}
+		return row;
+	}
+
+	double elevation() {
+		switch(random.nextInt(4)) {
+			case 0:
+				return SPECIAL_ELEVATIONS[random.nextInt(SPECIAL_ELEVATIONS.length)];
+			case 1:
+				return 250 + random.nextInt(4);
+			default:
+				return 250 + random.nextDouble() * 3;
+		}
+	}
+
+}
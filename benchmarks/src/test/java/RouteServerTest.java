@@ -0,0 +1,83 @@
+/**
+ * The season maps of the route service are built and frozen before the
+ * first request, so concurrent requests only read them. Route images are
+ * only written into the output directory of the service
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RouteServerTest {
+
+	@TempDir
+	File directory;
+
+	@Test
+	void concurrentRequestsGetTheSameRoute() throws IOException, InterruptedException, ExecutionException {
+		RouteServer routeServer = startRouteServer();
+		try {
+			for(String weather : Path.seasons) {
+				Path seasonMap = routeServer.getSeasonMap(weather);
+				assertTrue(seasonMap.frozen, weather);
+				assertThrows(IllegalStateException.class, () -> seasonMap.changeTerrain(new int[] {0}, TerrainClass.WATER));
+			}
+
+			String expected = routeServer.answer("spring 20 20 100 90");
+			assertTrue(expected.startsWith("OK "), expected);
+			List<Future<String>> responses = new ArrayList<Future<String>>();
+			for(int request = 0; request < 16; request++) {
+				responses.add(routeServer.submit("spring 20 20 100 90"));
+			}
+			for(Future<String> response : responses) {
+				assertEquals(expected, response.get());
+			}
+		}finally {
+			routeServer.requestPool.shutdown();
+		}
+	}
+
+	@Test
+	void imagesStayInTheOutputDirectory() throws IOException {
+		RouteServer routeServer = startRouteServer();
+		try {
+			assertTrue(routeServer.route("spring 20 20 100 90 route.png").startsWith("ERROR Images are off"));
+			File outputDirectory = new File(directory, "images");
+			outputDirectory.mkdir();
+			routeServer.outputDirectory = outputDirectory;
+
+			assertTrue(routeServer.route("spring 20 20 100 90 5").startsWith("ERROR Expected x y pairs"));
+			assertTrue(routeServer.route("spring 20 20 100 90 ../route.png").startsWith("ERROR Image outside the output directory"));
+			assertTrue(routeServer.route("spring 20 20 100 90 " + new File(directory, "route.png").getAbsolutePath())
+					.startsWith("ERROR Image outside the output directory"));
+			assertTrue(routeServer.route("spring 20 20 100 90 route.png").startsWith("OK "));
+			assertTrue(new File(outputDirectory, "route.png").isFile());
+			assertFalse(new File(directory, "route.png").exists());
+			assertFalse(new File("5").exists());
+		}finally {
+			routeServer.requestPool.shutdown();
+		}
+	}
+
+	RouteServer startRouteServer() throws IOException {
+		TestMaps terrain = TestMaps.terrain(120, 120, 11L);
+		terrain.clearControl(20, 20);
+		terrain.clearControl(100, 90);
+		File mapFile = new File(directory, "terrain.png");
+		File elevationFile = new File(directory, "mpp.txt");
+		terrain.write(mapFile, elevationFile);
+		return new RouteServer(mapFile.getPath(), elevationFile.getPath());
+	}
+
+}
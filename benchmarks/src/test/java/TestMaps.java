@@ -0,0 +1,148 @@
+/**
+ * Small deterministic maps for the tests. A map is drawn as terrain
+ * classes, written as a PNG with the map colors and a text elevation
+ * file, and read back like any other map
+ *
+ */
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+final class TestMaps {
+
+	static final int[][] LEGS = {{60, 60, 140, 110}, {140, 110, 200, 40}, {200, 200, 260, 330}, {300, 420, 220, 470}, {330, 250, 250, 180}};
+
+	final int width;
+	final int height;
+	final byte[] terrainClass;
+	final double[][] elevation;
+
+	TestMaps(int width, int height) {
+		this.width = width;
+		this.height = height;
+		terrainClass = new byte[width * height];
+		elevation = new double[height][width];
+		Arrays.fill(terrainClass, TerrainClass.OPEN_LAND);
+	}
+
+	/**
+	 * Map with patches of every terrain, lakes for the ice and mud, a few
+	 * trails and rolling hills. The outermost pixels are out of bounds
+	 *
+	 * @param 		width			Width of the map
+	 *
+	 * @param 		height			Height of the map
+	 *
+	 * @param 		seed			Seed of the patches and the elevation noise
+	 *
+	 * @return						Map drawn from the seed
+	 */
+
+	static TestMaps terrain(int width, int height, long seed) {
+		TestMaps map = new TestMaps(width, height);
+		Random random = new Random(seed);
+		byte[] patches = {TerrainClass.ROUGH_MEADOW, TerrainClass.EASY_MOVEMENT_FOREST, TerrainClass.SLOW_RUN_FOREST,
+				TerrainClass.WALK_FOREST, TerrainClass.IMPASSIBLE_VEGETATION, TerrainClass.WATER};
+		for(int patch = 0; patch < width * height / 600; patch++) {
+			int patchWidth = 4 + random.nextInt(24);
+			int patchHeight = 4 + random.nextInt(24);
+			map.fill(random.nextInt(width - patchWidth), random.nextInt(height - patchHeight), patchWidth, patchHeight,
+					patches[random.nextInt(patches.length)]);
+		}
+		for(int trail = 0; trail < 3; trail++) {
+			map.fill(1 + random.nextInt(width - 2), 0, 1, height, TerrainClass.FOOT_PATH);
+			map.fill(0, 1 + random.nextInt(height - 2), width, 1, TerrainClass.PAVED_ROAD);
+		}
+		map.fill(0, 0, width, 1, TerrainClass.OUT_OF_BOUNDS);
+		map.fill(0, height - 1, width, 1, TerrainClass.OUT_OF_BOUNDS);
+		map.fill(0, 0, 1, height, TerrainClass.OUT_OF_BOUNDS);
+		map.fill(width - 1, 0, 1, height, TerrainClass.OUT_OF_BOUNDS);
+		for(int yCoordinate = 0; yCoordinate < height; yCoordinate++) {
+			for(int xCoordinate = 0; xCoordinate < width; xCoordinate++) {
+				map.elevation[yCoordinate][xCoordinate] = 250 + 20 * StrictMath.sin(xCoordinate / 37.0) + 15 * StrictMath.cos(yCoordinate / 53.0)
+						+ random.nextDouble() * 0.5;
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Map of the search tests, 395x500 like the maps the original search was
+	 * fixed to, with the controls of LEGS on open land
+	 *
+	 * @param 		directory		Directory for the files
+	 *
+	 * @return						Loaded map, without a season
+	 */
+
+	static Path legMap(File directory) throws IOException {
+		TestMaps map = terrain(395, 500, 2024L);
+		for(int[] leg : LEGS) {
+			map.clearControl(leg[0], leg[1]);
+			map.clearControl(leg[2], leg[3]);
+		}
+		return map.load(directory);
+	}
+
+	/**
+	 * Paint a rectangle of the map with one terrain class
+	 */
+
+	void fill(int xCoordinate, int yCoordinate, int fillWidth, int fillHeight, byte terrain) {
+		for(int row = yCoordinate; row < yCoordinate + fillHeight; row++) {
+			Arrays.fill(terrainClass, row * width + xCoordinate, row * width + xCoordinate + fillWidth, terrain);
+		}
+	}
+
+	/**
+	 * Put a control on open land, so a leg from or to it can start and end
+	 */
+
+	void clearControl(int xCoordinate, int yCoordinate) {
+		fill(xCoordinate - 2, yCoordinate - 2, 5, 5, TerrainClass.OPEN_LAND);
+	}
+
+	/**
+	 * Write the map and its elevation to a directory and load them
+	 *
+	 * @param 		directory		Directory for the files
+	 *
+	 * @return						Loaded map, without a season
+	 */
+
+	Path load(File directory) throws IOException {
+		File mapFile = new File(directory, "terrain.png");
+		File elevationFile = new File(directory, "mpp.txt");
+		write(mapFile, elevationFile);
+		Path map = new Path();
+		map.readMap(mapFile.getPath());
+		map.fileLoad(elevationFile.getPath());
+		return map;
+	}
+
+	void write(File mapFile, File elevationFile) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for(int node = 0; node < terrainClass.length; node++) {
+			image.setRGB(node % width, node / width, TerrainClass.color(terrainClass[node]));
+		}
+		ImageIO.write(image, "png", mapFile);
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(elevationFile))) {
+			for(double[] row : elevation) {
+				StringBuilder line = new StringBuilder();
+				for(double value : row) {
+					line.append(String.format(Locale.ROOT, "   %.16e", value));
+				}
+				writer.write(line.toString());
+				writer.newLine();
+			}
+		}
+	}
+
+}
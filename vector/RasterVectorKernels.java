@@ -0,0 +1,181 @@
+/**
+ * The raster kernels on the lanes of the Vector API. Every kernel gives
+ * exactly the results of the scalar loop it replaces and runs that loop
+ * for the pixels left over at the end of a row
+ *
+ * The Vector API is an incubator module, so this class is kept apart from
+ * the other sources and is compiled and run with the module added:
+ *
+ * 	javac *.java
+ * 	javac --add-modules jdk.incubator.vector -cp . -d . vector/RasterVectorKernels.java
+ * 	java --add-modules jdk.incubator.vector Path ...
+ *
+ */
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+public class RasterVectorKernels extends RasterKernels {
+
+	static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+	static final VectorSpecies<Byte> CLASS_SPECIES = VectorSpecies.of(byte.class,
+			VectorShape.forBitSize(Math.max(64, INT_SPECIES.vectorBitSize() / 4)));
+	static final VectorMask<Byte> CLASS_LANES = CLASS_SPECIES.indexInRange(0, INT_SPECIES.length());
+	static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+	static final VectorSpecies<Double> DOUBLE_SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public String getName() {
+		return "vector-" + INT_SPECIES.vectorBitSize();
+	}
+
+	/**
+	 * Compare the pixels with the map colors from the last to the first, so
+	 * a pixel ends with the first class whose color it has like the linear
+	 * search of TerrainClass.classify. The classes are narrowed to bytes of a
+	 * quarter of the int shape; there is no byte shape below 64 bits, so with
+	 * 128-bit ints the bytes fill the low half of a 64-bit vector and only
+	 * those lanes are stored
+	 */
+
+	@Override
+	public void classify(int[] pixels, byte[] terrainClass, int from, int to) {
+		int lanes = INT_SPECIES.length();
+		int node = from;
+		for(; node <= to - lanes; node += lanes) {
+			IntVector rgb = IntVector.fromArray(INT_SPECIES, pixels, node).and(0xFFFFFF);
+			IntVector terrain = IntVector.broadcast(INT_SPECIES, TerrainClass.UNKNOWN);
+			for(int index = TerrainClass.UNKNOWN - 1; index >= 0; index--) {
+				terrain = terrain.blend(index, rgb.eq(TerrainClass.classColor[index]));
+			}
+			((ByteVector) terrain.convertShape(VectorOperators.I2B, CLASS_SPECIES, 0)).intoArray(terrainClass, node, CLASS_LANES);
+		}
+		super.classify(pixels, terrainClass, node, to);
+	}
+
+	/**
+	 * A row starts on a new word and a vector has at most 64 lanes, so the
+	 * bits of a vector never cross a word
+	 */
+
+	@Override
+	public void maskWater(byte[] terrainClass, int rowNode, int width, long[] waterMask, int rowWord) {
+		int lanes = BYTE_SPECIES.length();
+		int xCoordinate = 0;
+		for(; xCoordinate <= width - lanes; xCoordinate += lanes) {
+			long water = bits(ByteVector.fromArray(BYTE_SPECIES, terrainClass, rowNode + xCoordinate).eq(TerrainClass.WATER));
+			waterMask[rowWord + (xCoordinate >>> 6)] |= water << xCoordinate;
+		}
+		for(; xCoordinate < width; xCoordinate++) {
+			if(terrainClass[rowNode + xCoordinate] == TerrainClass.WATER) {
+				waterMask[rowWord + (xCoordinate >>> 6)] |= 1L << xCoordinate;
+			}
+		}
+	}
+
+	/**
+	 * Lanes of a mask as bits. Water and level ground come in large areas,
+	 * so most masks are all set or all clear and are answered without
+	 * moving the lanes into a long one by one
+	 */
+
+	static long bits(VectorMask<?> mask) {
+		if(!mask.anyTrue()) {
+			return 0;
+		}
+		if(mask.allTrue()) {
+			return -1L >>> (64 - mask.length());
+		}
+		return mask.toLong();
+	}
+
+	/**
+	 * Lanes without 0 or NaN are folded into a running minimum; the scalar
+	 * loop handles the vectors that have one, as 0 resets the base and NaN
+	 * does not compare
+	 */
+
+	@Override
+	public double baseElevation(double[] row, int count, double baseElevation) {
+		int lanes = DOUBLE_SPECIES.length();
+		DoubleVector minimum = DoubleVector.broadcast(DOUBLE_SPECIES, Double.POSITIVE_INFINITY);
+		boolean folded = false;
+		int xCoordinate = 0;
+		for(; xCoordinate <= count - lanes; xCoordinate += lanes) {
+			DoubleVector values = DoubleVector.fromArray(DOUBLE_SPECIES, row, xCoordinate);
+			VectorMask<Double> special = values.eq(0).or(values.test(VectorOperators.IS_NAN));
+			if(!special.anyTrue()) {
+				minimum = minimum.min(values);
+				folded = true;
+				continue;
+			}
+			if(folded) {
+				baseElevation = fold(baseElevation, minimum);
+				minimum = DoubleVector.broadcast(DOUBLE_SPECIES, Double.POSITIVE_INFINITY);
+				folded = false;
+			}
+			baseElevation = scalarMinimum(row, xCoordinate, xCoordinate + lanes, baseElevation);
+		}
+		if(folded) {
+			baseElevation = fold(baseElevation, minimum);
+		}
+		return scalarMinimum(row, xCoordinate, count, baseElevation);
+	}
+
+	static double fold(double baseElevation, DoubleVector minimum) {
+		double lowest = minimum.reduceLanes(VectorOperators.MIN);
+		return baseElevation == 0 ? lowest : Math.min(baseElevation, lowest);
+	}
+
+	static double scalarMinimum(double[] row, int from, int to, double baseElevation) {
+		for(int xCoordinate = from; xCoordinate < to; xCoordinate++) {
+			if(baseElevation == 0 || row[xCoordinate] < baseElevation) {
+				baseElevation = row[xCoordinate];
+			}
+		}
+		return baseElevation;
+	}
+
+	/**
+	 * The floor of a change is below the elevation step exactly when the
+	 * change is below the elevation step rounded up, so the lanes compare
+	 * without rounding every change
+	 */
+
+	@Override
+	public void levelSteps(double[] row, double[] nextRow, int width, double elevationStep, int rowNode, long[] levelRight, long[] levelDown) {
+		int lanes = DOUBLE_SPECIES.length();
+		double limit = Math.ceil(elevationStep);
+		int xCoordinate = 0;
+		for(; xCoordinate <= width - 1 - lanes; xCoordinate += lanes) {
+			DoubleVector current = DoubleVector.fromArray(DOUBLE_SPECIES, row, xCoordinate);
+			DoubleVector right = DoubleVector.fromArray(DOUBLE_SPECIES, row, xCoordinate + 1);
+			setBits(levelRight, rowNode + xCoordinate, bits(right.sub(current).abs().lt(limit)), lanes);
+		}
+		for(; xCoordinate < width - 1; xCoordinate++) {
+			if(Math.floor(Math.abs(row[xCoordinate + 1] - row[xCoordinate])) < elevationStep) {
+				setBit(levelRight, rowNode + xCoordinate);
+			}
+		}
+		if(nextRow == null) {
+			return;
+		}
+		xCoordinate = 0;
+		for(; xCoordinate <= width - lanes; xCoordinate += lanes) {
+			DoubleVector current = DoubleVector.fromArray(DOUBLE_SPECIES, row, xCoordinate);
+			DoubleVector below = DoubleVector.fromArray(DOUBLE_SPECIES, nextRow, xCoordinate);
+			setBits(levelDown, rowNode + xCoordinate, bits(below.sub(current).abs().lt(limit)), lanes);
+		}
+		for(; xCoordinate < width; xCoordinate++) {
+			if(Math.floor(Math.abs(nextRow[xCoordinate] - row[xCoordinate])) < elevationStep) {
+				setBit(levelDown, rowNode + xCoordinate);
+			}
+		}
+	}
+
+}